@@ -12,6 +12,8 @@ import androidx.leanback.widget.ListRowPresenter
 import androidx.leanback.widget.OnItemViewClickedListener
 import androidx.lifecycle.lifecycleScope
 import com.leafstudio.tvplayer.model.Channel
+import com.leafstudio.tvplayer.model.ChannelRepository
+import com.leafstudio.tvplayer.network.PlaylistCache
 import com.leafstudio.tvplayer.network.PlaylistLoader
 import com.leafstudio.tvplayer.parser.LiveParser
 import com.leafstudio.tvplayer.ui.ChannelPresenter
@@ -23,9 +25,9 @@ import kotlinx.coroutines.launch
 class TvMainActivity : FragmentActivity() {
     
     private lateinit var browseSupportFragment: BrowseSupportFragment
-    private val playlistLoader = PlaylistLoader()
+    private val playlistLoader by lazy { PlaylistLoader(PlaylistCache(this)) }
     private val liveParser = LiveParser()
-    private var allChannels: List<Channel> = emptyList()
+    private var playlist: ChannelRepository.Playlist? = null
     
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -60,45 +62,52 @@ class TvMainActivity : FragmentActivity() {
     
     /**
      * 加载 M3U 播放列表
-     * 使用协程在后台加载和解析数据
+     * 使用协程在后台流式加载和解析，每收到一批频道就追加到对应分组行
      */
     private fun loadPlaylist() {
         val playlistUrl = getString(R.string.default_playlist_url)
+        val playlist = ChannelRepository.create()
+        this.playlist = playlist
+        
+        // 创建行适配器，分组名 -> 该分组的频道适配器
+        val rowsAdapter = ArrayObjectAdapter(ListRowPresenter())
+        val groupAdapters = HashMap<String, ArrayObjectAdapter>()
+        browseSupportFragment.adapter = rowsAdapter
         
         lifecycleScope.launch {
             try {
                 // 显示加载提示
                 Toast.makeText(this@TvMainActivity, R.string.loading, Toast.LENGTH_SHORT).show()
                 
-                // 加载播放列表
-                val content = playlistLoader.loadPlaylist(playlistUrl)
-                
-                // 解析频道
-                val channels = liveParser.parse(content)
-                allChannels = channels
-                
-                if (channels.isEmpty()) {
-                    Toast.makeText(this@TvMainActivity, R.string.no_channels, Toast.LENGTH_LONG).show()
-                    return@launch
-                }
-                
-                // 按分组组织频道
-                val groupedChannels = channels.groupBy { it.group ?: "未分类" }
-                
-                // 创建行适配器
-                val rowsAdapter = ArrayObjectAdapter(ListRowPresenter())
-                
-                groupedChannels.forEach { (groupName, channelList) ->
-                    val listRowAdapter = ArrayObjectAdapter(ChannelPresenter())
-                    channelList.forEach { channel ->
-                        listRowAdapter.add(channel)
+                // 加载并解析播放列表，按分组组织频道
+                playlistLoader.streamPlaylist(playlistUrl, liveParser).collect { batch ->
+                    if (batch.reset) {
+                        playlist.clear()
+                        groupAdapters.clear()
+                        rowsAdapter.clear()
+                    }
+                    playlist.append(batch.added)
+                    batch.added.groupBy { it.group ?: ChannelRepository.UNGROUPED }.forEach { (groupName, channelList) ->
+                        val listRowAdapter = groupAdapters.getOrPut(groupName) {
+                            ArrayObjectAdapter(ChannelPresenter()).also {
+                                rowsAdapter.add(ListRow(HeaderItem(groupName), it))
+                            }
+                        }
+                        listRowAdapter.addAll(listRowAdapter.size(), channelList)
+                    }
+                    // 被追加线路的频道换成新快照，分组行里同一位置的条目一并替换
+                    batch.updated.forEach { (index, channel) ->
+                        val old = playlist[index] ?: return@forEach
+                        playlist.replace(index, channel)
+                        val listRowAdapter = groupAdapters[old.group ?: ChannelRepository.UNGROUPED] ?: return@forEach
+                        val position = listRowAdapter.indexOf(old)
+                        if (position >= 0) listRowAdapter.replace(position, channel)
                     }
-                    
-                    val header = HeaderItem(groupName)
-                    rowsAdapter.add(ListRow(header, listRowAdapter))
                 }
                 
-                browseSupportFragment.adapter = rowsAdapter
+                if (playlist.size == 0) {
+                    Toast.makeText(this@TvMainActivity, R.string.no_channels, Toast.LENGTH_LONG).show()
+                }
                 
             } catch (e: Exception) {
                 e.printStackTrace()
@@ -115,7 +124,9 @@ class TvMainActivity : FragmentActivity() {
      * 播放选中的频道
      * 如果频道有多个线路，显示选择对话框
      */
-    private fun playChannel(channel: Channel) {
+    private fun playChannel(item: Channel) {
+        // 列表项可能是加载期间被追加线路前的旧对象，换成播放列表里的当前对象
+        val channel = playlist?.current(item) ?: item
         if (channel.getRouteCount() > 1) {
             // 多线路，显示选择对话框
             showRouteSelectionDialog(channel)
@@ -148,11 +159,13 @@ class TvMainActivity : FragmentActivity() {
     private fun startPlayback(channel: Channel, routeIndex: Int) {
         channel.switchToRoute(routeIndex)
         
+        val playlist = this.playlist ?: return
+        
         // 找到频道在列表中的索引
-        val channelIndex = allChannels.indexOf(channel)
+        val channelIndex = playlist.indexOf(channel)
         
         val intent = Intent(this, PlaybackActivity::class.java).apply {
-            putParcelableArrayListExtra(PlaybackActivity.EXTRA_ALL_CHANNELS, ArrayList(allChannels))
+            putExtra(PlaybackActivity.EXTRA_PLAYLIST_HANDLE, playlist.handle)
             putExtra(PlaybackActivity.EXTRA_CURRENT_CHANNEL_INDEX, channelIndex)
         }
         startActivity(intent)
@@ -15,7 +15,8 @@ import androidx.fragment.app.FragmentActivity
 import androidx.lifecycle.lifecycleScope
 import com.bumptech.glide.Glide
 import com.bumptech.glide.load.engine.DiskCacheStrategy
-import com.leafstudio.tvplayer.model.Channel
+import com.leafstudio.tvplayer.model.ChannelRepository
+import com.leafstudio.tvplayer.network.PlaylistCache
 import com.leafstudio.tvplayer.network.PlaylistLoader
 
 import kotlinx.coroutines.launch
@@ -25,7 +26,7 @@ import kotlinx.coroutines.launch
  */
 class MainActivity : FragmentActivity() {
     
-    private val playlistLoader = PlaylistLoader()
+    private val playlistLoader by lazy { PlaylistLoader(PlaylistCache(this)) }
     private val liveParser = com.leafstudio.tvplayer.parser.LiveParser()
     
     private lateinit var backgroundImage: ImageView
@@ -136,14 +137,15 @@ class MainActivity : FragmentActivity() {
                 // 更新加载文字
                 loadingText.text = "正在加载播放列表..."
                 
-                // 加载播放列表
-                val content = playlistLoader.loadPlaylist(playlistUrl)
-                
-                // 更新加载文字
-                loadingText.text = "正在解析频道..."
-                
-                // 解析频道
-                val channels = liveParser.parse(content)
+                // 流式加载并解析频道，边下载边解析，直接写入频道仓库
+                val playlist = ChannelRepository.create()
+                playlistLoader.streamPlaylist(playlistUrl, liveParser).collect { batch ->
+                    if (batch.reset) playlist.clear()
+                    playlist.append(batch.added)
+                    batch.updated.forEach { (index, channel) -> playlist.replace(index, channel) }
+                    loadingText.text = "正在解析频道... (${playlist.size})"
+                }
+                val channels = playlist.all
                 
                 if (channels.isEmpty()) {
                     Toast.makeText(this@MainActivity, R.string.no_channels, Toast.LENGTH_LONG).show()
@@ -160,7 +162,7 @@ class MainActivity : FragmentActivity() {
                 
                 val channelIndex = if (lastChannelId != null) {
                     // 查找上次播放的频道
-                    val index = channels.indexOfFirst { it.id == lastChannelId }.takeIf { it >= 0 } ?: 0
+                    val index = playlist.indexOfId(lastChannelId).takeIf { it >= 0 } ?: 0
                     // 恢复上次选择的线路
                     if (index >= 0 && index < channels.size) {
                         val lastRouteIndex = prefs.getInt("last_route_${lastChannelId}", 0)
@@ -173,7 +175,7 @@ class MainActivity : FragmentActivity() {
                 
                 // 播放找到的频道
                 val intent = Intent(this@MainActivity, PlaybackActivity::class.java).apply {
-                    putParcelableArrayListExtra(PlaybackActivity.EXTRA_ALL_CHANNELS, ArrayList(channels))
+                    putExtra(PlaybackActivity.EXTRA_PLAYLIST_HANDLE, playlist.handle)
                     putExtra(PlaybackActivity.EXTRA_CURRENT_CHANNEL_INDEX, channelIndex)
                 }
                 startActivity(intent)
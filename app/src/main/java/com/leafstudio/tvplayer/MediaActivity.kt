@@ -17,14 +17,18 @@ import com.leafstudio.tvplayer.model.Live
 import com.leafstudio.tvplayer.model.Site
 import com.leafstudio.tvplayer.model.TvBoxConfig
 import com.leafstudio.tvplayer.model.Vod
+import com.leafstudio.tvplayer.spider.SearchEngine
 import com.leafstudio.tvplayer.ui.MediaCategoryAdapter
 import com.leafstudio.tvplayer.ui.MediaContentAdapter
 import com.leafstudio.tvplayer.ui.SourceAdapter
-import okhttp3.OkHttpClient
+import com.leafstudio.tvplayer.utils.OkHttpUtil
 import okhttp3.Request
 import org.json.JSONObject
-import java.util.concurrent.TimeUnit
 import com.leafstudio.tvplayer.utils.loadUrl
+import android.os.SystemClock
+import androidx.lifecycle.lifecycleScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.launch
 
 /**
  * 多媒体 Activity - 仿 TVBox 界面
@@ -39,10 +43,7 @@ class MediaActivity : FragmentActivity() {
     private var currentSite: Site? = null
     private var currentCategory: Category? = null
     
-    private val client = OkHttpClient.Builder()
-        .connectTimeout(15, TimeUnit.SECONDS)
-        .readTimeout(15, TimeUnit.SECONDS)
-        .build()
+    private val client = OkHttpUtil.apiClient
         
     private var pendingSearchKeyword: String? = null
         
@@ -244,6 +245,13 @@ class MediaActivity : FragmentActivity() {
                     
                     config = TvBoxConfig(spider, wallpaper, sites, lives)
                     
+                    // 预热常用的 JS 站点，后台预取用到的 JAR
+                    com.leafstudio.tvplayer.spider.JsSpiderPool.warmUp(this, sites, spider)
+                    com.leafstudio.tvplayer.spider.SpiderManager.prefetch(
+                        this,
+                        sites.filter { it.type == 3 }.mapNotNull { it.jar?.ifEmpty { null } } + spider
+                    )
+                    
                     runOnUiThread {
                         showLoading(false)
                         // 应用壁纸
@@ -430,7 +438,9 @@ class MediaActivity : FragmentActivity() {
         
         com.leafstudio.tvplayer.spider.SpiderManager.execute {
             // 在同一线程销毁旧的 Spider，避免线程安全问题
-            com.leafstudio.tvplayer.spider.SpiderManager.currentSpider?.destroy()
+            // JS Spider 由 JsSpiderPool 管理并复用，不在这里销毁，置空时释放持有
+            val oldSpider = com.leafstudio.tvplayer.spider.SpiderManager.currentSpider
+            if (oldSpider !is com.leafstudio.tvplayer.spider.JsSpider) oldSpider?.destroy()
             com.leafstudio.tvplayer.spider.SpiderManager.currentSpider = null
             
             try {
@@ -462,12 +472,8 @@ class MediaActivity : FragmentActivity() {
     
     private fun loadJsSpider(site: Site) {
         try {
-            val spider = com.leafstudio.tvplayer.spider.JsSpider(this, site.api)
-            try {
-                spider.init(site.ext ?: "")
-            } catch (e: Exception) {
-                // JS init might fail if extended not supported, ignore
-            }
+            // 从实例池获取，已初始化过的站点直接复用，作为当前 Spider 期间一直持有
+            val spider = com.leafstudio.tvplayer.spider.JsSpiderPool.acquire(this, site.key, site.api, site.ext ?: "")
             com.leafstudio.tvplayer.spider.SpiderManager.currentSpider = spider
             
             val homeContent = spider.home(true)
@@ -805,8 +811,10 @@ class MediaActivity : FragmentActivity() {
             .show()
     }
     
-    private val searchGeneration = java.util.concurrent.atomic.AtomicLong(0)
-
+    // 聚合搜索：引擎在首次搜索时创建，缓存已初始化的 Spider
+    private var searchEngine: SearchEngine? = null
+    private var searchJob: Job? = null
+    
     private fun performSearch(keyword: String) {
         val sites = config?.sites?.filter { it.searchable == 1 } ?: return
         if (sites.isEmpty()) {
@@ -814,8 +822,8 @@ class MediaActivity : FragmentActivity() {
             return
         }
         
-        // 增加搜索代数，标记旧搜索无效
-        val currentGen = searchGeneration.incrementAndGet()
+        // 取消上一次搜索（包括仍在进行的站点请求）
+        searchJob?.cancel()
         
         // 清除 Spider，防止干扰
         com.leafstudio.tvplayer.spider.SpiderManager.currentSpider = null
@@ -825,154 +833,63 @@ class MediaActivity : FragmentActivity() {
         showLoading(true)
         
         // 准备结果容器
-        val searchResults = java.util.concurrent.ConcurrentHashMap<String, List<Vod>>()
-        val searchSources = java.util.concurrent.CopyOnWriteArrayList<String>()
-        searchSources.add("全部")
+        val results = SearchEngine.ResultIndex()
         
         // 更新分类栏为“全部”
-        categoryAdapter.updateCategories(listOf(Category("all", "全部")))
+        categoryAdapter.updateCategories(listOf(Category(ALL_SOURCES, "全部")))
         contentAdapter.updateContent(emptyList())
         
         // 定义点击源时的过滤逻辑
         categoryAdapter.setOnCategoryClickListener { category ->
-            val sourceName = category.type_name
-            if (sourceName == "全部") {
-                val allVods = searchResults.values.flatten().distinctBy { it.vod_id + it.vod_name }
-                contentAdapter.updateContent(allVods)
+            if (category.type_id == ALL_SOURCES) {
+                contentAdapter.updateContent(results.all)
             } else {
-                val vods = searchResults[sourceName] ?: emptyList()
-                contentAdapter.updateContent(vods)
+                contentAdapter.updateContent(results.siteResults(category.type_id))
             }
         }
         
-        // 使用线程池并发搜索
-        val executor = java.util.concurrent.Executors.newFixedThreadPool(5) // 限制并发数
-        val params = java.util.concurrent.atomic.AtomicInteger(0)
-        val total = sites.size
+        val engine = searchEngine ?: SearchEngine(this, client).also { searchEngine = it }
+        val start = SystemClock.elapsedRealtime()
+        var firstResultMs = -1L
         
-        for (site in sites) {
-            executor.submit {
-                // 如果已开启新搜索，提前结束
-                if (currentGen != searchGeneration.get()) return@submit
-
-                try {
-                    val results = mutableListOf<Vod>()
-                    
-                    if (site.type == 3) {
-                         // Spider 搜索
-                         try {
-                               // ... (Spider logic same as before)
-                             val spiderKey = site.key
-                             val jarUrl = if (!site.jar.isNullOrEmpty()) site.jar else config?.spider ?: ""
-                             val spider = if (jarUrl.isNotEmpty()) {
-                                 com.leafstudio.tvplayer.spider.JarSpider(this, jarUrl, site.api, spiderKey).apply { init(site.ext ?: "") }
-                             } else {
-                                 com.leafstudio.tvplayer.spider.JsSpider(this, site.api).apply { init(site.ext ?: "") }
-                             }
-                             
-                             val jsonStr = spider.search(keyword, true)
-                             if (jsonStr.isNotEmpty()) {
-                                 val jsonObject = JSONObject(jsonStr)
-                                 val listArray = jsonObject.optJSONArray("list")
-                                 if (listArray != null) {
-                                     for (i in 0 until listArray.length()) {
-                                         val item = listArray.getJSONObject(i)
-                                         results.add(Vod(
-                                             vod_id = item.optString("vod_id"),
-                                             vod_name = item.optString("vod_name"),
-                                             vod_pic = item.optString("vod_pic"),
-                                             vod_play_url = item.optString("vod_play_url"),
-                                             vod_remarks = item.optString("vod_remarks"),
-                                             vod_tag = "${site.name}@@@${site.playUrl ?: ""}"
-                                         ))
-                                     }
-                                 }
-                             }
-                         } catch (e: Exception) {
-                             e.printStackTrace()
-                         }
-                    } else {
-                        // CMS 搜索
-                        try {
-                            var apiUrl = site.api.replace("/at/xml/", "/at/json/", ignoreCase = true)
-                            // 修正: 增加 pg=1 并对 keyword 编码 (虽英文不需要，但为了健壮性)
-                            val encodedKw = java.net.URLEncoder.encode(keyword, "UTF-8")
-                            val url = if (apiUrl.contains("?")) "${apiUrl}&ac=detail&wd=$encodedKw&pg=1" else "${apiUrl}?ac=detail&wd=$encodedKw&pg=1"
-                            
-                            val request = Request.Builder().url(url).build()
-                            val response = client.newCall(request).execute()
-                            val jsonStr = response.body?.string()
-                            
-                            if (jsonStr != null) {
-                                val jsonObject = JSONObject(jsonStr)
-                                val listArray = jsonObject.optJSONArray("list")
-                                if (listArray != null) {
-                                    for (i in 0 until listArray.length()) {
-                                        val item = listArray.getJSONObject(i)
-                                        results.add(Vod(
-                                            vod_id = item.optString("vod_id"),
-                                            vod_name = item.optString("vod_name"),
-                                            vod_pic = item.optString("vod_pic"),
-                                            vod_remarks = item.optString("vod_remarks"),
-                                            vod_play_url = item.optString("vod_play_url"),
-                                            vod_tag = "${site.name}@@@${site.playUrl ?: ""}"
-                                        ))
-                                    }
-                                }
-                            }
-                        } catch (e: Exception) {
-                            e.printStackTrace()
-                        }
-                    }
-                    
-                    // 再次检查 generation
-                    if (currentGen != searchGeneration.get()) return@submit
-                    
-                    if (results.isNotEmpty()) {
-                         searchResults[site.name] = results
-                         searchSources.add(site.name)
-                         
-                         runOnUiThread {
-                             // 再次检查 generation (UI thread)
-                             if (currentGen != searchGeneration.get()) return@runOnUiThread
-
-                             // 更新顶部分类栏（源列表）
-                             val categories = searchSources.map { 
-                                 val count = if (it == "全部") "" else "(${searchResults[it]?.size})"
-                                 Category(it, "$it$count") 
-                             }
-                             categoryAdapter.updateCategories(categories)
-                             
-                             // 刷新内容
-                             if (contentAdapter.itemCount == 0 || categoryAdapter.getSelectedCategory()?.type_name == "全部") {
-                                 val allVods = searchResults.values.flatten().distinctBy { it.vod_id + it.vod_name }
-                                 contentAdapter.updateContent(allVods)
-                             }
-                         }
-                    }
-                } catch (e: Exception) {
-                    e.printStackTrace()
-                } finally {
-                    if (params.incrementAndGet() == total) {
-                        runOnUiThread {
-                             if (currentGen == searchGeneration.get()) {
-                                showLoading(false)
-                                if (searchResults.isEmpty()) {
-                                    // 不要用 showError，因为会覆盖列表，用 Toast 即可
-                                    // 而且在 Live Search 时，如果还在输入，弹 Error 可能会闪烁
-                                    // 仅当不再输入时显示
-                                    Toast.makeText(this@MediaActivity, "未找到内容", Toast.LENGTH_SHORT).show()
-                                } else {
-                                    // Toast.makeText(this@MediaActivity, "搜索完成", Toast.LENGTH_SHORT).show()
-                                }
-                             }
-                        }
-                    }
+        searchJob = lifecycleScope.launch {
+            engine.search(keyword, sites, config?.spider).collect { result ->
+                if (result.vods.isEmpty()) return@collect
+                if (firstResultMs < 0) {
+                    firstResultMs = SystemClock.elapsedRealtime() - start
+                    android.util.Log.d("MediaActivity", "搜索首个结果: ${result.site.name}, 耗时 ${firstResultMs}ms")
+                }
+                val added = results.merge(result.site, result.vods)
+                
+                // 更新顶部分类栏（源列表），更新后选中项会回到“全部”
+                val selected = categoryAdapter.getSelectedCategory()
+                val categories = listOf(Category(ALL_SOURCES, "全部")) + results.resultSites.map {
+                    Category(it.key, "${it.name}(${results.siteResults(it.key).size})")
                 }
+                categoryAdapter.updateCategories(categories)
+                
+                // 刷新内容：正在看“全部”时只追加新增的去重结果
+                if (selected == null || selected.type_id == ALL_SOURCES) {
+                    contentAdapter.appendContent(added)
+                } else {
+                    contentAdapter.updateContent(results.all)
+                }
+            }
+            
+            android.util.Log.d("MediaActivity", "搜索完成: $keyword, 首个结果 ${firstResultMs}ms, " +
+                "全部完成 ${SystemClock.elapsedRealtime() - start}ms, ${results.resultSites.size}/${sites.size} 个站点有结果")
+            showLoading(false)
+            if (results.isEmpty()) {
+                // 不要用 showError，因为会覆盖列表，用 Toast 即可
+                Toast.makeText(this@MediaActivity, "未找到内容", Toast.LENGTH_SHORT).show()
             }
         }
-        
-        executor.shutdown()
+    }
+    
+    override fun onDestroy() {
+        super.onDestroy()
+        searchJob?.cancel()
+        searchEngine?.release()
     }
     
     private fun showLoading(show: Boolean) {
@@ -1006,5 +923,11 @@ class MediaActivity : FragmentActivity() {
 
     companion object {
         var wallpaperUrl: String? = null
+        
+        /**
+         * 搜索结果中“全部”分类的 type_id，其余分类的 type_id 是站点 key。
+         * 以控制字符开头，配置里的站点 key 不会与之相同
+         */
+        private const val ALL_SOURCES = "\u0000all"
     }
 }
@@ -12,6 +12,8 @@ import androidx.lifecycle.lifecycleScope
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import com.leafstudio.tvplayer.model.Channel
+import com.leafstudio.tvplayer.model.ChannelRepository
+import com.leafstudio.tvplayer.network.PlaylistCache
 import com.leafstudio.tvplayer.network.PlaylistLoader
 import com.leafstudio.tvplayer.parser.LiveParser
 import kotlinx.coroutines.launch
@@ -23,9 +25,9 @@ class PhoneMainActivity : AppCompatActivity() {
     
     private lateinit var recyclerView: RecyclerView
     private lateinit var adapter: ChannelAdapter
-    private val playlistLoader = PlaylistLoader()
+    private val playlistLoader by lazy { PlaylistLoader(PlaylistCache(this)) }
     private val liveParser = LiveParser()
-    private var allChannels: List<Channel> = emptyList()
+    private var playlist: ChannelRepository.Playlist? = null
     
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -43,29 +45,40 @@ class PhoneMainActivity : AppCompatActivity() {
     
     /**
      * 加载 M3U 播放列表
+     * 流式加载，频道边下载边显示
      */
     private fun loadPlaylist() {
         val playlistUrl = getString(R.string.default_playlist_url)
+        val playlist = ChannelRepository.create()
+        this.playlist = playlist
+        
+        // 设置适配器
+        adapter = ChannelAdapter(playlist.all) { channel ->
+            playChannel(channel)
+        }
+        recyclerView.adapter = adapter
         
         lifecycleScope.launch {
             try {
                 Toast.makeText(this@PhoneMainActivity, R.string.loading, Toast.LENGTH_SHORT).show()
                 
-                // 异步加载和解析
-                val content = playlistLoader.loadPlaylist(playlistUrl)
-                val channels = liveParser.parse(content)
-                allChannels = channels
-                
-                if (channels.isEmpty()) {
-                    Toast.makeText(this@PhoneMainActivity, R.string.no_channels, Toast.LENGTH_LONG).show()
-                    return@launch
+                // 异步加载和解析，每收到一批频道就追加显示
+                playlistLoader.streamPlaylist(playlistUrl, liveParser).collect { batch ->
+                    if (batch.reset) {
+                        val removed = playlist.size
+                        playlist.clear()
+                        adapter.notifyItemRangeRemoved(0, removed)
+                    }
+                    val start = playlist.size
+                    playlist.append(batch.added)
+                    batch.updated.forEach { (index, channel) -> playlist.replace(index, channel) }
+                    if (batch.added.isNotEmpty()) adapter.notifyItemRangeInserted(start, batch.added.size)
+                    batch.updated.keys.forEach { adapter.notifyItemChanged(it) }
                 }
                 
-                // 设置适配器
-                adapter = ChannelAdapter(channels) { channel ->
-                    playChannel(channel)
+                if (playlist.size == 0) {
+                    Toast.makeText(this@PhoneMainActivity, R.string.no_channels, Toast.LENGTH_LONG).show()
                 }
-                recyclerView.adapter = adapter
                 
             } catch (e: Exception) {
                 e.printStackTrace()
@@ -82,7 +95,9 @@ class PhoneMainActivity : AppCompatActivity() {
      * 播放选中的频道
      * 如果频道有多个线路，显示选择对话框
      */
-    private fun playChannel(channel: Channel) {
+    private fun playChannel(item: Channel) {
+        // 列表项可能是加载期间被追加线路前的旧对象，换成播放列表里的当前对象
+        val channel = playlist?.current(item) ?: item
         if (channel.getRouteCount() > 1) {
             // 多线路，显示选择对话框
             showRouteSelectionDialog(channel)
@@ -115,11 +130,13 @@ class PhoneMainActivity : AppCompatActivity() {
     private fun startPlayback(channel: Channel, routeIndex: Int) {
         channel.switchToRoute(routeIndex)
         
+        val playlist = this.playlist ?: return
+        
         // 找到频道在列表中的索引
-        val channelIndex = allChannels.indexOf(channel)
+        val channelIndex = playlist.indexOf(channel)
         
         val intent = Intent(this, PlaybackActivity::class.java).apply {
-            putParcelableArrayListExtra(PlaybackActivity.EXTRA_ALL_CHANNELS, ArrayList(allChannels))
+            putExtra(PlaybackActivity.EXTRA_PLAYLIST_HANDLE, playlist.handle)
             putExtra(PlaybackActivity.EXTRA_CURRENT_CHANNEL_INDEX, channelIndex)
         }
         startActivity(intent)
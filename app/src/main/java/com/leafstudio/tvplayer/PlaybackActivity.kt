@@ -10,7 +10,6 @@ import android.widget.TextView
 import android.widget.Toast
 import android.content.Intent
 import androidx.appcompat.app.AppCompatActivity
-import androidx.media3.common.MediaItem
 import androidx.media3.common.PlaybackException
 import androidx.media3.common.Player
 import androidx.media3.exoplayer.ExoPlayer
@@ -18,12 +17,16 @@ import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import com.leafstudio.tvplayer.databinding.ActivityPlaybackBinding
 import com.leafstudio.tvplayer.model.Channel
+import com.leafstudio.tvplayer.model.ChannelRepository
+import com.leafstudio.tvplayer.network.RouteProber
+import com.leafstudio.tvplayer.player.ZapEngine
 import com.leafstudio.tvplayer.ui.ChannelSidebarAdapter
 import com.leafstudio.tvplayer.ui.RouteSidebarAdapter
 import com.bumptech.glide.Glide
 import com.bumptech.glide.load.engine.DiskCacheStrategy
 import com.leafstudio.tvplayer.utils.UpdateManager
 import androidx.lifecycle.lifecycleScope
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 
 // 新增标记，用于 RTMP 自动切换防止递归
@@ -36,13 +39,21 @@ class PlaybackActivity : AppCompatActivity() {
     
     private lateinit var binding: ActivityPlaybackBinding
     private var player: ExoPlayer? = null
+    // 换台引擎：复用同一个 ExoPlayer 并预加载相邻频道
+    private var zapEngine: ZapEngine? = null
     
-    // 频道数据
-    private var allChannels: ArrayList<Channel>? = null
+    // 频道数据（来自进程内频道仓库）
+    private var playlist: ChannelRepository.Playlist? = null
+    private var allChannels: List<Channel>? = null
     private var currentChannelIndex: Int = 0
+    private var previousChannelIndex: Int = -1
     private var currentRouteIndex: Int = 0
     private var hasTriedAllRoutes: Boolean = false
     
+    // 线路探测：当前频道已尝试过的线路和正在进行的探测任务
+    private val triedRoutes = HashSet<Int>()
+    private var routeProbeJob: Job? = null
+    
     // 侧边栏
     private var channelSidebarAdapter: ChannelSidebarAdapter? = null
     private var routeSidebarAdapter: RouteSidebarAdapter? = null
@@ -96,9 +107,12 @@ class PlaybackActivity : AppCompatActivity() {
     private var currentVideoHeight = 0
     
     companion object {
-        const val EXTRA_ALL_CHANNELS = "all_channels"
+        const val EXTRA_PLAYLIST_HANDLE = "playlist_handle"
         const val EXTRA_CURRENT_CHANNEL_INDEX = "current_channel_index"
         
+        // 兼容旧版本：通过 Parcelable 传递完整频道列表
+        const val EXTRA_ALL_CHANNELS = "all_channels"
+        
         // 兼容旧版本
         const val EXTRA_CHANNEL_NAME = "channel_name"
         const val EXTRA_CHANNEL_URL = "channel_url"
@@ -119,10 +133,11 @@ class PlaybackActivity : AppCompatActivity() {
                     try {
                         android.util.Log.d("PlaybackActivity", "收到暂停广播，释放播放器资源")
                         
-                        // ExoPlayer: 停止并释放
+                        // ExoPlayer: 停止并释放（包括换台引擎的预加载数据）
                         player?.stop()
-                        player?.release()
                         player = null
+                        zapEngine?.release()
+                        zapEngine = null
                         
                         // IJKPlayer: 停止并释放
                         ijkMediaPlayer?.let {
@@ -370,27 +385,49 @@ class PlaybackActivity : AppCompatActivity() {
      * 加载频道数据
      */
     private fun loadChannelData() {
-        allChannels = intent.getParcelableArrayListExtra(EXTRA_ALL_CHANNELS)
+        val start = android.os.SystemClock.elapsedRealtime()
         currentChannelIndex = intent.getIntExtra(EXTRA_CURRENT_CHANNEL_INDEX, 0)
         
-        // 兼容旧版本
-        if (allChannels == null) {
-            val channelName = intent.getStringExtra(EXTRA_CHANNEL_NAME)
-            val channelUrls = intent.getStringArrayListExtra(EXTRA_CHANNEL_URLS)
-            currentRouteIndex = intent.getIntExtra(EXTRA_CURRENT_ROUTE_INDEX, 0)
-            
-            if (channelUrls != null && channelName != null) {
-                val channel = Channel(
-                    id = "0",
-                    name = channelName,
-                    urls = channelUrls,
-                    currentRouteIndex = currentRouteIndex
-                )
-                allChannels = arrayListOf(channel)
-                currentChannelIndex = 0
+        val handle = intent.getIntExtra(EXTRA_PLAYLIST_HANDLE, 0)
+        if (handle != 0) {
+            playlist = ChannelRepository.get(handle)
+            if (playlist == null) {
+                // 进程被回收后仓库为空，回到启动页重新加载播放列表
+                android.util.Log.w("PlaybackActivity", "播放列表句柄已失效: $handle，重新加载")
+                startActivity(Intent(this, MainActivity::class.java))
+                finish()
+                return
             }
         }
         
+        // 兼容旧版本
+        if (playlist == null) {
+            val channels: List<Channel>? = intent.getParcelableArrayListExtra(EXTRA_ALL_CHANNELS)
+                ?: run {
+                    val channelName = intent.getStringExtra(EXTRA_CHANNEL_NAME)
+                    val channelUrls = intent.getStringArrayListExtra(EXTRA_CHANNEL_URLS)
+                    currentRouteIndex = intent.getIntExtra(EXTRA_CURRENT_ROUTE_INDEX, 0)
+                    
+                    if (channelUrls != null && channelName != null) {
+                        currentChannelIndex = 0
+                        listOf(
+                            Channel(
+                                id = "0",
+                                name = channelName,
+                                urls = channelUrls,
+                                currentRouteIndex = currentRouteIndex
+                            )
+                        )
+                    } else {
+                        null
+                    }
+                }
+            if (channels != null) playlist = ChannelRepository.publish(channels)
+        }
+        
+        allChannels = playlist?.all
+        android.util.Log.d("PlaybackActivity", "频道数据加载完成: ${allChannels?.size ?: 0} 个, 耗时: ${android.os.SystemClock.elapsedRealtime() - start}ms")
+        
         if (allChannels.isNullOrEmpty()) {
             Toast.makeText(this, R.string.error_playing_video, Toast.LENGTH_SHORT).show()
             finish()
@@ -402,7 +439,7 @@ class PlaybackActivity : AppCompatActivity() {
             val prefs = getSharedPreferences("settings", MODE_PRIVATE)
             val lastChannelId = prefs.getString("last_channel_id", "")
             if (!lastChannelId.isNullOrEmpty()) {
-                val index = allChannels?.indexOfFirst { it.id == lastChannelId } ?: -1
+                val index = playlist?.indexOfId(lastChannelId) ?: -1
                 if (index >= 0) {
                     currentChannelIndex = index
                     // 恢复上次选择的线路
@@ -417,11 +454,10 @@ class PlaybackActivity : AppCompatActivity() {
      * 设置侧边栏
      */
     private fun setupSidebars() {
-        val channels = allChannels ?: return
+        val channels = playlist ?: return
         
-        // 按地区分组
-        val groupedChannels = channels.groupBy { it.group ?: "未分类" }
-        channelGroups = groupedChannels.keys.toList()
+        // 按地区分组（仓库中已建好分组索引）
+        channelGroups = channels.groupNames
         
         // 左侧：地区列表
         val groupRecyclerView = findViewById<RecyclerView>(R.id.group_recyclerview)
@@ -431,7 +467,7 @@ class PlaybackActivity : AppCompatActivity() {
         var initialGroupIndex = 0
         val currentChannel = getCurrentChannel()
         if (currentChannel != null) {
-            val currentGroup = currentChannel.group ?: "未分类"
+            val currentGroup = currentChannel.group ?: ChannelRepository.UNGROUPED
             initialGroupIndex = channelGroups.indexOf(currentGroup)
             if (initialGroupIndex < 0) initialGroupIndex = 0
         }
@@ -439,7 +475,7 @@ class PlaybackActivity : AppCompatActivity() {
         groupListAdapter = com.leafstudio.tvplayer.ui.GroupListAdapter(channelGroups, initialGroupIndex) { groupIndex ->
             // 点击地区，更新右侧频道列表
             val selectedGroup = channelGroups[groupIndex]
-            val channelsInGroup = groupedChannels[selectedGroup] ?: emptyList()
+            val channelsInGroup = channels.channelsInGroup(selectedGroup)
             
             // 更新右侧频道列表
             channelSidebarAdapter?.updateChannels(channelsInGroup, getCurrentChannel())
@@ -457,11 +493,11 @@ class PlaybackActivity : AppCompatActivity() {
         val channelRecyclerView = findViewById<RecyclerView>(R.id.channel_recyclerview)
         channelRecyclerView.layoutManager = LinearLayoutManager(this)
         
-        val selectedGroup = channelGroups.getOrNull(initialGroupIndex) ?: "未分类"
-        val selectedGroupChannels = groupedChannels[selectedGroup] ?: emptyList()
+        val selectedGroup = channelGroups.getOrNull(initialGroupIndex) ?: ChannelRepository.UNGROUPED
+        val selectedGroupChannels = channels.channelsInGroup(selectedGroup)
         
         channelSidebarAdapter = ChannelSidebarAdapter(selectedGroupChannels, getCurrentChannel()) { channel ->
-            // 通过频道对象查找全局索引
+            // 通过频道对象查找全局索引（按对象身份，O(1)）
             val globalIndex = channels.indexOf(channel)
             if (globalIndex >= 0) {
                 switchToChannel(globalIndex)
@@ -896,6 +932,7 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
         player.setOnPreparedListener {
             it.start()
             hasTriedAllRoutes = false
+            triedRoutes.clear()
             binding.ivLoadingBackground.visibility = View.GONE
             // 准备好后尝试更新一次比例
             updateTextureViewAspectRatio()
@@ -1127,6 +1164,7 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
                             android.util.Log.d("PlaybackActivity", "VLC: 开始播放")
                             binding.ivLoadingBackground.visibility = View.GONE
                             hasTriedAllRoutes = false
+                            triedRoutes.clear()
                             
                             // 延迟调用布局更新，确保 container 尺寸已就绪
                             textureView.post {
@@ -1306,10 +1344,7 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
     private fun fetchWeatherByCity(city: String) {
         Thread {
             try {
-                val client = okhttp3.OkHttpClient.Builder()
-                    .connectTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                    .readTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                    .build()
+                val client = com.leafstudio.tvplayer.utils.OkHttpUtil.quickClient
                 
                 val url = "https://wttr.in/$city?format=%l+%C+%t&lang=zh"
                 val request = okhttp3.Request.Builder()
@@ -1343,10 +1378,7 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
     private fun updateWeatherByIP() {
         Thread {
             try {
-                val client = okhttp3.OkHttpClient.Builder()
-                    .connectTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                    .readTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                    .build()
+                val client = com.leafstudio.tvplayer.utils.OkHttpUtil.quickClient
                 
                 // 使用天气预报API (tianqiapi.com) - 免费且稳定的国内服务
                 // IP自动定位版本
@@ -1513,8 +1545,8 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
         val channelNumber = digitBuffer.toString().toIntOrNull() ?: return
         digitBuffer.clear()
         
-        // 频道号从1开始，索引从0开始
-        val targetIndex = channelNumber - 1
+        // 按台号索引查找，找不到时按频道号从1开始、索引从0开始换算
+        val targetIndex = playlist?.indexOfNumber(channelNumber)?.takeIf { it >= 0 } ?: (channelNumber - 1)
         
         if (targetIndex in allChannels?.indices ?: IntRange.EMPTY) {
             Toast.makeText(this, getString(R.string.switching_channel, channelNumber), Toast.LENGTH_SHORT).show()
@@ -1581,13 +1613,19 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
     private fun switchToChannel(index: Int) {
         if (index !in allChannels?.indices ?: IntRange.EMPTY) return
         
+        if (index != currentChannelIndex) previousChannelIndex = currentChannelIndex
         currentChannelIndex = index
         hasTriedAllRoutes = false
+        triedRoutes.clear()
         decoderRetryCount = 0 // 重置解码器重试次数
         
         // 保存当前频道ID和线路索引
         val currentChannel = getCurrentChannel()
         if (currentChannel != null) {
+            // 之前探测到当前线路不可用时，直接从评分最好的线路起播
+            val betterRoute = RouteProber.betterRoute(currentChannel)
+            if (betterRoute >= 0) currentChannel.switchToRoute(betterRoute)
+            
             val prefs = getSharedPreferences("settings", MODE_PRIVATE)
             prefs.edit()
                 .putString("last_channel_id", currentChannel.id)
@@ -1600,7 +1638,7 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
         
         // 更新地区列表选中状态
         if (currentChannel != null && channelGroups.isNotEmpty()) {
-            val currentGroup = currentChannel.group ?: "未分类"
+            val currentGroup = currentChannel.group ?: ChannelRepository.UNGROUPED
             val groupIndex = channelGroups.indexOf(currentGroup)
             if (groupIndex >= 0) {
                 groupListAdapter?.updateSelectedGroup(groupIndex)
@@ -1632,6 +1670,7 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
         
         if (currentChannel.switchToRoute(routeIndex)) {
             hasTriedAllRoutes = false
+            triedRoutes.clear()
             decoderRetryCount = 0 // 重置解码器重试次数
             
             // 保存线路选择
@@ -1692,6 +1731,9 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
                 1 -> initializeIJKPlayer(currentUrl, true) // IJK硬解
                 2 -> initializeVLCPlayer(currentUrl) // VLC软解
             }
+            
+            // 多线路频道在后台探测各线路
+            probeRoutes()
         } catch (e: Exception) {
             e.printStackTrace()
             Toast.makeText(this, "播放器初始化失败: ${e.message}", Toast.LENGTH_LONG).show()
@@ -1722,167 +1764,56 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
      */
     private fun initializeExoPlayer(currentUrl: String) {
         try {
-            val currentChannel = getCurrentChannel()
-            val userAgent = currentChannel?.ua ?: "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36"
+            val currentChannel = getCurrentChannel() ?: run {
+                Toast.makeText(this, "无法获取频道信息", Toast.LENGTH_SHORT).show()
+                finish()
+                return
+            }
             
-            // 配置 HttpDataSource 工厂
-            val httpDataSourceFactory = androidx.media3.datasource.DefaultHttpDataSource.Factory()
-                .setUserAgent(userAgent)
-                .setAllowCrossProtocolRedirects(true)
-                .setConnectTimeoutMs(10000)
-                .setReadTimeoutMs(10000)
+            // 复用换台引擎中的播放器，不再每次换台重建
+            val engine = zapEngine ?: createZapEngine().also { zapEngine = it }
+            val exoPlayer = engine.player
+            player = exoPlayer
             
-            // 设置自定义请求头
-            // 设置自定义请求头
-            currentChannel?.headers?.forEach { (key, value) ->
-                httpDataSourceFactory.setDefaultRequestProperties(mapOf(key to value))
-            }
+            // 清理 IJKPlayer 容器
+            binding.flIjkContainer.removeAllViews()
+            binding.flIjkContainer.visibility = View.GONE
             
-            // 创建数据源工厂,添加错误处理防止 RTMP 闪退
-            val defaultDataSourceFactory = androidx.media3.datasource.DefaultDataSource.Factory(this, httpDataSourceFactory)
+            // 绑定 ExoPlayer
+            binding.playerView.player = exoPlayer
             
-            val dataSourceFactory = try {
-                // 尝试创建 RTMP 数据源工厂
-                val rtmpDataSourceFactory = androidx.media3.datasource.rtmp.RtmpDataSource.Factory()
-                
-                // 创建支持多协议的数据源工厂
-                androidx.media3.datasource.DataSource.Factory {
-                    if (currentUrl.startsWith("rtmp://", ignoreCase = true) || 
-                        currentUrl.startsWith("rtmps://", ignoreCase = true)) {
-                        try {
-                            rtmpDataSourceFactory.createDataSource()
-                        } catch (e: Exception) {
-                            e.printStackTrace()
-                            defaultDataSourceFactory.createDataSource()
-                        }
-                    } else {
-                        defaultDataSourceFactory.createDataSource()
-                    }
-                }
-            } catch (e: Exception) {
-                e.printStackTrace()
-                // 如果 RTMP 支持不可用,回退到默认数据源
-                defaultDataSourceFactory
+            // 确保 PlayerView 可见并强制刷新
+            binding.playerView.visibility = View.VISIBLE
+            binding.playerView.requestLayout()
+            binding.playerView.invalidate()
+            
+            // 设置视频缩放模式
+            val resizeMode = when (aspectRatioMode) {
+                0 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FILL // 全屏
+                1 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_ZOOM // 剪裁
+                2 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FIT // 16:9
+                3 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FIXED_WIDTH // 原始
+                4 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FIXED_HEIGHT // 4:3
+                5 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FILL // 填充
+                else -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FILL
             }
+            binding.playerView.resizeMode = resizeMode
             
-            // 配置 LoadControl 以优化缓冲
-            val loadControl = androidx.media3.exoplayer.DefaultLoadControl.Builder()
-                .setBufferDurationsMs(
-                    15000,  // minBufferMs - 最小缓冲
-                    50000,  // maxBufferMs - 最大缓冲
-                    2500,   // bufferForPlaybackMs - 开始播放所需缓冲
-                    5000    // bufferForPlaybackAfterRebufferMs - 重新缓冲后播放所需缓冲
-                )
-                .build()
-
-            // 配置音频轨道选择器 - 解决组播源有图没声音的问题
-            val trackSelector = androidx.media3.exoplayer.trackselection.DefaultTrackSelector(this)
-
-            // 配置音频参数以确保组播源音频兼容性（使用1.2.1兼容API）
-            val parametersBuilder = trackSelector.parameters.buildUpon()
-                .setPreferredAudioLanguage("zh") // 优先中文音频
-                .setMaxAudioChannelCount(8) // 支持多声道音频（AC3、DTS等）
-                .setPreferredAudioMimeType("audio/mp4a-latm") // 优先选择AAC音频格式
-
-            trackSelector.setParameters(parametersBuilder)
-
-            // 创建 ExoPlayer 实例，支持所有主流协议
-            // ExoPlayer 自动检测并支持: HLS, DASH, SmoothStreaming, RTSP, RTMP, HTTP Progressive
-            player = ExoPlayer.Builder(this)
-                .setTrackSelector(trackSelector) // 添加音频轨道选择器
-                .setMediaSourceFactory(
-                    androidx.media3.exoplayer.source.DefaultMediaSourceFactory(dataSourceFactory)
-                )
-                .setLoadControl(loadControl)
-                .build().also { exoPlayer ->
-                
-                // 清理 IJKPlayer 容器
-                binding.flIjkContainer.removeAllViews()
-                binding.flIjkContainer.visibility = View.GONE
-                
-                // 绑定 ExoPlayer
-                binding.playerView.player = exoPlayer
-                
-                // 确保 PlayerView 可见并强制刷新
-                binding.playerView.visibility = View.VISIBLE
-                binding.playerView.requestLayout()
-                binding.playerView.invalidate()
-                
-                // 设置视频缩放模式
-                val resizeMode = when (aspectRatioMode) {
-                    0 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FILL // 全屏
-                    1 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_ZOOM // 剪裁
-                    2 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FIT // 16:9
-                    3 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FIXED_WIDTH // 原始
-                    4 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FIXED_HEIGHT // 4:3
-                    5 -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FILL // 填充
-                    else -> androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FILL
-                }
-                binding.playerView.resizeMode = resizeMode
-                
-                // 设置媒体项
-                try {
-                    val mediaItemBuilder = MediaItem.Builder().setUri(currentUrl)
-                    
-                    // 针对 PHP/ASP/JSP 等动态脚本链接，通常是 HLS 直播流，强制指定为 M3U8
-                    // 解决如 1905.php 等链接无法识别的问题
-                    if (currentUrl.contains(".php", true) || 
-                        currentUrl.contains(".asp", true) || 
-                        currentUrl.contains(".jsp", true)) {
-                        mediaItemBuilder.setMimeType(androidx.media3.common.MimeTypes.APPLICATION_M3U8)
-                    }
-                    
-                    exoPlayer.setMediaItem(mediaItemBuilder.build())
-                } catch (e: Exception) {
-                    e.printStackTrace()
-                    Toast.makeText(this, "无效的视频 URL: ${e.message}", Toast.LENGTH_LONG).show()
-                    finish()
-                    return
-                }
-                
-                // 添加播放器监听器
-                exoPlayer.addListener(object : Player.Listener {
-                    override fun onPlayerError(error: PlaybackException) {
-                        handlePlaybackError(error)
-                    }
-                    
-                    override fun onPlaybackStateChanged(playbackState: Int) {
-                        when (playbackState) {
-                            Player.STATE_BUFFERING -> {
-                                // 缓冲中，显示加载背景
-                                binding.ivLoadingBackground.visibility = View.VISIBLE
-                            }
-                            Player.STATE_READY -> {
-                                // 播放器准备就绪，重置重试标志
-                                hasTriedAllRoutes = false
-                                // 隐藏加载背景
-                                binding.ivLoadingBackground.visibility = View.GONE
-                                // 再次确保 PlayerView 可见
-                                binding.playerView.visibility = View.VISIBLE
-                            }
-                            Player.STATE_ENDED -> {
-                                // 播放结束
-                                finish()
-                            }
-                        }
-                    }
-                    
-                    override fun onVideoSizeChanged(videoSize: androidx.media3.common.VideoSize) {
-                        super.onVideoSizeChanged(videoSize)
-                        val resolution = "${videoSize.width}x${videoSize.height}"
-                        binding.tvVideoResolution.text = resolution
-                    }
-                })
+            // 设置媒体项并自动播放（相邻频道已预加载时直接使用已缓冲的数据）
+            try {
+                engine.play(currentChannelIndex, currentChannel, currentUrl)
+            } catch (e: Exception) {
+                e.printStackTrace()
+                Toast.makeText(this, "无效的视频 URL: ${e.message}", Toast.LENGTH_LONG).show()
+                finish()
+                return
             }
-                
-            // 准备播放器并自动播放
-            player?.prepare()
-            player?.playWhenReady = true
             
-
+            // 预加载相邻频道，为下一次换台做准备
+            preloadNeighbourChannels()
             
             // 显示当前线路信息
-            if (currentChannel != null && currentChannel.getRouteCount() > 1) {
+            if (currentChannel.getRouteCount() > 1) {
                 showCurrentRouteInfo()
             }
             
@@ -1893,6 +1824,70 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
         }
     }
     
+    /**
+     * 创建换台引擎，播放器监听器只注册一次
+     */
+    private fun createZapEngine(): ZapEngine {
+        val engine = ZapEngine(this)
+        engine.player.addListener(object : Player.Listener {
+            override fun onPlayerError(error: PlaybackException) {
+                handlePlaybackError(error)
+            }
+            
+            override fun onPlaybackStateChanged(playbackState: Int) {
+                when (playbackState) {
+                    Player.STATE_BUFFERING -> {
+                        // 缓冲中，显示加载背景
+                        binding.ivLoadingBackground.visibility = View.VISIBLE
+                    }
+                    Player.STATE_READY -> {
+                        // 播放器准备就绪，重置重试标志
+                        hasTriedAllRoutes = false
+                        triedRoutes.clear()
+                        // 隐藏加载背景
+                        binding.ivLoadingBackground.visibility = View.GONE
+                        // 再次确保 PlayerView 可见
+                        binding.playerView.visibility = View.VISIBLE
+                    }
+                    Player.STATE_ENDED -> {
+                        // 播放结束
+                        finish()
+                    }
+                }
+            }
+            
+            override fun onVideoSizeChanged(videoSize: androidx.media3.common.VideoSize) {
+                super.onVideoSizeChanged(videoSize)
+                val resolution = "${videoSize.width}x${videoSize.height}"
+                binding.tvVideoResolution.text = resolution
+            }
+        })
+        return engine
+    }
+    
+    /**
+     * 预加载相邻频道（N±1）和上一个观看的频道
+     */
+    private fun preloadNeighbourChannels() {
+        val engine = zapEngine ?: return
+        val channels = allChannels ?: return
+        if (channels.size < 2) return
+        
+        val size = channels.size
+        val indices = linkedSetOf(
+            (currentChannelIndex + 1) % size,
+            (currentChannelIndex - 1 + size) % size
+        )
+        if (previousChannelIndex in channels.indices) indices.add(previousChannelIndex)
+        indices.remove(currentChannelIndex)
+        
+        try {
+            engine.preload(indices.map { it to channels[it] })
+        } catch (e: Exception) {
+            e.printStackTrace()
+        }
+    }
+    
     /**
      * 初始化 IJKPlayer
      */
@@ -1927,20 +1922,8 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
         
         // 如果有多个线路且还没尝试完所有线路
         if (currentChannel.getRouteCount() > 1 && !hasTriedAllRoutes) {
-            if (currentChannel.switchToNextRoute()) {
-                // 尝试下一个线路
-                Toast.makeText(
-                    this,
-                    getString(R.string.auto_switching_route, currentChannel.currentRouteIndex + 1),
-                    Toast.LENGTH_SHORT
-                ).show()
-                
-                // 切换线路时重置解码器重试次数（虽然switchToRoute里已经重置了，这里再次确认）
-                decoderRetryCount = 0
-                
-                releasePlayer()
-                initializePlayer()
-            } else {
+            RouteProber.reportFailure(currentChannel.getCurrentUrl())
+            if (!failoverRoute()) {
                 // 已尝试所有线路，切换到下一个频道
                 hasTriedAllRoutes = true
                 switchToNextChannel()
@@ -1951,6 +1934,54 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
         }
     }
 
+    /**
+     * 切换到评分最好的未尝试线路
+     * @return 是否还有可尝试的线路
+     */
+    private fun failoverRoute(): Boolean {
+        val currentChannel = getCurrentChannel() ?: return false
+        triedRoutes.add(currentChannel.currentRouteIndex)
+        val nextRoute = RouteProber.nextRoute(currentChannel, triedRoutes)
+        if (nextRoute < 0 || !currentChannel.switchToRoute(nextRoute)) return false
+        
+        Toast.makeText(
+            this,
+            getString(R.string.auto_switching_route, currentChannel.currentRouteIndex + 1),
+            Toast.LENGTH_SHORT
+        ).show()
+        
+        // 切换线路时重置解码器重试次数
+        decoderRetryCount = 0
+        
+        releasePlayer()
+        initializePlayer()
+        return true
+    }
+    
+    /**
+     * 后台并发探测当前频道的所有线路
+     *
+     * 探测完成时如果仍在加载且当前线路已被判定为不可用，立即切换到评分最好的线路，
+     * 不再等待播放器的读超时。
+     */
+    private fun probeRoutes() {
+        val currentChannel = getCurrentChannel() ?: return
+        if (currentChannel.getRouteCount() < 2) return
+        val channelIndex = currentChannelIndex
+        
+        routeProbeJob?.cancel()
+        routeProbeJob = lifecycleScope.launch {
+            RouteProber.probe(currentChannel)
+            if (channelIndex != currentChannelIndex) return@launch
+            // 加载背景已隐藏说明已经起播
+            if (binding.ivLoadingBackground.visibility != View.VISIBLE) return@launch
+            if (RouteProber.betterRoute(currentChannel) >= 0) {
+                android.util.Log.d("PlaybackActivity", "探测到当前线路不可用，立即切换线路")
+                failoverRoute()
+            }
+        }
+    }
+    
     /**
      * 切换到下一个频道
      */
@@ -2003,6 +2034,10 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
         
         releasePlayer()
         
+        // 释放换台引擎（播放器和预加载数据）
+        zapEngine?.release()
+        zapEngine = null
+        
         // 真正释放 VLC 资源（仅在Activity销毁时）
         try {
             vlcMediaPlayer?.release()
@@ -2028,10 +2063,14 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
      * 释放播放器资源
      */
     private fun releasePlayer() {
-        // 释放 ExoPlayer
+        // 释放 ExoPlayer（换台引擎中的播放器只停止，保留给下次换台复用）
         player?.let { exoPlayer ->
-            exoPlayer.stop()
-            exoPlayer.release()
+            if (exoPlayer === zapEngine?.player) {
+                zapEngine?.stop()
+            } else {
+                exoPlayer.stop()
+                exoPlayer.release()
+            }
         }
         player = null
         
@@ -2111,10 +2150,7 @@ private fun initializeIJKPlayer(currentUrl: String, useHardwareDecoder: Boolean)
         // 后台检查更新
         Thread {
             try {
-                val client = okhttp3.OkHttpClient.Builder()
-                    .connectTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                    .readTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                    .build()
+                val client = com.leafstudio.tvplayer.utils.OkHttpUtil.quickClient
                 
                 val request = okhttp3.Request.Builder()
                     .url("https://yezheng.dpdns.org/tv/update/version.json")
@@ -2585,10 +2621,7 @@ private fun toggleAspectRatio() {
     private fun loadMarqueeText() {
         Thread {
             try {
-                val client = okhttp3.OkHttpClient.Builder()
-                    .connectTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                    .readTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                    .build()
+                val client = com.leafstudio.tvplayer.utils.OkHttpUtil.quickClient
                 
                 val request = okhttp3.Request.Builder()
                     .url("https://yezheng.dpdns.org/tv/hi.txt")
@@ -2774,10 +2807,7 @@ private fun toggleAspectRatio() {
                 /*
                 Thread {
                     try {
-                        val client = okhttp3.OkHttpClient.Builder()
-                            .connectTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                            .readTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                            .build()
+                        val client = com.leafstudio.tvplayer.utils.OkHttpUtil.quickClient
                         
                         val request = okhttp3.Request.Builder()
                             .url("https://yezheng.dpdns.org/tv/api/login/check?ticket=$ticket")
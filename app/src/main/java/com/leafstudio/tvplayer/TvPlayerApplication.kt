@@ -0,0 +1,16 @@
+package com.leafstudio.tvplayer
+
+import android.app.Application
+import com.leafstudio.tvplayer.utils.OkHttpUtil
+
+/**
+ * 应用入口，初始化全局共享的组件
+ */
+class TvPlayerApplication : Application() {
+
+    override fun onCreate() {
+        super.onCreate()
+        // 共享 OkHttp 客户端的磁盘缓存需要在任何网络请求之前初始化
+        OkHttpUtil.init(this)
+    }
+}
@@ -30,8 +30,16 @@ data class Channel(
      * 获取当前选择的线路 URL
      */
     fun getCurrentUrl(): String {
-        val rawUrl = if (urls.isNotEmpty() && currentRouteIndex in urls.indices) {
-            urls[currentRouteIndex]
+        return getRouteUrl(currentRouteIndex)
+    }
+    
+    /**
+     * 获取指定线路的 URL（已清理 $ 线路名和非法字符）
+     * @param index 线路索引，越界时返回第一个线路
+     */
+    fun getRouteUrl(index: Int): String {
+        val rawUrl = if (urls.isNotEmpty() && index in urls.indices) {
+            urls[index]
         } else {
             urls.firstOrNull() ?: ""
         }
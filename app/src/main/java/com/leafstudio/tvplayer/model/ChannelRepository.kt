@@ -0,0 +1,135 @@
+package com.leafstudio.tvplayer.model
+
+import java.util.IdentityHashMap
+
+/**
+ * 进程内频道仓库
+ *
+ * 播放列表解析后保存在这里，Activity 之间只传递播放列表句柄和频道索引，
+ * 避免把上万个 [Channel] 通过 Parcelable 序列化进 Intent（会超出 Binder 事务上限）。
+ * 进程被回收后句柄失效，调用方需要重新加载播放列表。
+ */
+object ChannelRepository {
+
+    /**
+     * 未设置分组的频道统一归入的分组名
+     */
+    const val UNGROUPED = "未分类"
+
+    /**
+     * 最多保留的播放列表数，超出后淘汰最早创建的
+     */
+    private const val MAX_PLAYLISTS = 2
+
+    private var nextHandle = 1
+    private val playlists = LinkedHashMap<Int, Playlist>()
+
+    /**
+     * 创建一个空的播放列表，之后可通过 [Playlist.append] 增量填充
+     */
+    @Synchronized
+    fun create(): Playlist {
+        val playlist = Playlist(nextHandle++)
+        playlists[playlist.handle] = playlist
+        while (playlists.size > MAX_PLAYLISTS) {
+            playlists.remove(playlists.keys.first())
+        }
+        return playlist
+    }
+
+    /**
+     * 用完整的频道列表创建播放列表
+     */
+    fun publish(channels: List<Channel>): Playlist {
+        return create().also { it.append(channels) }
+    }
+
+    @Synchronized
+    fun get(handle: Int): Playlist? = playlists[handle]
+
+    /**
+     * 播放列表，按索引、id、台号和分组建立索引
+     *
+     * 只应在主线程读写。
+     */
+    class Playlist internal constructor(val handle: Int) {
+        private val channels = ArrayList<Channel>()
+        private val byId = HashMap<String, Int>()
+        private val byNumber = HashMap<Int, Int>()
+        private val byIdentity = IdentityHashMap<Channel, Int>()
+        private val groups = LinkedHashMap<String, MutableList<Channel>>()
+
+        val size: Int
+            get() = channels.size
+
+        /**
+         * 全部频道（只读视图）
+         */
+        val all: List<Channel>
+            get() = channels
+
+        /**
+         * 分组名，按首次出现的顺序
+         */
+        val groupNames: List<String>
+            get() = groups.keys.toList()
+
+        operator fun get(index: Int): Channel? = channels.getOrNull(index)
+
+        /**
+         * 追加一批频道
+         */
+        fun append(batch: List<Channel>) {
+            channels.ensureCapacity(channels.size + batch.size)
+            for (channel in batch) {
+                val index = channels.size
+                channels.add(channel)
+                byIdentity[channel] = index
+                if (!byId.containsKey(channel.id)) byId[channel.id] = index
+                if (channel.number > 0 && !byNumber.containsKey(channel.number)) byNumber[channel.number] = index
+                groups.getOrPut(channel.group ?: UNGROUPED) { ArrayList() }.add(channel)
+            }
+        }
+
+        /**
+         * 清空全部频道，句柄保持不变
+         */
+        fun clear() {
+            channels.clear()
+            byId.clear()
+            byNumber.clear()
+            byIdentity.clear()
+            groups.clear()
+        }
+
+        /**
+         * 用新的频道对象替换指定索引处的频道，id 与台号索引保持不变
+         *
+         * 旧对象仍映射到同一索引，已经拿到旧对象的界面（列表项、点击回调）通过 [indexOf] 依然能找到它。
+         */
+        fun replace(index: Int, channel: Channel) {
+            val old = channels.getOrNull(index) ?: return
+            channels[index] = channel
+            byIdentity[channel] = index
+            val group = groups[old.group ?: UNGROUPED] ?: return
+            val position = group.indexOfFirst { it === old }
+            if (position >= 0) group[position] = channel
+        }
+
+        /**
+         * 频道对象在列表中的索引，按对象身份查找，被 [replace] 替换掉的旧对象同样有效
+         */
+        fun indexOf(channel: Channel): Int = byIdentity[channel] ?: -1
+
+        /**
+         * 同一索引处的当前频道对象，[channel] 已被 [replace] 替换时返回新对象
+         */
+        fun current(channel: Channel): Channel = get(indexOf(channel)) ?: channel
+
+        fun indexOfId(id: String): Int = byId[id] ?: -1
+
+        fun indexOfNumber(number: Int): Int = byNumber[number] ?: -1
+
+        fun channelsInGroup(group: String): List<Channel> = groups[group] ?: emptyList()
+    }
+}
@@ -0,0 +1,190 @@
+package com.leafstudio.tvplayer.network
+
+import android.content.Context
+import com.leafstudio.tvplayer.model.Channel
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.security.MessageDigest
+
+/**
+ * 播放列表磁盘缓存
+ *
+ * 每个播放列表 URL 对应两个文件：
+ * - `.meta` ETag / Last-Modified，用于条件请求
+ * - `.snap` 解析后频道列表的二进制快照，命中 304 或离线时直接加载，跳过解析
+ */
+class PlaylistCache(context: Context) {
+
+    companion object {
+        private const val TAG = "PlaylistCache"
+        private const val DIR_NAME = "playlist"
+        private const val SNAPSHOT_MAGIC = 0x4C534350 // "LSCP"
+        private const val SNAPSHOT_VERSION = 1
+    }
+
+    /**
+     * 缓存的校验信息
+     */
+    data class Validators(val etag: String?, val lastModified: String?)
+
+    private val dir = File(context.applicationContext.cacheDir, DIR_NAME)
+
+    /**
+     * 读取校验信息，缓存不完整时返回 null
+     */
+    fun validators(url: String): Validators? {
+        val meta = file(url, "meta")
+        if (!meta.exists() || !file(url, "snap").exists()) return null
+        return try {
+            val lines = meta.readLines()
+            Validators(lines.getOrNull(0)?.ifEmpty { null }, lines.getOrNull(1)?.ifEmpty { null })
+        } catch (e: Exception) {
+            e.printStackTrace()
+            null
+        }
+    }
+
+    /**
+     * 读取频道快照，不存在或损坏时返回 null
+     */
+    fun readSnapshot(url: String): List<Channel>? {
+        val snap = file(url, "snap")
+        if (!snap.exists()) return null
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(snap))).use { input ->
+                if (input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION) return null
+                val count = input.readInt()
+                val channels = ArrayList<Channel>(count)
+                repeat(count) { channels.add(readChannel(input)) }
+                channels
+            }
+        } catch (e: Exception) {
+            android.util.Log.e(TAG, "读取频道快照失败: $url", e)
+            null
+        }
+    }
+
+    /**
+     * 提交一次完整下载：频道快照和校验信息
+     */
+    fun commit(url: String, channels: List<Channel>, validators: Validators) {
+        try {
+            dir.mkdirs()
+            val snapTmp = file(url, "snap.tmp")
+            DataOutputStream(BufferedOutputStream(FileOutputStream(snapTmp))).use { output ->
+                output.writeInt(SNAPSHOT_MAGIC)
+                output.writeInt(SNAPSHOT_VERSION)
+                output.writeInt(channels.size)
+                channels.forEach { writeChannel(output, it) }
+            }
+            val metaTmp = file(url, "meta.tmp")
+            metaTmp.writeText("${validators.etag.orEmpty()}\n${validators.lastModified.orEmpty()}\n")
+
+            replace(snapTmp, file(url, "snap"))
+            replace(metaTmp, file(url, "meta"))
+        } catch (e: Exception) {
+            android.util.Log.e(TAG, "写入播放列表缓存失败: $url", e)
+            discard(url)
+        }
+    }
+
+    /**
+     * 丢弃未提交的临时文件
+     */
+    fun discard(url: String) {
+        file(url, "snap.tmp").delete()
+        file(url, "meta.tmp").delete()
+    }
+
+    private fun replace(from: File, to: File) {
+        if (!from.exists()) return
+        if (!from.renameTo(to)) {
+            from.copyTo(to, overwrite = true)
+            from.delete()
+        }
+    }
+
+    private fun file(url: String, ext: String): File {
+        return File(dir, "${key(url)}.$ext")
+    }
+
+    private fun key(url: String): String {
+        val digest = MessageDigest.getInstance("MD5").digest(url.toByteArray())
+        return digest.joinToString("") { "%02x".format(it) }
+    }
+
+    private fun writeChannel(output: DataOutputStream, channel: Channel) {
+        writeString(output, channel.id)
+        writeString(output, channel.name)
+        output.writeInt(channel.urls.size)
+        channel.urls.forEach { writeString(output, it) }
+        writeNullable(output, channel.logo)
+        writeNullable(output, channel.group)
+        writeNullable(output, channel.ua)
+        val headers = channel.headers
+        output.writeInt(headers?.size ?: -1)
+        headers?.forEach { (key, value) ->
+            writeString(output, key)
+            writeString(output, value)
+        }
+        writeNullable(output, channel.drmKey)
+        writeNullable(output, channel.drmType)
+        output.writeInt(channel.number)
+    }
+
+    private fun readChannel(input: DataInputStream): Channel {
+        val id = readString(input)
+        val name = readString(input)
+        val urlCount = input.readInt()
+        val urls = ArrayList<String>(urlCount)
+        repeat(urlCount) { urls.add(readString(input)) }
+        val logo = readNullable(input)
+        val group = readNullable(input)
+        val ua = readNullable(input)
+        val headerCount = input.readInt()
+        val headers = if (headerCount < 0) null else HashMap<String, String>(headerCount).also { map ->
+            repeat(headerCount) { map[readString(input)] = readString(input) }
+        }
+        return Channel(
+            id = id,
+            name = name,
+            urls = urls,
+            logo = logo,
+            group = group,
+            ua = ua,
+            headers = headers,
+            drmKey = readNullable(input),
+            drmType = readNullable(input),
+            number = input.readInt()
+        )
+    }
+
+    /**
+     * writeUTF 限制 64KB，URL 可能携带很长的参数，因此统一按长度加字节数组写入
+     */
+    private fun writeString(output: DataOutputStream, value: String) {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        output.writeInt(bytes.size)
+        output.write(bytes)
+    }
+
+    private fun readString(input: DataInputStream): String {
+        val bytes = ByteArray(input.readInt())
+        input.readFully(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    private fun writeNullable(output: DataOutputStream, value: String?) {
+        output.writeBoolean(value != null)
+        if (value != null) writeString(output, value)
+    }
+
+    private fun readNullable(input: DataInputStream): String? {
+        return if (input.readBoolean()) readString(input) else null
+    }
+}
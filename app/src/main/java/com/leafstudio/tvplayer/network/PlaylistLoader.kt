@@ -1,28 +1,73 @@
 package com.leafstudio.tvplayer.network
 
+import android.os.SystemClock
+import com.leafstudio.tvplayer.model.Channel
+import com.leafstudio.tvplayer.parser.LiveParser
+import com.leafstudio.tvplayer.utils.OkHttpUtil
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
 import kotlinx.coroutines.withContext
-import okhttp3.OkHttpClient
 import okhttp3.Request
 import java.io.IOException
-import java.util.concurrent.TimeUnit
 
 /**
  * 播放列表加载器
+ * @param cache 播放列表磁盘缓存，为 null 时每次都完整下载并解析
  */
-class PlaylistLoader {
-    
-    
-    private val client = OkHttpClient.Builder()
-        .connectTimeout(30, TimeUnit.SECONDS)
-        .readTimeout(30, TimeUnit.SECONDS)
-        .writeTimeout(30, TimeUnit.SECONDS)
-        .followRedirects(true)
-        .followSslRedirects(true)
-        // 移除代理限制，使用系统默认
-        // .proxy(java.net.Proxy.NO_PROXY)
+class PlaylistLoader(private val cache: PlaylistCache? = null) {
+
+    companion object {
+        private const val TAG = "PlaylistLoader"
+        private const val USER_AGENT = "LeafStudio TV Player/2.1.7"
+
+        /**
+         * 流式加载时每批最多累积的频道数
+         */
+        const val DEFAULT_BATCH_SIZE = 200
+    }
+
+    /**
+     * 流式加载统计
+     * @property firstByteMs 从发起请求到收到响应头的耗时
+     * @property firstChannelMs 从发起请求到第一批频道发出的耗时（首频道可用时间）
+     * @property totalMs 整个播放列表下载并解析完成的耗时
+     * @property channelCount 频道总数
+     * @property fromCache 是否直接使用了缓存快照（304 或离线）
+     */
+    data class LoadStats(
+        val firstByteMs: Long,
+        val firstChannelMs: Long,
+        val totalMs: Long,
+        val channelCount: Int,
+        val fromCache: Boolean = false
+    )
+
+    /**
+     * 流式加载发出的一批变化
+     * @property added 新增的频道，按顺序追加到列表末尾
+     * @property updated 已发出的频道被追加线路后的新快照，键为频道索引
+     * @property reset 为 true 时之前发出的频道作废，调用方应先清空再追加 [added]（下载中途失败改用缓存快照时）
+     */
+    data class Batch(
+        val added: List<Channel>,
+        val updated: Map<Int, Channel> = emptyMap(),
+        val reset: Boolean = false
+    )
+
+    /**
+     * 最近一次流式加载的统计数据
+     */
+    @Volatile
+    var lastStats: LoadStats? = null
+        private set
+
+    // 播放列表由 PlaylistCache 自行缓存，不再写入 HTTP 缓存
+    private val client = OkHttpUtil.client.newBuilder()
+        .cache(null)
         .build()
-    
+
     /**
      * 从 URL 加载播放列表内容
      * @param url 播放列表 URL
@@ -30,40 +75,157 @@ class PlaylistLoader {
      * @throws IOException 网络错误
      */
     suspend fun loadPlaylist(url: String): String = withContext(Dispatchers.IO) {
-        android.util.Log.d("PlaylistLoader", "开始加载播放列表: $url")
-        
+        android.util.Log.d(TAG, "开始加载播放列表: $url")
+
         try {
-            val request = Request.Builder()
-                .url(url)
-                .addHeader("User-Agent", "LeafStudio TV Player/2.1.7")
-                .build()
-            
-            android.util.Log.d("PlaylistLoader", "发送网络请求...")
-            
+            val request = buildRequest(url)
+
+            android.util.Log.d(TAG, "发送网络请求...")
+
             client.newCall(request).execute().use { response ->
-                android.util.Log.d("PlaylistLoader", "响应状态码: ${response.code}")
-                
+                android.util.Log.d(TAG, "响应状态码: ${response.code}")
+
                 if (!response.isSuccessful) {
                     val errorMsg = "加载播放列表失败: HTTP ${response.code}"
-                    android.util.Log.e("PlaylistLoader", errorMsg)
+                    android.util.Log.e(TAG, errorMsg)
                     throw IOException(errorMsg)
                 }
-                
+
                 val content = response.body?.string()
                 if (content.isNullOrEmpty()) {
                     val errorMsg = "播放列表内容为空"
-                    android.util.Log.e("PlaylistLoader", errorMsg)
+                    android.util.Log.e(TAG, errorMsg)
                     throw IOException(errorMsg)
                 }
-                
-                android.util.Log.d("PlaylistLoader", "播放列表加载成功，长度: ${content.length} 字节")
-                android.util.Log.d("PlaylistLoader", "内容前100字符: ${content.take(100)}")
-                
+
+                android.util.Log.d(TAG, "播放列表加载成功，长度: ${content.length} 字节")
+                android.util.Log.d(TAG, "内容前100字符: ${content.take(100)}")
+
                 content
             }
         } catch (e: Exception) {
-            android.util.Log.e("PlaylistLoader", "加载播放列表异常", e)
+            android.util.Log.e(TAG, "加载播放列表异常", e)
             throw e
         }
     }
+
+    /**
+     * 流式加载并解析播放列表
+     *
+     * 边下载边解析，每当一个分组解析完整或累积到 [batchSize] 个频道时发出一批，
+     * 首个分组无需等待整个播放列表下载完成即可使用。统计数据见 [lastStats]。
+     * 发出的频道都是快照且已有线路，解析期间被追加线路（同名同组合并）的频道在之后批次的 [Batch.updated] 中给出。
+     *
+     * 配置了 [cache] 且有频道快照时使用 If-None-Match / If-Modified-Since 条件请求，
+     * 服务器返回 304、网络不可用或下载中途出错时直接加载上次的频道快照，不再解析。
+     * 304 但快照已无法读取时去掉条件头重新完整下载。
+     *
+     * @param url 播放列表 URL
+     * @param parser 解析器
+     * @param batchSize 每批最多累积的频道数
+     * @throws IOException 网络错误且没有可用缓存
+     */
+    fun streamPlaylist(
+        url: String,
+        parser: LiveParser = LiveParser(),
+        batchSize: Int = DEFAULT_BATCH_SIZE
+    ): Flow<Batch> = flow {
+        android.util.Log.d(TAG, "开始流式加载播放列表: $url")
+        val start = SystemClock.elapsedRealtime()
+        var firstChannelMs = -1L
+        val validators = cache?.validators(url)
+
+        // 加载缓存快照，没有可用快照时返回 false
+        suspend fun fallback(firstByteMs: Long, reset: Boolean): Boolean {
+            val snapshot = cache?.readSnapshot(url) ?: return false
+            emit(Batch(snapshot, reset = reset))
+            val elapsed = SystemClock.elapsedRealtime() - start
+            lastStats = LoadStats(firstByteMs, elapsed, elapsed, snapshot.size, fromCache = true)
+            return true
+        }
+
+        // validators 只在频道快照存在时返回，没有快照就不发条件请求
+        val request = buildRequest(url).newBuilder().apply {
+            validators?.etag?.let { header("If-None-Match", it) }
+            validators?.lastModified?.let { header("If-Modified-Since", it) }
+        }.build()
+
+        var response = try {
+            client.newCall(request).execute()
+        } catch (e: IOException) {
+            // 离线时回退到缓存快照
+            if (!fallback(-1, reset = false)) throw e
+            android.util.Log.w(TAG, "网络不可用，使用缓存快照: $lastStats", e)
+            return@flow
+        }
+        val firstByteMs = SystemClock.elapsedRealtime() - start
+        android.util.Log.d(TAG, "响应状态码: ${response.code}, 首字节耗时: ${firstByteMs}ms")
+
+        if (response.code == 304) {
+            response.close()
+            if (fallback(firstByteMs, reset = false)) {
+                android.util.Log.d(TAG, "播放列表未变化，使用缓存快照: $lastStats")
+                return@flow
+            }
+            // 快照在条件请求期间被删除或已损坏，重新完整下载
+            android.util.Log.w(TAG, "304 但缓存快照不可用，重新完整下载")
+            response = client.newCall(buildRequest(url)).execute()
+        }
+
+        response.use {
+            if (!response.isSuccessful) {
+                throw IOException("加载播放列表失败: HTTP ${response.code}")
+            }
+            val body = response.body ?: throw IOException("播放列表内容为空")
+
+            val session = parser.newSession()
+            suspend fun emitBatch(batch: List<Channel>, updated: Map<Int, Channel> = emptyMap()) {
+                if (batch.isEmpty() && updated.isEmpty()) return
+                if (firstChannelMs < 0 && batch.isNotEmpty()) {
+                    firstChannelMs = SystemClock.elapsedRealtime() - start
+                    android.util.Log.d(TAG, "首批频道可用: ${batch.size} 个, 耗时: ${firstChannelMs}ms")
+                }
+                emit(Batch(batch, updated))
+            }
+
+            try {
+                body.charStream().buffered().use { reader ->
+                    while (true) {
+                        val line = reader.readLine() ?: break
+                        session.line(line)
+                        if (session.hasClosedGroup || session.pendingCount >= batchSize) {
+                            emitBatch(session.drain(), session.drainUpdates())
+                        }
+                    }
+                }
+            } catch (e: IOException) {
+                // 下载中途断开，已发出的部分频道作废，改用上次的完整快照
+                if (!fallback(firstByteMs, reset = firstChannelMs >= 0)) throw e
+                android.util.Log.w(TAG, "下载中断，使用缓存快照: $lastStats", e)
+                return@flow
+            }
+
+            val channels = session.finish()
+            emitBatch(session.drain(), session.drainUpdates())
+
+            if (cache != null) {
+                if (channels.isNotEmpty()) {
+                    cache.commit(url, channels, PlaylistCache.Validators(response.header("ETag"), response.header("Last-Modified")))
+                } else {
+                    cache.discard(url)
+                }
+            }
+
+            val stats = LoadStats(firstByteMs, firstChannelMs, SystemClock.elapsedRealtime() - start, channels.size)
+            lastStats = stats
+            android.util.Log.d(TAG, "流式加载完成: $stats")
+        }
+    }.flowOn(Dispatchers.IO)
+
+    private fun buildRequest(url: String): Request {
+        return Request.Builder()
+            .url(url)
+            .addHeader("User-Agent", USER_AGENT)
+            .build()
+    }
 }
@@ -0,0 +1,276 @@
+package com.leafstudio.tvplayer.network
+
+import android.os.SystemClock
+import com.leafstudio.tvplayer.model.Channel
+import com.leafstudio.tvplayer.player.ChannelMediaSourceFactory
+import com.leafstudio.tvplayer.utils.OkHttpUtil
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
+import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
+import okhttp3.Request
+import okio.Buffer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * 多线路频道的线路探测器
+ *
+ * 后台并发探测频道的每条线路：读取首字节；如果是 HLS，继续解析播放列表
+ * （主播放列表会再取一次子播放列表），并请求最新分片的首字节，得到首分片耗时。
+ * 每条线路按 URL 保存一个评分（耗时和成功率的指数滑动平均），评分随时间衰减，
+ * 长时间未探测的线路逐渐回到中性值。
+ *
+ * 播放出错或探测发现当前线路不可用时，按评分选择下一条线路，
+ * 不必等待失效线路的 10 秒读超时。
+ */
+object RouteProber {
+
+    private const val TAG = "RouteProber"
+
+    /**
+     * 同时探测的线路数上限
+     */
+    private const val MAX_PARALLEL = 4
+
+    /**
+     * 单次探测的连接/读取超时
+     */
+    private const val PROBE_TIMEOUT_MS = 3000L
+
+    /**
+     * 读取的首字节数，足以判断是否为 HLS
+     */
+    private const val PEEK_BYTES = 4096L
+
+    /**
+     * HLS 播放列表最多读取的字节数
+     */
+    private const val MAX_MANIFEST_BYTES = 256 * 1024L
+
+    /**
+     * 滑动平均中新样本的权重
+     */
+    private const val ALPHA = 0.4
+
+    /**
+     * 评分衰减半衰期，超过该时间后旧样本的影响减半
+     */
+    private const val HALF_LIFE_MS = 5 * 60 * 1000L
+
+    /**
+     * 未探测线路的默认耗时
+     */
+    private const val NEUTRAL_LATENCY_MS = 2000.0
+
+    /**
+     * 成功率低于该值视为线路不可用
+     */
+    private const val DEAD_THRESHOLD = 0.3
+
+    /**
+     * 同一线路两次探测的最小间隔
+     */
+    private const val MIN_PROBE_INTERVAL_MS = 30 * 1000L
+
+    /**
+     * 线路评分
+     * @property latencyMs 首分片（非 HLS 为首字节）耗时的滑动平均
+     * @property successRate 探测成功率的滑动平均
+     * @property updatedAt 最近一次探测时间（elapsedRealtime）
+     */
+    data class RouteScore(
+        val latencyMs: Double,
+        val successRate: Double,
+        val updatedAt: Long
+    )
+
+    private class ProbeResult(val success: Boolean, val latencyMs: Long)
+
+    private val scores = ConcurrentHashMap<String, RouteScore>()
+    private val semaphore = Semaphore(MAX_PARALLEL)
+
+    private val client = OkHttpUtil.client.newBuilder()
+        .cache(null)
+        .connectTimeout(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+        .readTimeout(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+        .callTimeout(PROBE_TIMEOUT_MS * 2, TimeUnit.MILLISECONDS)
+        .build()
+
+    /**
+     * 并发探测频道的所有线路并更新评分
+     *
+     * 最近 [MIN_PROBE_INTERVAL_MS] 内探测过的线路和非 HTTP 线路会被跳过。
+     * @return 按评分排序后的线路索引
+     */
+    suspend fun probe(channel: Channel): List<Int> {
+        val now = SystemClock.elapsedRealtime()
+        val targets = channel.urls.indices
+            .map { it to channel.getRouteUrl(it) }
+            .filter { (_, url) -> isHttp(url) }
+            .filter { (_, url) -> scores[url]?.let { now - it.updatedAt >= MIN_PROBE_INTERVAL_MS } ?: true }
+            .distinctBy { it.second }
+        if (targets.isNotEmpty()) {
+            coroutineScope {
+                targets.map { (_, url) ->
+                    async(Dispatchers.IO) {
+                        semaphore.withPermit {
+                            val result = probeRoute(url, channel)
+                            record(url, result)
+                        }
+                    }
+                }.awaitAll()
+            }
+        }
+        return rank(channel)
+    }
+
+    /**
+     * 按评分从好到差排列线路索引，评分相同时保持文件中的顺序
+     */
+    fun rank(channel: Channel): List<Int> {
+        val now = SystemClock.elapsedRealtime()
+        return channel.urls.indices.sortedBy { cost(channel.getRouteUrl(it), now) }
+    }
+
+    /**
+     * 选择下一条要尝试的线路
+     * @param tried 已经尝试过的线路索引
+     * @return 评分最好的未尝试线路，全部尝试过时返回 -1
+     */
+    fun nextRoute(channel: Channel, tried: Set<Int>): Int {
+        return rank(channel).firstOrNull { it !in tried } ?: -1
+    }
+
+    /**
+     * 当前线路已被探测为不可用时，返回评分最好的可用线路，否则返回 -1
+     */
+    fun betterRoute(channel: Channel): Int {
+        if (channel.getRouteCount() < 2) return -1
+        val now = SystemClock.elapsedRealtime()
+        if (!isDead(channel.getRouteUrl(channel.currentRouteIndex), now)) return -1
+        val best = rank(channel).first()
+        return if (best != channel.currentRouteIndex && !isDead(channel.getRouteUrl(best), now)) best else -1
+    }
+
+    /**
+     * 播放器在该线路上播放失败，计入评分
+     */
+    fun reportFailure(url: String) {
+        if (!isHttp(url)) return
+        record(url, ProbeResult(false, 0))
+    }
+
+    private fun record(url: String, result: ProbeResult) {
+        val now = SystemClock.elapsedRealtime()
+        val sample = if (result.success) 1.0 else 0.0
+        val previous = scores[url]
+        val score = if (previous == null) {
+            RouteScore(
+                if (result.success) result.latencyMs.toDouble() else NEUTRAL_LATENCY_MS,
+                sample,
+                now
+            )
+        } else {
+            val decayed = decay(previous, now)
+            RouteScore(
+                if (result.success) decayed.latencyMs + ALPHA * (result.latencyMs - decayed.latencyMs) else decayed.latencyMs,
+                decayed.successRate + ALPHA * (sample - decayed.successRate),
+                now
+            )
+        }
+        scores[url] = score
+        android.util.Log.d(TAG, "线路评分: 成功=${result.success}, 耗时=${result.latencyMs}ms -> $score, $url")
+    }
+
+    /**
+     * 旧样本按半衰期向中性值（成功率 0.5、默认耗时）回归
+     */
+    private fun decay(score: RouteScore, now: Long): RouteScore {
+        val weight = Math.pow(0.5, (now - score.updatedAt).toDouble() / HALF_LIFE_MS)
+        return RouteScore(
+            NEUTRAL_LATENCY_MS + (score.latencyMs - NEUTRAL_LATENCY_MS) * weight,
+            0.5 + (score.successRate - 0.5) * weight,
+            score.updatedAt
+        )
+    }
+
+    /**
+     * 线路代价，越小越好：耗时除以成功率
+     */
+    private fun cost(url: String, now: Long): Double {
+        val score = scores[url]?.let { decay(it, now) } ?: return NEUTRAL_LATENCY_MS / 0.5
+        return score.latencyMs / score.successRate.coerceAtLeast(0.05)
+    }
+
+    private fun isDead(url: String, now: Long): Boolean {
+        val score = scores[url] ?: return false
+        return decay(score, now).successRate < DEAD_THRESHOLD
+    }
+
+    private fun isHttp(url: String): Boolean {
+        return url.startsWith("http://", ignoreCase = true) || url.startsWith("https://", ignoreCase = true)
+    }
+
+    /**
+     * 探测单条线路，返回首分片（非 HLS 为首字节）耗时
+     */
+    private suspend fun probeRoute(url: String, channel: Channel): ProbeResult = withContext(Dispatchers.IO) {
+        val start = SystemClock.elapsedRealtime()
+        try {
+            var target = url
+            // 主播放列表 -> 子播放列表 -> 分片，最多跟随两层
+            repeat(3) {
+                val next = fetch(target, channel) ?: return@withContext ProbeResult(true, SystemClock.elapsedRealtime() - start)
+                target = next
+            }
+            ProbeResult(true, SystemClock.elapsedRealtime() - start)
+        } catch (e: Exception) {
+            android.util.Log.d(TAG, "线路探测失败: $url, ${e.message}")
+            ProbeResult(false, SystemClock.elapsedRealtime() - start)
+        }
+    }
+
+    /**
+     * 请求 URL 并读取首字节
+     * @return 如果是 HLS 播放列表，返回下一步要请求的地址；否则返回 null 表示已取到媒体数据
+     * @throws java.io.IOException 请求失败或没有数据
+     */
+    private fun fetch(url: String, channel: Channel): String? {
+        val request = Request.Builder()
+            .url(url)
+            .header("User-Agent", channel.ua ?: ChannelMediaSourceFactory.DEFAULT_USER_AGENT)
+            .apply { channel.headers?.forEach { (key, value) -> header(key, value) } }
+            .build()
+
+        client.newCall(request).execute().use { response ->
+            if (!response.isSuccessful) throw java.io.IOException("HTTP ${response.code}")
+            val source = response.body?.source() ?: throw java.io.IOException("响应为空")
+            val buffer = Buffer()
+            if (source.read(buffer, PEEK_BYTES) <= 0) throw java.io.IOException("响应为空")
+
+            val contentType = response.header("Content-Type").orEmpty()
+            val head = buffer.snapshot().utf8()
+            val isManifest = head.trimStart('\uFEFF', ' ', '\r', '\n').startsWith("#EXTM3U") ||
+                contentType.contains("mpegurl", ignoreCase = true)
+            if (!isManifest) return null
+
+            while (buffer.size < MAX_MANIFEST_BYTES && source.read(buffer, PEEK_BYTES) > 0) {
+                // 继续读取完整播放列表
+            }
+            val base = response.request.url
+            val lines = buffer.readUtf8().lineSequence().map { it.trim() }.toList()
+            // 主播放列表取第一个子播放列表；媒体播放列表取最后一个分片（直播从最新分片起播）
+            val isMaster = lines.any { it.startsWith("#EXT-X-STREAM-INF") }
+            val uris = lines.filter { it.isNotEmpty() && !it.startsWith("#") }
+            val next = (if (isMaster) uris.firstOrNull() else uris.lastOrNull())
+                ?: throw java.io.IOException("播放列表没有可用条目")
+            return base.resolve(next)?.toString() ?: next.toHttpUrlOrNull()?.toString()
+                ?: throw java.io.IOException("无法解析地址: $next")
+        }
+    }
+}
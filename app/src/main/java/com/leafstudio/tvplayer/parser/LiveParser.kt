@@ -4,68 +4,196 @@ import com.leafstudio.tvplayer.model.Channel
 import com.leafstudio.tvplayer.utils.CryptoUtils
 import org.json.JSONArray
 import org.json.JSONObject
-import java.util.regex.Pattern
-import java.util.regex.Matcher
+import java.io.BufferedReader
+import java.io.Reader
+import java.io.StringReader
 
+/**
+ * 直播源解析器
+ *
+ * 支持 JSON / M3U / TXT 三种格式。M3U 与 TXT 按行单遍流式解析，
+ * 可直接从 [Reader] 读取，无需先把整个播放列表读成字符串。
+ * 频道按 (分组, 名称) 建立哈希索引合并线路，整体为线性复杂度。
+ */
 class LiveParser {
 
     companion object {
-        private val M3U = Pattern.compile("^(?!.*#genre#).*#EXT(?:M3U|INF).*", Pattern.MULTILINE)
-        private val HTTP_USER_AGENT = Pattern.compile(".*http-user-agent=\"(.?|.+?)\".*")
-        private val CATCHUP_REPLACE = Pattern.compile(".*catchup-replace=\"(.?|.+?)\".*")
-        private val CATCHUP_SOURCE = Pattern.compile(".*catchup-source=\"(.?|.+?)\".*")
-        private val CATCHUP = Pattern.compile(".*catchup=\"(.?|.+?)\".*")
-        private val TVG_CHNO = Pattern.compile(".*tvg-chno=\"(.?|.+?)\".*")
-        private val TVG_LOGO = Pattern.compile(".*tvg-logo=\"(.?|.+?)\".*")
-        private val TVG_NAME = Pattern.compile(".*tvg-name=\"(.?|.+?)\".*")
-        private val TVG_URL = Pattern.compile(".*tvg-url=\"(.?|.+?)\".*")
-        private val TVG_ID = Pattern.compile(".*tvg-id=\"(.?|.+?)\".*")
-        private val URL_TVG = Pattern.compile(".*url-tvg=\"(.?|.+?)\".*")
-        private val GROUP = Pattern.compile(".*group-title=\"(.?|.+?)\".*")
-        private val NAME = Pattern.compile(".*,(.+?)$")
-
-        private fun extract(line: String, pattern: Pattern): String {
-            val matcher = pattern.matcher(line.trim())
-            if (matcher.matches()) return matcher.group(1).trim()
-            return ""
+        private const val M3U_MARK = "#EXTM3U"
+        private const val EXTINF_MARK = "#EXTINF"
+        private const val GENRE = "#genre#"
+
+        /**
+         * 等价于旧的 `^(?!.*#genre#).*#EXT(?:M3U|INF).*` 判断
+         */
+        private fun isM3uLine(line: String): Boolean {
+            return !line.contains(GENRE) && (line.contains(M3U_MARK) || line.contains(EXTINF_MARK))
         }
 
-        private fun extract(line: String, vararg keywords: String): String {
-            val splits = line.split(" ")
-            for (split in splits) {
-                for (keyword in keywords) {
-                    if (split.contains(keyword)) {
-                        return split.split("=")[1].replace("\"", "")
-                    }
-                }
+        /**
+         * 取最后一个逗号后的非空内容作为频道名（与旧的 `.*,(.+?)$` 一致）
+         */
+        private fun extractName(line: String): String {
+            var index = line.lastIndexOf(',')
+            while (index >= 0) {
+                if (index < line.length - 1) return line.substring(index + 1).trim()
+                index = line.lastIndexOf(',', index - 1)
             }
             return ""
         }
     }
 
     fun parse(text: String): List<Channel> {
-        val channels = mutableListOf<Channel>()
-        if (text.trim().startsWith("[") && text.trim().endsWith("]")) {
-             json(text, channels)
-        } else {
-             text(text, channels)
-        }
-        
-        // 为所有频道分配连续的编号（跨地区统一编号）
-        channels.forEachIndexed { index, channel ->
-            // 频道编号从1开始
-            channel.number = index + 1
+        return parse(StringReader(text))
+    }
+
+    /**
+     * 从字符流解析频道列表，M3U/TXT 按行边读边解析
+     */
+    fun parse(reader: Reader): List<Channel> {
+        val buffered = if (reader is BufferedReader) reader else BufferedReader(reader)
+        val session = newSession()
+        while (true) {
+            session.line(buffered.readLine() ?: break)
         }
-        
-        return channels
+        return session.finish()
     }
 
-    private fun text(text: String, channels: MutableList<Channel>) {
-        if (M3U.matcher(text).find()) m3u(text, channels)
-        else txt(text, channels)
+    /**
+     * 创建增量解析会话，调用方逐行喂入数据，并可随时通过 [Session.drain] 取走新增频道
+     */
+    fun newSession(): Session = Session()
+
+    /**
+     * 增量解析会话
+     *
+     * 在遇到能确定格式的行之前先暂存，确定为 M3U 或 TXT 后回放暂存行，之后逐行直接处理；
+     * JSON 格式无法增量解析，会在 [finish] 时整体解析。
+     * [drain] 返回的是频道快照，解析线程之后对频道的修改不会影响已取走的对象；
+     * 末尾尚无线路的频道（M3U 的 #EXTINF 已读到、地址行还没到）暂不取走，避免发出无法播放的频道。
+     * 已取走的频道在后续行中仍可能被追加线路（同名同组合并），这些变化通过 [drainUpdates] 取得。
+     */
+    inner class Session internal constructor() {
+        private val collector = Collector()
+        private val snapshots = ArrayList<Channel>()
+        private val pending = mutableListOf<String>()
+        private var handler: LineHandler? = null
+        private var jsonBuffer: StringBuilder? = null
+        private var notJson = false
+        private var drained = 0
+        private var closedGroupEnd = 0
+        private var finished = false
+
+        /**
+         * 尚未被 [drain] 取走的频道数
+         */
+        val pendingCount: Int
+            get() = collector.channels.size - drained
+
+        /**
+         * 是否已有分组完整解析（后面出现了不同分组的频道）且尚未取走
+         */
+        val hasClosedGroup: Boolean
+            get() = closedGroupEnd > drained
+
+        fun line(line: String) {
+            val jsonText = jsonBuffer
+            if (jsonText != null) {
+                jsonText.append(line).append('\n')
+                return
+            }
+            val current = handler
+            if (current != null) {
+                feed(current, line)
+                return
+            }
+            if (pending.isEmpty() && line.isBlank()) return
+            if (pending.isEmpty() && !notJson && line.trimStart().startsWith("[")) {
+                jsonBuffer = StringBuilder().append(line).append('\n')
+                return
+            }
+            pending.add(line)
+            val detected = when {
+                isM3uLine(line) -> M3u(collector)
+                isTxtLine(line) -> Txt(collector)
+                else -> null
+            }
+            if (detected != null) {
+                handler = detected
+                pending.forEach { feed(detected, it) }
+                pending.clear()
+            }
+        }
+
+        /**
+         * 取走自上次调用以来新建的频道（快照），[finish] 之前不取走末尾还没有线路的频道
+         */
+        fun drain(): List<Channel> {
+            val channels = collector.channels
+            var end = channels.size
+            if (!finished) while (end > drained && channels[end - 1].urls.isEmpty()) end--
+            if (drained >= end) return emptyList()
+            val batch = ArrayList<Channel>(end - drained)
+            for (i in drained until end) batch.add(snapshot(channels[i]))
+            snapshots.addAll(batch)
+            drained = end
+            return batch
+        }
+
+        /**
+         * 取走已发出但之后又被修改过的频道的新快照，键为频道在整个列表中的索引
+         */
+        fun drainUpdates(): Map<Int, Channel> {
+            val channels = collector.channels
+            val updates = LinkedHashMap<Int, Channel>()
+            for (i in snapshots.indices) {
+                if (channels[i] == snapshots[i]) continue
+                val channel = snapshot(channels[i])
+                snapshots[i] = channel
+                updates[i] = channel
+            }
+            return updates
+        }
+
+        private fun snapshot(channel: Channel): Channel {
+            return channel.copy(urls = channel.urls.toList(), headers = channel.headers?.toMap())
+        }
+
+        /**
+         * 结束解析并返回全部频道
+         */
+        fun finish(): List<Channel> {
+            if (finished) return collector.channels
+            finished = true
+            val jsonText = jsonBuffer
+            if (jsonText != null) {
+                jsonBuffer = null
+                val text = jsonText.toString()
+                if (text.trim().endsWith("]")) {
+                    json(text, collector)
+                } else {
+                    notJson = true
+                    text.lineSequence().forEach { line(it) }
+                }
+            }
+            if (handler == null && pending.isNotEmpty()) {
+                val txt = Txt(collector)
+                pending.forEach { txt.line(it) }
+                pending.clear()
+            }
+            return collector.channels
+        }
+
+        private fun feed(handler: LineHandler, line: String) {
+            val channels = collector.channels
+            val before = channels.size
+            handler.line(line)
+            if (channels.size > before && before > 0 && channels[before].group != channels[before - 1].group) {
+                closedGroupEnd = before
+            }
+        }
     }
 
-    private fun json(text: String, channels: MutableList<Channel>) {
+    private fun json(text: String, collector: Collector) {
         try {
             val jsonArray = JSONArray(text)
             for (i in 0 until jsonArray.length()) {
@@ -78,19 +206,7 @@ class LiveParser {
                         val name = channelObj.optString("name")
                         val url = CryptoUtils.smartDecrypt(channelObj.optString("url"))
                         val logo = channelObj.optString("icon")
-                        
-                        // Find or create channel
-                        var channel = channels.find { it.name == name && it.group == groupName }
-                        if (channel == null) {
-                            channel = Channel(
-                                id = name.hashCode().toString(),
-                                name = name,
-                                urls = mutableListOf(),
-                                logo = logo,
-                                group = groupName
-                            )
-                            channels.add(channel)
-                        }
+                        val channel = collector.obtain(groupName, name, groupName, logo)
                         (channel.urls as MutableList).add(url)
                     }
                 }
@@ -100,43 +216,67 @@ class LiveParser {
         }
     }
 
-    private fun m3u(text: String, channels: MutableList<Channel>) {
-        val setting = Setting()
-        var currentChannel: Channel? = null
-        val lines = text.replace("\r\n", "\n").replace("\r", "").split("\n")
-        
-        for (line in lines) {
+    private fun isTxtLine(line: String): Boolean {
+        if (line.contains(GENRE)) return true
+        val comma = line.indexOf(',')
+        return comma >= 0 && line.indexOf("://", comma + 1) >= 0
+    }
+
+    private interface LineHandler {
+        fun line(line: String)
+    }
+
+    /**
+     * 频道收集器，(分组, 名称) -> 频道 的哈希索引替代线性查找
+     */
+    private class Collector {
+        val channels = mutableListOf<Channel>()
+        private val index = HashMap<Pair<String?, String>, Channel>()
+
+        /**
+         * 查找已有频道，找不到则按给定的分组和 logo 新建。
+         * 查找使用原始分组名，保存使用规范化后的分组名，与旧的 find 语义一致。
+         */
+        fun obtain(lookupGroup: String?, name: String, group: String?, logo: String?): Channel {
+            index[Pair(lookupGroup, name)]?.let { return it }
+            val channel = Channel(
+                id = name.hashCode().toString(),
+                name = name,
+                urls = mutableListOf(),
+                logo = logo,
+                group = group,
+                // 频道编号从1开始（跨地区统一编号）
+                number = channels.size + 1
+            )
+            channels.add(channel)
+            val key = Pair(group, name)
+            if (!index.containsKey(key)) index[key] = channel
+            return channel
+        }
+    }
+
+    private class M3u(private val collector: Collector) : LineHandler {
+        private val setting = Setting()
+        private val extInf = ExtInf()
+        private var currentChannel: Channel? = null
+
+        override fun line(line: String) {
             if (setting.find(line)) {
                 setting.check(line)
-            } else if (line.startsWith("#EXTM3U")) {
+            } else if (line.startsWith(M3U_MARK)) {
                 // Global settings, maybe extract EPG here if needed
             } else if (line.startsWith("#EXTINF:")) {
-                val groupName = extract(line, GROUP)
-                val name = extract(line, NAME)
-                val logo = extract(line, TVG_LOGO)
-                
-                // Find existing channel or create new one
+                extInf.parse(line)
+                val groupName = extInf.group
+                val name = extInf.name
                 // Note: Original logic merges by name in same group
-                var channel = channels.find { it.name == name && it.group == groupName }
-                if (channel == null) {
-                    channel = Channel(
-                        id = name.hashCode().toString(),
-                        name = name,
-                        urls = mutableListOf(), // Mutable list for adding URLs
-                        logo = logo.ifEmpty { null },
-                        group = groupName.ifEmpty { null }
-                    )
-                    channels.add(channel)
-                }
-                
-                channel.ua = extract(line, HTTP_USER_AGENT).ifEmpty { null }
-                // Other fields like tvg-id, tvg-name can be added if Channel supports them
-                
+                val channel = collector.obtain(groupName, name, groupName.ifEmpty { null }, extInf.logo.ifEmpty { null })
+                channel.ua = extInf.ua.ifEmpty { null }
                 currentChannel = channel
             } else if (!line.startsWith("#") && line.contains("://")) {
                 val parts = line.split("|", limit = 2)
                 if (parts.size > 1) setting.headers(parts[1])
-                
+
                 currentChannel?.let { ch ->
                     (ch.urls as MutableList).add(CryptoUtils.smartDecrypt(parts[0]))
                     setting.copy(ch).clear()
@@ -145,76 +285,79 @@ class LiveParser {
         }
     }
 
-    private fun txt(text: String, channels: MutableList<Channel>) {
-        val setting = Setting()
-        val lines = text.replace("\r\n", "\n").replace("\r", "").split("\n")
-        
-        for (line in lines) {
-            val split = line.split(",", limit = 2)
+    private class Txt(private val collector: Collector) : LineHandler {
+        private val setting = Setting()
+        private var currentGroupName: String? = null
+
+        // 格式: "GroupName,#genre#" 开始新分组，"Name,URL#URL2" 为频道行
+        override fun line(line: String) {
             if (setting.find(line)) setting.check(line)
-            if (line.contains("#genre#")) setting.clear()
-            
-            if (line.contains("#genre#")) {
-                // Genre line, usually defines a group start in some formats, 
-                // but in this logic it seems to just clear settings.
-                // The original code: live.getGroups().add(Group.create(split[0], live.isPass()));
-                // It seems it creates a new group.
-                // But for TXT format: "GroupName,#genre#"
+            val comma = line.indexOf(',')
+            if (line.contains(GENRE)) {
+                setting.clear()
+                currentGroupName = if (comma >= 0) line.substring(0, comma) else line
+                return
             }
-            
-            // Logic for TXT format: "Name,URL" or "GroupName,#genre#"
-            // The original code seems to handle "GroupName,#genre#" by adding a group.
-            // And then subsequent lines "Name,URL" are added to the last group.
-            
-            if (split.size > 1 && split[1].contains("://")) {
-                // It's a channel line: "Name,URL"
-                // We need to know the current group.
-                // In the original code, it gets the last group: live.getGroups().get(live.getGroups().size() - 1)
-                
-                // We need to track current group name
-                var groupName: String? = null
-                // Find the last group name from the channels list or track it separately?
-                // Better track it separately.
-                // But wait, the loop iterates lines.
+            if (comma < 0) return
+            val urlPart = line.substring(comma + 1)
+            if (!urlPart.contains("://")) return
+
+            val channel = collector.obtain(currentGroupName, line.substring(0, comma), currentGroupName, null)
+            for (url in urlPart.split("#")) {
+                val parts = url.split("|", limit = 2)
+                if (parts.size > 1) setting.headers(parts[1])
+                (channel.urls as MutableList).add(CryptoUtils.smartDecrypt(parts[0]))
+                setting.copy(channel)
             }
         }
-        
-        // Re-implementing TXT logic properly
-        var currentGroupName: String? = null
-        
-        for (line in lines) {
-            val split = line.split(",", limit = 2)
-            if (setting.find(line)) setting.check(line)
-            if (line.contains("#genre#")) {
-                setting.clear()
-                currentGroupName = split[0]
-                continue
+    }
+
+    /**
+     * #EXTINF 行的属性分词器
+     *
+     * 单次扫描整行，识别 `key="value"` 形式的属性（同名属性取最后一个），
+     * 只保留解析需要的字段，替代每个属性一个 `.*key="..."` 正则的做法。
+     */
+    private class ExtInf {
+        var group = ""
+        var logo = ""
+        var ua = ""
+        var name = ""
+
+        fun parse(raw: String) {
+            val line = raw.trim()
+            group = ""
+            logo = ""
+            ua = ""
+            name = extractName(line)
+            var i = line.indexOf("=\"")
+            while (i > 0) {
+                val valueStart = i + 2
+                val valueEnd = line.indexOf('"', valueStart)
+                if (valueEnd < 0) break
+                var keyStart = i
+                while (keyStart > 0 && !isKeyBoundary(line[keyStart - 1])) keyStart--
+                assign(line, keyStart, i, valueStart, valueEnd)
+                i = line.indexOf("=\"", valueEnd + 1)
             }
-            
-            if (split.size > 1 && split[1].contains("://")) {
-                val name = split[0]
-                val urlPart = split[1]
-                
-                var channel = channels.find { it.name == name && it.group == currentGroupName }
-                if (channel == null) {
-                    channel = Channel(
-                        id = name.hashCode().toString(),
-                        name = name,
-                        urls = mutableListOf(),
-                        logo = null,
-                        group = currentGroupName
-                    )
-                    channels.add(channel)
-                }
-                
-                for (url in urlPart.split("#")) {
-                    val parts = url.split("|", limit = 2)
-                    if (parts.size > 1) setting.headers(parts[1])
-                    (channel.urls as MutableList).add(CryptoUtils.smartDecrypt(parts[0]))
-                    setting.copy(channel)
-                }
+        }
+
+        private fun isKeyBoundary(c: Char): Boolean {
+            return c == ' ' || c == '\t' || c == ',' || c == '"'
+        }
+
+        private fun assign(line: String, keyStart: Int, keyEnd: Int, valueStart: Int, valueEnd: Int) {
+            val keyLength = keyEnd - keyStart
+            when {
+                matches(line, keyStart, keyLength, "group-title") -> group = line.substring(valueStart, valueEnd).trim()
+                matches(line, keyStart, keyLength, "tvg-logo") -> logo = line.substring(valueStart, valueEnd).trim()
+                matches(line, keyStart, keyLength, "http-user-agent") -> ua = line.substring(valueStart, valueEnd).trim()
             }
         }
+
+        private fun matches(line: String, start: Int, length: Int, key: String): Boolean {
+            return length == key.length && line.regionMatches(start, key, 0, length)
+        }
     }
 
     private class Setting {
@@ -0,0 +1,93 @@
+package com.leafstudio.tvplayer.player
+
+import android.content.Context
+import androidx.media3.common.MediaItem
+import androidx.media3.datasource.DataSource
+import androidx.media3.datasource.DefaultDataSource
+import androidx.media3.datasource.okhttp.OkHttpDataSource
+import androidx.media3.datasource.rtmp.RtmpDataSource
+import androidx.media3.exoplayer.drm.DrmSessionManagerProvider
+import androidx.media3.exoplayer.source.DefaultMediaSourceFactory
+import androidx.media3.exoplayer.source.MediaSource
+import androidx.media3.exoplayer.upstream.LoadErrorHandlingPolicy
+import com.leafstudio.tvplayer.utils.OkHttpUtil
+import okhttp3.OkHttpClient
+import java.util.concurrent.TimeUnit
+
+/**
+ * 频道请求参数，作为 [MediaItem] 的 tag 携带，每个媒体项使用自己的 UA 和请求头
+ */
+data class ChannelRequest(
+    val userAgent: String,
+    val headers: Map<String, String> = emptyMap()
+)
+
+/**
+ * 按媒体项构建数据源的 MediaSource 工厂
+ *
+ * 每个 [MediaItem] 根据 tag 中的 [ChannelRequest] 创建独立的 HTTP 数据源工厂，
+ * 因此预加载的多个频道可以使用不同的请求头而互不影响。
+ * HTTP 请求走共享 OkHttp 连接池，同一服务器的分片请求复用连接。
+ */
+class ChannelMediaSourceFactory(context: Context) : MediaSource.Factory {
+
+    companion object {
+        const val DEFAULT_USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36"
+        private const val TIMEOUT_MS = 10000L
+
+        /**
+         * 媒体数据客户端，分片不写入 HTTP 缓存
+         */
+        private val mediaClient: OkHttpClient by lazy {
+            OkHttpUtil.client.newBuilder()
+                .cache(null)
+                .connectTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .readTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .build()
+        }
+    }
+
+    private val context = context.applicationContext
+    private var drmSessionManagerProvider: DrmSessionManagerProvider? = null
+    private var loadErrorHandlingPolicy: LoadErrorHandlingPolicy? = null
+
+    override fun setDrmSessionManagerProvider(drmSessionManagerProvider: DrmSessionManagerProvider): MediaSource.Factory {
+        this.drmSessionManagerProvider = drmSessionManagerProvider
+        return this
+    }
+
+    override fun setLoadErrorHandlingPolicy(loadErrorHandlingPolicy: LoadErrorHandlingPolicy): MediaSource.Factory {
+        this.loadErrorHandlingPolicy = loadErrorHandlingPolicy
+        return this
+    }
+
+    override fun getSupportedTypes(): IntArray {
+        return DefaultMediaSourceFactory(context).supportedTypes
+    }
+
+    override fun createMediaSource(mediaItem: MediaItem): MediaSource {
+        val request = mediaItem.localConfiguration?.tag as? ChannelRequest ?: ChannelRequest(DEFAULT_USER_AGENT)
+        val factory = DefaultMediaSourceFactory(dataSourceFactory(mediaItem, request))
+        drmSessionManagerProvider?.let { factory.setDrmSessionManagerProvider(it) }
+        loadErrorHandlingPolicy?.let { factory.setLoadErrorHandlingPolicy(it) }
+        return factory.createMediaSource(mediaItem)
+    }
+
+    private fun dataSourceFactory(mediaItem: MediaItem, request: ChannelRequest): DataSource.Factory {
+        val uri = mediaItem.localConfiguration?.uri?.toString().orEmpty()
+        if (uri.startsWith("rtmp://", ignoreCase = true) || uri.startsWith("rtmps://", ignoreCase = true)) {
+            try {
+                return RtmpDataSource.Factory()
+            } catch (e: Throwable) {
+                // RTMP 支持不可用时回退到默认数据源
+                e.printStackTrace()
+            }
+        }
+        val httpDataSourceFactory = OkHttpDataSource.Factory(mediaClient)
+            .setUserAgent(request.userAgent)
+        if (request.headers.isNotEmpty()) {
+            httpDataSourceFactory.setDefaultRequestProperties(request.headers)
+        }
+        return DefaultDataSource.Factory(context, httpDataSourceFactory)
+    }
+}
@@ -0,0 +1,263 @@
+package com.leafstudio.tvplayer.player
+
+import android.content.Context
+import android.os.HandlerThread
+import android.os.Process
+import android.os.SystemClock
+import androidx.media3.common.MediaItem
+import androidx.media3.common.MimeTypes
+import androidx.media3.common.Player
+import androidx.media3.exoplayer.DefaultLoadControl
+import androidx.media3.exoplayer.DefaultRendererCapabilitiesList
+import androidx.media3.exoplayer.DefaultRenderersFactory
+import androidx.media3.exoplayer.ExoPlayer
+import androidx.media3.exoplayer.source.preload.BasePreloadManager
+import androidx.media3.exoplayer.source.preload.DefaultPreloadManager
+import androidx.media3.exoplayer.source.preload.PreloadException
+import androidx.media3.exoplayer.source.preload.TargetPreloadStatusControl
+import androidx.media3.exoplayer.trackselection.DefaultTrackSelector
+import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter
+import com.leafstudio.tvplayer.model.Channel
+
+/**
+ * 直播换台引擎
+ *
+ * 整个播放页只创建一个 [ExoPlayer]，换台时只替换 MediaSource，不再重建
+ * 数据源工厂、轨道选择器、LoadControl 和播放器。同时通过 [DefaultPreloadManager]
+ * 为相邻频道（N±1）和上一个观看的频道预先准备并缓冲一小段数据，
+ * 上下键和数字键换台时可以直接从已缓冲的数据起播。
+ *
+ * 每次换台从 [play] 到首帧渲染的耗时记录在 [lastZapMs]。
+ * 只应在主线程调用。
+ */
+class ZapEngine(context: Context) {
+
+    companion object {
+        private const val TAG = "ZapEngine"
+
+        /**
+         * 每个预加载频道缓冲的时长
+         */
+        private const val PRELOAD_DURATION_MS = 3000L
+    }
+
+    private val preloadTargets = HashSet<Int>()
+    private var currentIndex = -1
+
+    // 播放器和预加载共用的播放线程，PreloadMediaSource 要求两者在同一个 Looper 上
+    private val playbackThread = HandlerThread("ZapEngine", Process.THREAD_PRIORITY_AUDIO).apply { start() }
+
+    private val preloadManager: DefaultPreloadManager
+
+    /**
+     * 复用的播放器实例
+     */
+    val player: ExoPlayer
+
+    // 媒体项按 "频道索引:线路" 缓存，保证同一频道线路在预加载和播放时是同一个 MediaItem
+    private val mediaItems = HashMap<String, MediaItem>()
+    private val rankings = HashMap<MediaItem, Int>()
+
+    // 已按目标状态预加载完成的媒体项
+    private val preloaded = HashSet<MediaItem>()
+
+    private var zapStartMs = 0L
+
+    /**
+     * 最近一次换台耗时（毫秒），尚未完成过换台时为 -1
+     */
+    var lastZapMs = -1L
+        private set
+
+    /**
+     * 已完成的换台次数
+     */
+    var zapCount = 0
+        private set
+
+    /**
+     * 换台总耗时（毫秒），与 [zapCount] 一起计算平均值
+     */
+    var totalZapMs = 0L
+        private set
+
+    /**
+     * 起播时已预加载完成的换台次数
+     */
+    var preloadedZapCount = 0
+        private set
+
+    init {
+        // 配置 LoadControl 以优化缓冲
+        val loadControl = DefaultLoadControl.Builder()
+            .setBufferDurationsMs(
+                15000,  // minBufferMs - 最小缓冲
+                50000,  // maxBufferMs - 最大缓冲
+                2500,   // bufferForPlaybackMs - 开始播放所需缓冲
+                5000    // bufferForPlaybackAfterRebufferMs - 重新缓冲后播放所需缓冲
+            )
+            .build()
+
+        val statusControl = TargetPreloadStatusControl<Int> { rankingData ->
+            if (rankingData != currentIndex && rankingData in preloadTargets) {
+                DefaultPreloadManager.Status(DefaultPreloadManager.Status.STAGE_LOADED_FOR_DURATION_MS, PRELOAD_DURATION_MS)
+            } else {
+                null
+            }
+        }
+
+        // Media3 1.5 还没有 DefaultPreloadManager.Builder，播放器和预加载管理器手动共用同一组组件
+        val appContext = context.applicationContext
+        val mediaSourceFactory = ChannelMediaSourceFactory(appContext)
+        val renderersFactory = DefaultRenderersFactory(appContext)
+        val bandwidthMeter = DefaultBandwidthMeter.getSingletonInstance(appContext)
+        player = ExoPlayer.Builder(appContext)
+            .setPlaybackLooper(playbackThread.looper)
+            .setMediaSourceFactory(mediaSourceFactory)
+            .setRenderersFactory(renderersFactory)
+            .setLoadControl(loadControl)
+            .setBandwidthMeter(bandwidthMeter)
+            .build()
+        // 预加载使用独立的轨道选择器，播放器的轨道选择器由播放器自己初始化
+        val preloadTrackSelector = DefaultTrackSelector(appContext)
+        preloadTrackSelector.init({}, bandwidthMeter)
+        preloadManager = DefaultPreloadManager(
+            statusControl,
+            mediaSourceFactory,
+            preloadTrackSelector,
+            bandwidthMeter,
+            DefaultRendererCapabilitiesList.Factory(renderersFactory),
+            loadControl.allocator,
+            playbackThread.looper
+        )
+        preloadManager.addListener(object : BasePreloadManager.Listener {
+            override fun onCompleted(mediaItem: MediaItem) {
+                if (rankings.containsKey(mediaItem)) preloaded.add(mediaItem)
+            }
+
+            override fun onError(exception: PreloadException) {
+                preloaded.remove(exception.mediaItem)
+            }
+        })
+
+        // 配置音频轨道选择 - 解决组播源有图没声音的问题
+        player.trackSelectionParameters = player.trackSelectionParameters.buildUpon()
+            .setPreferredAudioLanguage("zh") // 优先中文音频
+            .setMaxAudioChannelCount(8) // 支持多声道音频（AC3、DTS等）
+            .setPreferredAudioMimeType(MimeTypes.AUDIO_AAC) // 优先选择AAC音频格式
+            .build()
+
+        player.addListener(object : Player.Listener {
+            override fun onRenderedFirstFrame() {
+                if (zapStartMs == 0L) return
+                val elapsed = SystemClock.elapsedRealtime() - zapStartMs
+                zapStartMs = 0L
+                lastZapMs = elapsed
+                zapCount++
+                totalZapMs += elapsed
+                android.util.Log.d(TAG, "换台耗时: ${elapsed}ms, 平均: ${totalZapMs / zapCount}ms ($zapCount 次, 预加载命中 $preloadedZapCount 次)")
+            }
+        })
+    }
+
+    /**
+     * 播放指定频道的当前线路
+     * @param index 频道在播放列表中的索引，用于预加载排序
+     * @param channel 频道
+     * @param url 已清理过的播放地址
+     */
+    fun play(index: Int, channel: Channel, url: String) {
+        zapStartMs = SystemClock.elapsedRealtime()
+        currentIndex = index
+        preloadManager.setCurrentPlayingIndex(index)
+
+        val mediaItem = mediaItem(index, channel, url)
+        // 在注册本次播放之前判断，只有之前作为邻居预加载完成的才算命中
+        val hit = mediaItem in preloaded
+        if (hit) preloadedZapCount++
+        if (!rankings.containsKey(mediaItem)) {
+            preloadManager.add(mediaItem, index)
+            rankings[mediaItem] = index
+        }
+        val mediaSource = preloadManager.getMediaSource(mediaItem)
+        if (mediaSource != null) {
+            player.setMediaSource(mediaSource)
+        } else {
+            player.setMediaItem(mediaItem)
+        }
+        android.util.Log.d(TAG, "换台: #$index ${channel.name}, 使用预加载源: $hit")
+        player.prepare()
+        player.playWhenReady = true
+    }
+
+    /**
+     * 设置需要预加载的频道，不在列表中的旧预加载项会被移除
+     * @param neighbours 频道索引与频道，通常为 N±1 和上一个观看的频道
+     */
+    fun preload(neighbours: List<Pair<Int, Channel>>) {
+        preloadTargets.clear()
+        val wanted = HashSet<MediaItem>()
+        for ((index, channel) in neighbours) {
+            val url = channel.getCurrentUrl()
+            if (url.isEmpty()) continue
+            val mediaItem = mediaItem(index, channel, url)
+            wanted.add(mediaItem)
+            preloadTargets.add(index)
+            if (!rankings.containsKey(mediaItem)) {
+                preloadManager.add(mediaItem, index)
+                rankings[mediaItem] = index
+            }
+        }
+
+        // 移除不再需要的预加载项（正在播放的除外）
+        val iterator = rankings.entries.iterator()
+        while (iterator.hasNext()) {
+            val (mediaItem, index) = iterator.next()
+            if (index == currentIndex || mediaItem in wanted) continue
+            preloadManager.remove(mediaItem)
+            preloaded.remove(mediaItem)
+            mediaItems.values.remove(mediaItem)
+            iterator.remove()
+        }
+        preloadManager.invalidate()
+    }
+
+    /**
+     * 停止播放但保留播放器，供下次换台复用
+     */
+    fun stop() {
+        zapStartMs = 0L
+        player.stop()
+    }
+
+    /**
+     * 释放播放器和全部预加载数据
+     */
+    fun release() {
+        preloadManager.release()
+        player.release()
+        playbackThread.quitSafely()
+        mediaItems.clear()
+        rankings.clear()
+        preloaded.clear()
+        preloadTargets.clear()
+    }
+
+    private fun mediaItem(index: Int, channel: Channel, url: String): MediaItem {
+        val key = "$index:${channel.currentRouteIndex}:$url"
+        return mediaItems.getOrPut(key) {
+            val headers = channel.headers ?: emptyMap()
+            val builder = MediaItem.Builder()
+                .setMediaId(key)
+                .setUri(url)
+                .setTag(ChannelRequest(channel.ua ?: ChannelMediaSourceFactory.DEFAULT_USER_AGENT, headers))
+
+            // 针对 PHP/ASP/JSP 等动态脚本链接，通常是 HLS 直播流，强制指定为 M3U8
+            // 解决如 1905.php 等链接无法识别的问题
+            if (url.contains(".php", true) || url.contains(".asp", true) || url.contains(".jsp", true)) {
+                builder.setMimeType(MimeTypes.APPLICATION_M3U8)
+            }
+            builder.build()
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.leafstudio.tvplayer.spider
+
+import android.content.Context
+import com.leafstudio.tvplayer.utils.OkHttpUtil
+import okhttp3.Request
+import java.io.File
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+
+/**
+ * Spider JAR 持久化存储
+ *
+ * JAR 按内容 MD5 命名（`<md5>.jar`），配置中的 `url;md5;xxx` 可以直接命中，
+ * 同一份内容即使来自不同 URL 也只存一份。每个 URL 另有一个 `.ref` 记录
+ * 对应的内容 MD5、SHA-256 和 ETag / Last-Modified，用于后台条件请求预取更新。
+ *
+ * JAR 存放在应用私有目录而不是缓存目录，并设为只读，ART 会把优化后的 oat
+ * 输出写在同目录下，下次启动直接复用，不必再把 dex 读入堆内存。
+ * 总大小超过 [MAX_BYTES] 时按最近使用时间淘汰。
+ */
+object JarStore {
+
+    private const val TAG = "JarStore"
+    private const val DIR_NAME = "spider_jars"
+    private const val USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36"
+
+    /**
+     * JAR 总大小上限（不含 oat 输出）
+     */
+    private const val MAX_BYTES = 64L * 1024 * 1024
+
+    /**
+     * 小于该大小的响应视为无效
+     */
+    private const val MIN_JAR_BYTES = 100
+
+    private val client = OkHttpUtil.client.newBuilder()
+        .cache(null)
+        .build()
+
+    // 按 URL 加锁，不同 URL 的下载互不阻塞
+    private val locks = ConcurrentHashMap<String, Any>()
+
+    private val prefetchExecutor = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "JarPrefetch").apply { isDaemon = true }
+    }
+
+    /**
+     * URL 对应的内容记录
+     */
+    private data class Ref(
+        val md5: String,
+        val sha256: String,
+        val etag: String?,
+        val lastModified: String?,
+        val declaredMd5: String?
+    )
+
+    /**
+     * 获取 JAR 文件，本地没有时同步下载
+     * @param url 配置中的地址，可带 `;md5;xxx` 后缀
+     */
+    fun resolve(context: Context, url: String): File {
+        val (realUrl, declaredMd5) = parse(url)
+        return synchronized(lock(realUrl)) { resolve(dir(context), realUrl, declaredMd5) }
+    }
+
+    private fun resolve(dir: File, realUrl: String, declaredMd5: String?): File {
+
+        // 1. 配置声明了 MD5，直接按内容命中
+        if (declaredMd5 != null) {
+            blob(dir, declaredMd5).takeIf { it.exists() }?.let {
+                android.util.Log.d(TAG, "按 MD5 命中 JAR: ${it.name}")
+                return touch(it)
+            }
+        }
+
+        // 2. 该 URL 之前下载过，且配置声明的 MD5 没有变化（服务器内容与声明不一致时也能命中）
+        val ref = readRef(dir, realUrl)
+        if (ref != null && declaredMd5 == ref.declaredMd5) {
+            blob(dir, ref.md5).takeIf { it.exists() }?.let {
+                android.util.Log.d(TAG, "按 URL 命中 JAR: ${it.name}")
+                return touch(it)
+            }
+        }
+
+        // 3. 下载
+        return download(dir, realUrl, declaredMd5, null)
+    }
+
+    /**
+     * 后台预取 JAR：本地没有的下载，已有的用条件请求检查更新
+     */
+    fun prefetch(context: Context, urls: Collection<String>) {
+        val appContext = context.applicationContext
+        val targets = urls.filter { it.isNotEmpty() }.distinct()
+        if (targets.isEmpty()) return
+        prefetchExecutor.execute {
+            for (url in targets) {
+                try {
+                    refresh(appContext, url)
+                } catch (e: Exception) {
+                    android.util.Log.w(TAG, "预取 JAR 失败: $url", e)
+                }
+            }
+        }
+    }
+
+    private fun refresh(context: Context, url: String) {
+        val (realUrl, declaredMd5) = parse(url)
+        synchronized(lock(realUrl)) { refresh(dir(context), realUrl, declaredMd5) }
+    }
+
+    private fun refresh(dir: File, realUrl: String, declaredMd5: String?) {
+        if (declaredMd5 != null && blob(dir, declaredMd5).exists()) return
+        var ref = readRef(dir, realUrl)?.takeIf { it.declaredMd5 == declaredMd5 && blob(dir, it.md5).exists() }
+        // 校验已有文件的 SHA-256，损坏时删除后重新下载
+        if (ref != null && digest("SHA-256", blob(dir, ref.md5).readBytes()) != ref.sha256) {
+            android.util.Log.w(TAG, "JAR 校验失败，重新下载: ${ref.md5}")
+            val broken = blob(dir, ref.md5)
+            synchronized(this) { broken.delete() }
+            ref = null
+        }
+        download(dir, realUrl, declaredMd5, ref)
+    }
+
+    private fun lock(realUrl: String): Any = locks.getOrPut(realUrl) { Any() }
+
+    /**
+     * 下载并存储 JAR
+     * @param ref 已有记录，非空时发送条件请求，304 时返回已有文件
+     * @return JAR 文件
+     */
+    private fun download(dir: File, realUrl: String, declaredMd5: String?, ref: Ref?): File {
+        android.util.Log.d(TAG, "下载 JAR: $realUrl")
+        val request = Request.Builder()
+            .url(realUrl)
+            .header("User-Agent", USER_AGENT)
+            .apply {
+                ref?.etag?.let { header("If-None-Match", it) }
+                ref?.lastModified?.let { header("If-Modified-Since", it) }
+            }
+            .build()
+
+        client.newCall(request).execute().use { response ->
+            if (response.code == 304 && ref != null) {
+                android.util.Log.d(TAG, "JAR 未变化: $realUrl")
+                return touch(blob(dir, ref.md5))
+            }
+            if (!response.isSuccessful) {
+                android.util.Log.e(TAG, "下载失败: HTTP ${response.code}")
+                throw Exception("下载失败: ${response.code}")
+            }
+
+            val bytes = response.body?.bytes() ?: throw Exception("JAR 内容为空")
+            // 宽松验证：只检查大小，不检查 ZIP header（因为有些 JAR 伪装成图片）
+            if (bytes.size < MIN_JAR_BYTES) {
+                throw Exception("下载的文件太小，可能无效: ${bytes.size} bytes")
+            }
+
+            val md5 = digest("MD5", bytes)
+            val sha256 = digest("SHA-256", bytes)
+            if (declaredMd5 != null && !declaredMd5.equals(md5, ignoreCase = true)) {
+                android.util.Log.w(TAG, "JAR MD5 与配置不一致: 配置 $declaredMd5, 实际 $md5")
+            }
+
+            // 不同 URL 可能是同一份内容，写入和淘汰共用目录，短暂全局加锁，网络请求不在锁内
+            val file = synchronized(this) {
+                val file = blob(dir, md5)
+                if (!file.exists()) {
+                    val tmp = File(dir, "$md5.tmp")
+                    tmp.writeBytes(bytes)
+                    if (!tmp.renameTo(file)) {
+                        tmp.delete()
+                        throw Exception("保存 JAR 失败: ${file.absolutePath}")
+                    }
+                    // 动态加载的代码文件设为只读
+                    file.setReadOnly()
+                }
+                touch(file)
+                evict(dir, file)
+                file
+            }
+            writeRef(dir, realUrl, Ref(md5, sha256, response.header("ETag"), response.header("Last-Modified"), declaredMd5))
+            android.util.Log.d(TAG, "JAR 保存成功: ${file.name} (${bytes.size} bytes)")
+            return file
+        }
+    }
+
+    /**
+     * 超出容量时按最近使用时间淘汰，正在使用的文件除外
+     */
+    private fun evict(dir: File, keep: File) {
+        val jars = dir.listFiles { file -> file.name.endsWith(".jar") }?.sortedBy { it.lastModified() } ?: return
+        var total = jars.sumOf { it.length() }
+        for (jar in jars) {
+            if (total <= MAX_BYTES) break
+            if (jar == keep) continue
+            total -= jar.length()
+            android.util.Log.d(TAG, "淘汰 JAR: ${jar.name}")
+            jar.delete()
+            // 同时删除 ART 生成的 oat 输出
+            File(dir, "oat").listFiles()?.forEach { isaDir ->
+                isaDir.listFiles { file -> file.name.startsWith(jar.nameWithoutExtension) }?.forEach { it.delete() }
+            }
+        }
+    }
+
+    private fun parse(url: String): Pair<String, String?> {
+        val parts = url.split(";")
+        val realUrl = parts[0]
+        val md5Index = parts.indexOfFirst { it.equals("md5", ignoreCase = true) }
+        val md5 = parts.getOrNull(md5Index + 1)?.takeIf { md5Index >= 0 && it.isNotBlank() }?.trim()?.lowercase()
+        return realUrl to md5
+    }
+
+    private fun dir(context: Context): File {
+        return context.getDir(DIR_NAME, Context.MODE_PRIVATE)
+    }
+
+    private fun blob(dir: File, md5: String): File = File(dir, "$md5.jar")
+
+    private fun refFile(dir: File, url: String): File = File(dir, "${digest("MD5", url.toByteArray())}.ref")
+
+    private fun readRef(dir: File, url: String): Ref? {
+        val file = refFile(dir, url)
+        if (!file.exists()) return null
+        return try {
+            val lines = file.readLines()
+            Ref(
+                lines[0],
+                lines[1],
+                lines.getOrNull(2)?.ifEmpty { null },
+                lines.getOrNull(3)?.ifEmpty { null },
+                lines.getOrNull(4)?.ifEmpty { null }
+            )
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    private fun writeRef(dir: File, url: String, ref: Ref) {
+        refFile(dir, url).writeText(
+            "${ref.md5}\n${ref.sha256}\n${ref.etag.orEmpty()}\n${ref.lastModified.orEmpty()}\n${ref.declaredMd5.orEmpty()}\n"
+        )
+    }
+
+    /**
+     * 更新最近使用时间，只读文件也可以修改时间戳
+     */
+    private fun touch(file: File): File {
+        file.setLastModified(System.currentTimeMillis())
+        return file
+    }
+
+    private fun digest(algorithm: String, bytes: ByteArray): String {
+        return MessageDigest.getInstance(algorithm).digest(bytes).joinToString("") { "%02x".format(it) }
+    }
+}
@@ -3,143 +3,152 @@ package com.leafstudio.tvplayer.spider
 import android.content.Context
 import android.content.SharedPreferences
 import app.cash.quickjs.QuickJs
+import com.leafstudio.tvplayer.utils.OkHttpUtil
 import okhttp3.MediaType.Companion.toMediaTypeOrNull
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.RequestBody.Companion.toRequestBody
 import org.json.JSONObject
-import java.util.concurrent.TimeUnit
-
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+
+/**
+ * JS Spider
+ *
+ * QuickJs 运行时只能在创建它的线程上使用，每个实例有一个专属的运行时线程，
+ * 所有脚本调用都切换到该线程执行，调用方可以在任意线程调用。
+ * 实例通常通过 [JsSpiderPool] 获取并复用，避免每次都重新执行脚本和 init。
+ */
 class JsSpider(private val context: Context, private val jsContent: String) : Spider {
 
     private var quickJs: QuickJs? = null
-    private val client = OkHttpClient.Builder()
-        .connectTimeout(30, TimeUnit.SECONDS)
-        .readTimeout(30, TimeUnit.SECONDS)
-        .writeTimeout(30, TimeUnit.SECONDS)
-        .build()
+    private val client = OkHttpUtil.client
 
     private val local = LocalStorage(context)
     private val req = SpiderReq(client)
 
+    // 专属运行时线程
+    private val runtime = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "JsSpider").apply { isDaemon = true }
+    }
+
+    /**
+     * 执行脚本并调用 init，失败时释放运行时并抛出异常，失败的实例不可再使用
+     */
     override fun init(ext: String) {
-        quickJs = QuickJs.create()
-        try {
-            // 注入基础对象
-            quickJs?.set("local", ILocal::class.java, local)
-            // 注入 req 对象 (有些爬虫使用 req，有些可能使用其他方式，这里提供一个基础的 req)
-            // 注意：很多 TVBox JS 爬虫期望 req 是一个函数，而不是对象的方法。
-            // QuickJS 注入 Java 对象时，在 JS 中是对象。
-            // 如果 JS 中调用 req(url, opt)，我们需要注入一个名为 req 的函数。
-            // 但 QuickJs 只能 set 对象。
-            // 通常做法是注入一个对象，然后在 JS 中包装一下，或者 JS 本身就期望它是对象。
-            // 这里我们注入 "spiderReq" 对象，并在 JS 头部注入一段 shim 代码。
-            
-            quickJs?.set("spiderReq", IReq::class.java, req)
-            
-            // 注入 shim 代码，将 req 映射到 spiderReq.request
-            // 同时注入 console.log
-            val shim = """
-                var local = local || {};
-                var req = function(url, opt) {
-                    return spiderReq.request(url, JSON.stringify(opt || {}));
-                };
-                var console = {
-                    log: function(msg) {
-                        spiderReq.log(msg + "");
-                    }
-                };
-            """.trimIndent()
-            
-            quickJs?.evaluate(shim)
-            
-            // 执行脚本
-            quickJs?.evaluate(jsContent)
-            
-            // 调用 init
-            val initScript = "init('$ext')"
-            quickJs?.evaluate(initScript)
-        } catch (e: Exception) {
-            e.printStackTrace()
+        runOnRuntime {
+            quickJs = QuickJs.create()
+            try {
+                // 注入基础对象
+                quickJs?.set("local", ILocal::class.java, local)
+                // 注入 req 对象 (有些爬虫使用 req，有些可能使用其他方式，这里提供一个基础的 req)
+                // 注意：很多 TVBox JS 爬虫期望 req 是一个函数，而不是对象的方法。
+                // QuickJS 注入 Java 对象时，在 JS 中是对象。
+                // 如果 JS 中调用 req(url, opt)，我们需要注入一个名为 req 的函数。
+                // 但 QuickJs 只能 set 对象。
+                // 通常做法是注入一个对象，然后在 JS 中包装一下，或者 JS 本身就期望它是对象。
+                // 这里我们注入 "spiderReq" 对象，并在 JS 头部注入一段 shim 代码。
+                
+                quickJs?.set("spiderReq", IReq::class.java, req)
+                
+                // 注入 shim 代码，将 req 映射到 spiderReq.request
+                // 同时注入 console.log
+                val shim = """
+                    var local = local || {};
+                    var req = function(url, opt) {
+                        return spiderReq.request(url, JSON.stringify(opt || {}));
+                    };
+                    var console = {
+                        log: function(msg) {
+                            spiderReq.log(msg + "");
+                        }
+                    };
+                """.trimIndent()
+                
+                quickJs?.evaluate(shim)
+                
+                // 执行脚本
+                quickJs?.evaluate(jsContent)
+                
+                // 调用 init
+                val initScript = "init('$ext')"
+                quickJs?.evaluate(initScript)
+            } catch (e: Exception) {
+                quickJs?.close()
+                quickJs = null
+                throw e
+            }
         }
     }
 
     override fun home(filter: Boolean): String {
-        return try {
-            quickJs?.evaluate("home($filter)") as String
-        } catch (e: Exception) {
-            e.printStackTrace()
-            ""
-        }
+        return evaluate("home($filter)")
     }
 
     fun homeVod(): String {
-        return try {
-            quickJs?.evaluate("homeVod()") as String
-        } catch (e: Exception) {
-            e.printStackTrace()
-            ""
-        }
+        return evaluate("homeVod()")
     }
 
     override fun category(tid: String, pg: String, filter: Boolean, extend: String): String {
-        return try {
-            // extend 需要转义或者处理 JSON
-            val extendJson = if (extend.isEmpty()) "{}" else extend
-            // 注意：如果 extend 是 JSON 字符串，直接传；如果是对象，需要 stringify。
-            // 这里假设 extend 是 JSON 字符串。
-            quickJs?.evaluate("category('$tid', '$pg', $filter, $extendJson)") as String
-        } catch (e: Exception) {
-            e.printStackTrace()
-            ""
-        }
+        // extend 需要转义或者处理 JSON
+        val extendJson = if (extend.isEmpty()) "{}" else extend
+        // 注意：如果 extend 是 JSON 字符串，直接传；如果是对象，需要 stringify。
+        // 这里假设 extend 是 JSON 字符串。
+        return evaluate("category('$tid', '$pg', $filter, $extendJson)")
     }
 
     override fun detail(ids: String): String {
-        return try {
-            quickJs?.evaluate("detail('$ids')") as String
-        } catch (e: Exception) {
-            e.printStackTrace()
-            ""
-        }
+        return evaluate("detail('$ids')")
     }
 
     override fun play(flag: String, id: String, flags: List<String>): String {
-        return try {
-            // 将 flags List 转为 JS 数组字符串
-            val flagsJson = flags.joinToString(prefix = "[", postfix = "]", separator = ",") { "'$it'" }
-            quickJs?.evaluate("play('$flag', '$id', $flagsJson)") as String
-        } catch (e: Exception) {
-            e.printStackTrace()
-            ""
-        }
+        // 将 flags List 转为 JS 数组字符串
+        val flagsJson = flags.joinToString(prefix = "[", postfix = "]", separator = ",") { "'$it'" }
+        return evaluate("play('$flag', '$id', $flagsJson)")
     }
 
     override fun search(wd: String, quick: Boolean): String {
-        return try {
-            quickJs?.evaluate("search('$wd', $quick)") as String
+        return evaluate("search('$wd', $quick)")
+    }
+
+    override fun action(action: String): String {
+        return evaluate("action('$action')")
+    }
+
+    override fun destroy() {
+        try {
+            runOnRuntime {
+                quickJs?.close()
+                quickJs = null
+            }
         } catch (e: Exception) {
             e.printStackTrace()
-            ""
         }
+        runtime.shutdown()
     }
 
-    override fun action(action: String): String {
+    /**
+     * 在运行时线程上执行脚本，失败时返回空字符串
+     */
+    private fun evaluate(script: String): String {
         return try {
-            quickJs?.evaluate("action('$action')") as String
+            runOnRuntime { quickJs?.evaluate(script) as String }
         } catch (e: Exception) {
             e.printStackTrace()
             ""
         }
     }
 
-    override fun destroy() {
+    /**
+     * 切换到运行时线程执行并等待结果，脚本抛出的异常原样抛出
+     */
+    private fun <T> runOnRuntime(block: () -> T): T {
         try {
-            quickJs?.close()
-        } catch (e: Exception) {
-            e.printStackTrace()
+            return runtime.submit(Callable(block)).get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
         }
-        quickJs = null
     }
 
     // Interfaces
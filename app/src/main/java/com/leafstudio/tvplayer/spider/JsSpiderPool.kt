@@ -0,0 +1,205 @@
+package com.leafstudio.tvplayer.spider
+
+import android.content.Context
+import android.os.SystemClock
+import com.leafstudio.tvplayer.model.Site
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+
+/**
+ * JS Spider 实例池
+ *
+ * 按 (站点 key, 脚本哈希) 缓存已执行脚本并完成 init 的 [JsSpider]，脚本内容变化时自动重建。
+ * 每个实例有自己的运行时线程，池的容量即同时存活的运行时线程上限，超出后淘汰最久未浏览且未被持有的实例。
+ *
+ * 通过 [acquire] 获取的实例在 [release] 之前不会被淘汰，当前浏览的站点和正在执行的搜索都持有实例。
+ * 所有实例都被持有时池会暂时超出容量，释放后再淘汰。
+ * 搜索获取实例不更新最近浏览时间，一次搜索涉及的众多站点不会把常用站点挤出池。
+ *
+ * 常用站点的浏览次数记录在 SharedPreferences 中，配置加载后可通过 [warmUp] 提前创建。
+ * 创建（未池化）与复用（池化）的耗时通过日志输出，见 [stats]。
+ */
+object JsSpiderPool {
+
+    private const val TAG = "JsSpiderPool"
+    private const val PREFS_NAME = "spider_usage"
+
+    /**
+     * 池中最多保留的实例数
+     */
+    private const val MAX_SPIDERS = 6
+
+    /**
+     * 启动时预热的站点数
+     */
+    private const val WARM_UP_COUNT = 3
+
+    private class Entry(val key: String, val spider: JsSpider) {
+        // 持有次数，大于 0 时不淘汰
+        var leases = 0
+        // 最近浏览时间，只由浏览更新，用于淘汰
+        var lastUsed = 0L
+    }
+
+    private val spiders = HashMap<String, Entry>()
+
+    // 同一个 key 并发获取时只创建一次
+    private val creating = ConcurrentHashMap<String, Any>()
+
+    private val warmUpExecutor = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "JsSpiderWarmUp").apply { isDaemon = true }
+    }
+
+    private var createCount = 0
+    private var createTotalMs = 0L
+    private var hitCount = 0
+
+    /**
+     * 获取已初始化的 Spider 并持有它，不存在时创建并初始化，用完后必须调用 [release]。
+     * init 失败时抛出异常，不会放入池中也不会被持有
+     * @param siteKey 站点 key
+     * @param script 脚本内容（或脚本地址，与 [JsSpider] 构造参数一致）
+     * @param ext 站点 ext，仅在创建时使用
+     * @param browse 是否为浏览，浏览会计入常用站点并更新最近浏览时间，搜索传 false
+     */
+    fun acquire(context: Context, siteKey: String, script: String, ext: String, browse: Boolean = true): JsSpider {
+        if (browse) recordUsage(context, siteKey)
+        return load(context, siteKey, script, ext, browse, true)
+    }
+
+    /**
+     * 释放 [acquire] 获取的实例，不再被持有的实例可以被淘汰
+     */
+    fun release(spider: JsSpider) {
+        val evicted = synchronized(this) {
+            val entry = spiders.values.firstOrNull { it.spider === spider }
+            if (entry != null && entry.leases > 0) entry.leases--
+            trim()
+        }
+        destroy(evicted)
+    }
+
+    private fun load(context: Context, siteKey: String, script: String, ext: String, browse: Boolean, lease: Boolean): JsSpider {
+        val key = "$siteKey:${hash(script)}"
+        get(key, browse, lease)?.let { return it }
+
+        val lock = creating.getOrPut(key) { Any() }
+        synchronized(lock) {
+            get(key, browse, lease)?.let { return it }
+            try {
+                val start = SystemClock.elapsedRealtime()
+                val spider = JsSpider(context.applicationContext, script)
+                try {
+                    spider.init(ext)
+                } catch (e: Exception) {
+                    // init 失败的实例不放入池中，下次获取时重新创建
+                    spider.destroy()
+                    throw e
+                }
+                val elapsed = SystemClock.elapsedRealtime() - start
+                put(Entry(key, spider), elapsed, browse, lease)
+                android.util.Log.d(TAG, "创建 JS Spider: $siteKey, 耗时 ${elapsed}ms")
+                return spider
+            } finally {
+                creating.remove(key)
+            }
+        }
+    }
+
+    /**
+     * 在后台预热最常用的 JS 站点
+     * @param sites 当前配置中的站点，只预热没有 jar 的 type 3 站点
+     */
+    fun warmUp(context: Context, sites: List<Site>, spiderJar: String?) {
+        val prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+        val candidates = sites
+            .filter { it.type == 3 && it.jar.isNullOrEmpty() && spiderJar.isNullOrEmpty() }
+            .filter { prefs.getInt(it.key, 0) > 0 }
+            .sortedByDescending { prefs.getInt(it.key, 0) }
+            .take(WARM_UP_COUNT)
+        if (candidates.isEmpty()) return
+
+        val appContext = context.applicationContext
+        warmUpExecutor.execute {
+            for (site in candidates) {
+                try {
+                    load(appContext, site.key, site.api, site.ext ?: "", browse = true, lease = false)
+                } catch (e: Exception) {
+                    android.util.Log.w(TAG, "预热失败: ${site.key}", e)
+                }
+            }
+            android.util.Log.d(TAG, "预热完成: ${candidates.map { it.key }}, ${stats()}")
+        }
+    }
+
+    /**
+     * 创建与复用的耗时统计
+     */
+    @Synchronized
+    fun stats(): String {
+        val avgCreate = if (createCount > 0) createTotalMs / createCount else 0
+        val leased = spiders.values.count { it.leases > 0 }
+        return "池中实例: ${spiders.size} (持有中 $leased), 创建: $createCount 次 (平均 ${avgCreate}ms), 复用: $hitCount 次"
+    }
+
+    /**
+     * 销毁池中所有实例
+     */
+    fun clear() {
+        val all = synchronized(this) {
+            spiders.values.toList().also { spiders.clear() }
+        }
+        destroy(all)
+    }
+
+    @Synchronized
+    private fun get(key: String, browse: Boolean, lease: Boolean): JsSpider? {
+        val entry = spiders[key] ?: return null
+        hitCount++
+        if (browse) entry.lastUsed = SystemClock.elapsedRealtime()
+        if (lease) entry.leases++
+        return entry.spider
+    }
+
+    private fun put(entry: Entry, elapsedMs: Long, browse: Boolean, lease: Boolean) {
+        val evicted = synchronized(this) {
+            // 搜索创建的实例最近浏览时间为 0，最先被淘汰
+            if (browse) entry.lastUsed = SystemClock.elapsedRealtime()
+            if (lease) entry.leases++
+            spiders[entry.key] = entry
+            createCount++
+            createTotalMs += elapsedMs
+            trim()
+        }
+        destroy(evicted)
+    }
+
+    /**
+     * 超出容量时按最近浏览时间淘汰未被持有的实例，需在持有锁时调用
+     */
+    private fun trim(): List<Entry> {
+        val evicted = ArrayList<Entry>()
+        while (spiders.size > MAX_SPIDERS) {
+            val oldest = spiders.values.filter { it.leases == 0 }.minByOrNull { it.lastUsed } ?: break
+            spiders.remove(oldest.key)
+            evicted.add(oldest)
+        }
+        return evicted
+    }
+
+    private fun destroy(entries: List<Entry>) {
+        // 运行时线程上排队的调用执行完后才会关闭
+        entries.forEach { it.spider.destroy() }
+    }
+
+    private fun recordUsage(context: Context, siteKey: String) {
+        val prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+        prefs.edit().putInt(siteKey, prefs.getInt(siteKey, 0) + 1).apply()
+    }
+
+    private fun hash(script: String): String {
+        val digest = MessageDigest.getInstance("MD5").digest(script.toByteArray())
+        return digest.joinToString("") { "%02x".format(it) }
+    }
+}
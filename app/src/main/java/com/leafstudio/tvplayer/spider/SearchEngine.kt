@@ -0,0 +1,277 @@
+package com.leafstudio.tvplayer.spider
+
+import android.content.Context
+import android.os.SystemClock
+import com.leafstudio.tvplayer.model.Site
+import com.leafstudio.tvplayer.model.Vod
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withTimeout
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import org.json.JSONObject
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * 聚合搜索引擎
+ *
+ * 一次搜索对所有可搜索站点并发请求（并发数有上限），每个站点有独立的超时，
+ * 取消收集协程即可取消整次搜索：CMS 请求直接取消 HTTP 调用，Spider 搜索所在线程会被中断。
+ * 初始化过的 Spider 按站点缓存（JS Spider 由 [JsSpiderPool] 缓存），后续搜索直接复用。
+ *
+ * @param context 用于创建 Spider
+ * @param client CMS 接口使用的客户端
+ */
+class SearchEngine(private val context: Context, private val client: OkHttpClient) {
+
+    companion object {
+        private const val TAG = "SearchEngine"
+
+        /**
+         * 同时搜索的站点数上限
+         */
+        private const val MAX_PARALLEL = 5
+
+        /**
+         * 单个站点的搜索超时
+         */
+        private const val SITE_TIMEOUT_MS = 15000L
+
+        /**
+         * Spider 调用线程数上限，超时后仍卡住的调用最多占用这么多线程，其余调用排队
+         */
+        private const val SPIDER_THREADS = MAX_PARALLEL * 2
+
+        /**
+         * Spider 调用是阻塞的，在独立线程上执行，取消时中断线程
+         */
+        private val spiderExecutor = ThreadPoolExecutor(
+            SPIDER_THREADS, SPIDER_THREADS, 30L, TimeUnit.SECONDS, LinkedBlockingQueue(), daemon("SearchSpider")
+        ).apply { allowCoreThreadTimeOut(true) }
+
+        /**
+         * 销毁 Spider 的线程，不占用搜索线程，也不在主线程等待
+         */
+        private val releaseExecutor = Executors.newSingleThreadExecutor(daemon("SearchRelease"))
+
+        private fun daemon(name: String): ThreadFactory {
+            val count = AtomicInteger()
+            return ThreadFactory { runnable ->
+                Thread(runnable, "$name-${count.incrementAndGet()}").apply { isDaemon = true }
+            }
+        }
+    }
+
+    /**
+     * 单个站点的搜索结果
+     * @property vods 站点返回的结果，失败或超时时为空
+     * @property elapsedMs 从搜索开始到该站点完成的耗时
+     * @property timedOut 是否超时
+     */
+    data class SiteResult(
+        val site: Site,
+        val vods: List<Vod>,
+        val elapsedMs: Long,
+        val timedOut: Boolean = false,
+        val error: String? = null
+    )
+
+    /**
+     * 搜索结果索引
+     *
+     * 按 vod_id + vod_name 去重，各站点结果到达时增量合并，不再每次重新展开全部结果。
+     * 只应在主线程读写。
+     */
+    class ResultIndex {
+        private val keys = HashSet<String>()
+        private val merged = ArrayList<Vod>()
+        // 按站点 key 索引，不同站点可能同名
+        private val bySite = LinkedHashMap<String, List<Vod>>()
+        private val sites = LinkedHashMap<String, Site>()
+
+        /**
+         * 去重后的全部结果，按到达顺序
+         */
+        val all: List<Vod>
+            get() = merged
+
+        /**
+         * 有结果的站点，按到达顺序
+         */
+        val resultSites: Collection<Site>
+            get() = sites.values
+
+        fun siteResults(siteKey: String): List<Vod> = bySite[siteKey] ?: emptyList()
+
+        fun isEmpty(): Boolean = bySite.isEmpty()
+
+        /**
+         * 合并一个站点的结果
+         * @return 合并后新增（去重后）的结果
+         */
+        fun merge(site: Site, vods: List<Vod>): List<Vod> {
+            bySite[site.key] = vods
+            sites[site.key] = site
+            val added = vods.filter { keys.add(it.vod_id + it.vod_name) }
+            merged.addAll(added)
+            return added
+        }
+    }
+
+    private val spiders = ConcurrentHashMap<String, Spider>()
+
+    /**
+     * 搜索所有站点，每个站点完成时发出一个 [SiteResult]
+     * @param spiderJar 配置中的全局 JAR 地址，站点未指定 jar 时使用
+     */
+    fun search(keyword: String, sites: List<Site>, spiderJar: String?): Flow<SiteResult> = channelFlow {
+        val start = SystemClock.elapsedRealtime()
+        val semaphore = Semaphore(MAX_PARALLEL)
+        for (site in sites) {
+            launch {
+                val result = semaphore.withPermit {
+                    try {
+                        val vods = withTimeout(SITE_TIMEOUT_MS) { searchSite(site, keyword, spiderJar) }
+                        SiteResult(site, vods, SystemClock.elapsedRealtime() - start)
+                    } catch (e: TimeoutCancellationException) {
+                        SiteResult(site, emptyList(), SystemClock.elapsedRealtime() - start, timedOut = true)
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        SiteResult(site, emptyList(), SystemClock.elapsedRealtime() - start, error = e.message)
+                    }
+                }
+                android.util.Log.d(TAG, "站点 ${site.name}: ${result.vods.size} 条, 耗时 ${result.elapsedMs}ms" +
+                    if (result.timedOut) ", 超时" else result.error?.let { ", 失败: $it" }.orEmpty())
+                send(result)
+            }
+        }
+    }
+
+    /**
+     * 销毁缓存的 JAR Spider 包装，JS Spider 留在实例池中复用
+     *
+     * 可在主线程调用：销毁在后台线程进行，不等待仍在执行或卡住的搜索。
+     */
+    fun release() {
+        val released = ArrayList(spiders.values)
+        spiders.clear()
+        if (released.isEmpty()) return
+        releaseExecutor.execute {
+            released.forEach {
+                try {
+                    it.destroy()
+                } catch (e: Exception) {
+                    e.printStackTrace()
+                }
+            }
+        }
+    }
+
+    private suspend fun searchSite(site: Site, keyword: String, spiderJar: String?): List<Vod> {
+        return if (site.type == 3) {
+            val jsonStr = runOnSpiderThread {
+                val spider = obtainSpider(site, spiderJar)
+                try {
+                    // 同一个 Spider 实例不能并发调用，上一次搜索被取消后可能仍在执行
+                    synchronized(spider) { spider.search(keyword, true) }
+                } finally {
+                    if (spider is JsSpider) JsSpiderPool.release(spider)
+                }
+            }
+            parseList(site, jsonStr)
+        } else {
+            val apiUrl = site.api.replace("/at/xml/", "/at/json/", ignoreCase = true)
+            // 修正: 增加 pg=1 并对 keyword 编码 (虽英文不需要，但为了健壮性)
+            val encodedKw = java.net.URLEncoder.encode(keyword, "UTF-8")
+            val url = if (apiUrl.contains("?")) "${apiUrl}&ac=detail&wd=$encodedKw&pg=1" else "${apiUrl}?ac=detail&wd=$encodedKw&pg=1"
+            val jsonStr = client.newCall(Request.Builder().url(url).build()).await()
+            parseList(site, jsonStr)
+        }
+    }
+
+    private fun obtainSpider(site: Site, spiderJar: String?): Spider {
+        val jarUrl = if (!site.jar.isNullOrEmpty()) site.jar else spiderJar ?: ""
+        // JS Spider 由实例池管理，搜索期间持有，不更新最近浏览时间
+        if (jarUrl.isEmpty()) return JsSpiderPool.acquire(context, site.key, site.api, site.ext ?: "", browse = false)
+
+        spiders[site.key]?.let { return it }
+        val spider = JarSpider(context, jarUrl, site.api, site.key)
+        spider.init(site.ext ?: "")
+        // 并发创建时保留先放入的实例
+        val existing = spiders.putIfAbsent(site.key, spider) ?: return spider
+        spider.destroy()
+        return existing
+    }
+
+    private fun parseList(site: Site, jsonStr: String): List<Vod> {
+        if (jsonStr.isEmpty()) return emptyList()
+        val listArray = JSONObject(jsonStr).optJSONArray("list") ?: return emptyList()
+        val results = ArrayList<Vod>(listArray.length())
+        for (i in 0 until listArray.length()) {
+            val item = listArray.getJSONObject(i)
+            results.add(Vod(
+                vod_id = item.optString("vod_id"),
+                vod_name = item.optString("vod_name"),
+                vod_pic = item.optString("vod_pic"),
+                vod_remarks = item.optString("vod_remarks"),
+                vod_play_url = item.optString("vod_play_url"),
+                vod_tag = "${site.name}@@@${site.playUrl ?: ""}"
+            ))
+        }
+        return results
+    }
+
+    /**
+     * 在独立线程执行阻塞调用，协程取消时中断该线程并立即返回
+     */
+    private suspend fun <T> runOnSpiderThread(block: () -> T): T = suspendCancellableCoroutine { cont ->
+        val future = spiderExecutor.submit {
+            try {
+                cont.resume(block())
+            } catch (e: Throwable) {
+                cont.resumeWithException(e)
+            }
+        }
+        cont.invokeOnCancellation { future.cancel(true) }
+    }
+
+    /**
+     * 异步执行请求，协程取消时取消 HTTP 调用
+     */
+    private suspend fun Call.await(): String = suspendCancellableCoroutine { cont ->
+        cont.invokeOnCancellation { cancel() }
+        enqueue(object : Callback {
+            override fun onFailure(call: Call, e: IOException) {
+                cont.resumeWithException(e)
+            }
+
+            override fun onResponse(call: Call, response: Response) {
+                try {
+                    val body = response.use { it.body?.string().orEmpty() }
+                    cont.resume(body)
+                } catch (e: IOException) {
+                    cont.resumeWithException(e)
+                }
+            }
+        })
+    }
+}
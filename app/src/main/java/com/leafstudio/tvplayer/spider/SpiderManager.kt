@@ -2,13 +2,8 @@ package com.leafstudio.tvplayer.spider
 
 import android.content.Context
 import dalvik.system.DexClassLoader
-import okhttp3.OkHttpClient
-import okhttp3.Request
-import java.io.File
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
-import java.nio.ByteBuffer
-import java.util.zip.ZipFile
 import com.leafstudio.tvplayer.spider.Spider as LocalSpider // 别名以区分
 
 /**
@@ -16,7 +11,18 @@ import com.leafstudio.tvplayer.spider.Spider as LocalSpider // 别名以区分
  * 负责管理 ClassLoader 和 Spider 实例的缓存
  */
 object SpiderManager {
+    /**
+     * 当前浏览站点的 Spider，替换时释放旧的 JS Spider 持有，使其可以被 [JsSpiderPool] 淘汰
+     * 会在多个线程上读写，替换时加锁，保证旧实例的持有只释放一次
+     */
+    @Volatile
     var currentSpider: LocalSpider? = null
+        set(value) {
+            val old = synchronized(this) {
+                field.also { field = value }
+            }
+            if (old !== value && old is JsSpider) JsSpiderPool.release(old)
+        }
     private val executor = Executors.newSingleThreadExecutor()
     
     // ClassLoader 缓存 - key 是 JAR URL 的 MD5
@@ -25,8 +31,6 @@ object SpiderManager {
     // Spider 实例缓存 - key 是 jarKey + siteKey
     private val spiders = ConcurrentHashMap<String, LocalSpider>()
     
-    private val client = OkHttpClient.Builder().build()
-    
     fun <T> submit(task: () -> T) = executor.submit(task)
     
     fun execute(task: () -> Unit) = executor.execute(task)
@@ -106,73 +110,50 @@ object SpiderManager {
             if (loaders.containsKey(jarKey)) return loaders[jarKey]!!
             
             android.util.Log.d("SpiderManager", "开始加载 JAR: $jarUrl")
-            val jarFile = downloadJar(context, jarUrl)
+            val start = android.os.SystemClock.elapsedRealtime()
+            val heapBefore = usedHeap()
+            val jarFile = JarStore.resolve(context, jarUrl)
             
-            var loader: ClassLoader? = null
-            
-            // 1. 优先尝试内存加载 (Android 8.0+)
-            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-                loader = loadDexInMemory(context, jarFile)
-            }
-            
-            // 2. 如果内存加载不可用失败，回退到标准 DexClassLoader
-            if (loader == null) {
-                android.util.Log.d("SpiderManager", "内存加载不可用或失败，使用标准 DexClassLoader")
-                val optimizedDir = context.getDir("dex_opt", Context.MODE_PRIVATE)
-                val jarDir = jarFile.parentFile ?: context.cacheDir
-                
-                loader = DexClassLoader(
-                    jarFile.absolutePath,
-                    optimizedDir.absolutePath,
-                    jarDir.absolutePath,
-                    context.classLoader
-                )
-            }
+            // 直接从持久化的 JAR 加载，ART 优化输出（oat）保存在 JAR 同目录并跨启动复用，
+            // 不再把 dex 读入堆内存
+            val optimizedDir = context.getDir("dex_opt", Context.MODE_PRIVATE)
+            val jarDir = jarFile.parentFile ?: context.cacheDir
+            val loader = DexClassLoader(
+                jarFile.absolutePath,
+                optimizedDir.absolutePath,
+                jarDir.absolutePath,
+                context.classLoader
+            )
             
-            // 3. 尝试初始化 Init
+            // 尝试初始化 Init
             try {
-                val initClass = loader!!.loadClass("com.github.catvod.spider.Init")
+                val initClass = loader.loadClass("com.github.catvod.spider.Init")
                 val initMethod = initClass.getMethod("init", Context::class.java)
                 initMethod.invoke(null, context)
             } catch (e: Exception) {
                 // Init 类可能不存在，非致命错误
             }
+            
+            android.util.Log.d("SpiderManager", "JAR 加载完成: ${jarFile.name}, 耗时 ${android.os.SystemClock.elapsedRealtime() - start}ms, " +
+                "堆内存 ${heapBefore / 1024}KB -> ${usedHeap() / 1024}KB")
 
-            loaders[jarKey] = loader!!
-            return loader!!
+            loaders[jarKey] = loader
+            return loader
         }
     }
     
-    private fun loadDexInMemory(context: Context, jarFile: File): ClassLoader? {
-        try {
-            val dexBuffers = mutableListOf<ByteBuffer>()
-            ZipFile(jarFile).use { zip ->
-                val entries = zip.entries()
-                while (entries.hasMoreElements()) {
-                    val entry = entries.nextElement()
-                    if (entry.name.endsWith(".dex")) {
-                        android.util.Log.d("SpiderManager", "读取内存 DEX: ${entry.name}")
-                        zip.getInputStream(entry).use { input ->
-                            val bytes = input.readBytes()
-                            dexBuffers.add(ByteBuffer.wrap(bytes))
-                        }
-                    }
-                }
-            }
-            
-            if (dexBuffers.isNotEmpty()) {
-                android.util.Log.d("SpiderManager", "✅ InMemoryDexClassLoader 初始化成功，共 ${dexBuffers.size} 个 DEX")
-                return dalvik.system.InMemoryDexClassLoader(
-                    dexBuffers.toTypedArray(),
-                    context.classLoader
-                )
-            }
-        } catch (e: Exception) {
-            android.util.Log.e("SpiderManager", "InMemoryDexClassLoader 失败", e)
-        }
-        return null
+    /**
+     * 后台预取配置中用到的 JAR
+     */
+    fun prefetch(context: Context, jarUrls: Collection<String>) {
+        JarStore.prefetch(context, jarUrls)
     }
-
+    
+    private fun usedHeap(): Long {
+        val runtime = Runtime.getRuntime()
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+    
     private fun loadSpiderClass(loader: ClassLoader, className: String): Class<*> {
         val candidates = mutableListOf<String>()
         if (className.startsWith("csp_")) {
@@ -192,56 +173,6 @@ object SpiderManager {
         throw ClassNotFoundException("无法在 JAR 中找到类: $className (已尝试: $candidates)")
     }
     
-    private fun downloadJar(context: Context, url: String): File {
-        val jarDir = File(context.cacheDir, "jars")
-        if (!jarDir.exists()) jarDir.mkdirs()
-        
-        // 使用原始 URL 生成文件名，这样可以区分不同 MD5 的版本
-        val fileName = url.hashCode().toString() + ".jar"
-        val jarFile = File(jarDir, fileName)
-        
-        if (jarFile.exists() && jarFile.length() > 0) {
-            android.util.Log.d("SpiderManager", "使用缓存 JAR: ${jarFile.absolutePath} (${jarFile.length()} bytes)")
-            return jarFile
-        }
-        
-        // 处理 URL: 去除 ;md5 等后缀
-        val realUrl = if (url.contains(";")) url.split(";")[0] else url
-        
-        android.util.Log.d("SpiderManager", "开始下载 JAR: $realUrl")
-        val request = Request.Builder()
-            .url(realUrl)
-            .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
-            .build()
-        val response = client.newCall(request).execute()
-        
-        if (!response.isSuccessful) {
-            android.util.Log.e("SpiderManager", "下载失败: HTTP ${response.code}")
-            throw Exception("下载失败: ${response.code}")
-        }
-        
-        val bytes = response.body?.bytes() ?: throw Exception("JAR 内容为空")
-        android.util.Log.d("SpiderManager", "下载完成: ${bytes.size} bytes")
-        
-        // 宽松验证：只检查大小，不检查 ZIP header（因为有些 JAR 伪装成图片）
-        if (bytes.size < 100) {
-            android.util.Log.e("SpiderManager", "文件太小，可能不是有效的 JAR: ${bytes.size} bytes")
-            throw Exception("下载的文件太小，可能无效")
-        }
-        
-        jarFile.writeBytes(bytes)
-        
-        try {
-            jarFile.setWritable(true, true)
-            jarFile.setReadable(true, false)
-        } catch (e: Exception) { 
-            android.util.Log.w("SpiderManager", "设置文件权限失败", e)
-        }
-        
-        android.util.Log.d("SpiderManager", "JAR 保存成功: ${jarFile.absolutePath}")
-        return jarFile
-    }
-
     /**
      * 适配器类：将 JAR Spider (Abstract Class) 适配为 Local Spider (Interface)
      */
@@ -12,10 +12,12 @@ import com.leafstudio.tvplayer.utils.loadUrl
 import com.leafstudio.tvplayer.model.Vod
 
 class MediaContentAdapter(
-    private var items: List<Vod>,
+    items: List<Vod>,
     private val onContentClick: (Vod) -> Unit
 ) : RecyclerView.Adapter<MediaContentAdapter.ViewHolder>() {
 
+    private val items = ArrayList(items)
+
     class ViewHolder(view: View) : RecyclerView.ViewHolder(view) {
         val posterImage: ImageView = view.findViewById(R.id.iv_poster)
         val titleText: TextView = view.findViewById(R.id.tv_title)
@@ -58,7 +60,18 @@ class MediaContentAdapter(
     override fun getItemCount() = items.size
     
     fun updateContent(newItems: List<Vod>) {
-        items = newItems
+        items.clear()
+        items.addAll(newItems)
         notifyDataSetChanged()
     }
+    
+    /**
+     * 在末尾追加内容，只刷新新增的条目
+     */
+    fun appendContent(newItems: List<Vod>) {
+        if (newItems.isEmpty()) return
+        val start = items.size
+        items.addAll(newItems)
+        notifyItemRangeInserted(start, newItems.size)
+    }
 }
@@ -1,19 +1,121 @@
 package com.leafstudio.tvplayer.utils
 
 import android.annotation.SuppressLint
+import android.content.Context
+import android.os.SystemClock
+import okhttp3.Cache
+import okhttp3.Call
+import okhttp3.Connection
+import okhttp3.ConnectionPool
+import okhttp3.Dispatcher
+import okhttp3.Dns
+import okhttp3.EventListener
 import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import java.io.File
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.net.UnknownHostException
 import java.security.SecureRandom
 import java.security.cert.X509Certificate
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 import javax.net.ssl.SSLContext
 import javax.net.ssl.TrustManager
 import javax.net.ssl.X509TrustManager
 
+/**
+ * 全局共享的 OkHttp 客户端
+ *
+ * 整个应用只有一个连接池、一个调度器、一个 DNS 缓存和一个磁盘缓存。
+ * 各个用途的客户端（超时不同、是否使用缓存等）都由 [client] 通过 `newBuilder()` 派生，
+ * 派生客户端与 [client] 共享上述资源，同一主机的请求可以复用 TCP/TLS 连接和 HTTP/2 多路复用。
+ *
+ * 磁盘缓存需要在 [init] 之后才会启用，应在 Application.onCreate 中调用。
+ */
 object OkHttpUtil {
+    private const val TAG = "OkHttpUtil"
     private const val TIMEOUT = 30L
 
-    fun getUnsafeOkHttpClient(): OkHttpClient {
-        return try {
+    private const val CACHE_DIR = "http"
+    private const val CACHE_SIZE = 32L * 1024 * 1024
+
+    /**
+     * 连接池空闲连接数和保活时长
+     */
+    private const val MAX_IDLE_CONNECTIONS = 16
+    private const val KEEP_ALIVE_MINUTES = 5L
+
+    /**
+     * 每累计多少次连接获取输出一次连接池统计
+     */
+    private const val STATS_LOG_INTERVAL = 100L
+
+    @Volatile
+    private var cache: Cache? = null
+
+    private val connectionPool = ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES)
+
+    private val dispatcher = Dispatcher().apply {
+        maxRequests = 64
+        maxRequestsPerHost = 8
+    }
+
+    private val poolStats = PoolStats()
+
+    /**
+     * 初始化磁盘缓存，重复调用无副作用
+     */
+    @Synchronized
+    fun init(context: Context) {
+        if (cache != null) return
+        cache = Cache(File(context.applicationContext.cacheDir, CACHE_DIR), CACHE_SIZE)
+    }
+
+    /**
+     * 基础客户端，30 秒超时，使用磁盘缓存
+     */
+    val client: OkHttpClient by lazy {
+        OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            .dns(CachingDns)
+            .cache(cache)
+            .eventListener(poolStats)
+            .protocols(listOf(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(TIMEOUT, TimeUnit.SECONDS)
+            .readTimeout(TIMEOUT, TimeUnit.SECONDS)
+            .writeTimeout(TIMEOUT, TimeUnit.SECONDS)
+            .followRedirects(true)
+            .followSslRedirects(true)
+            .build()
+    }
+
+    /**
+     * 接口请求客户端，15 秒超时
+     */
+    val apiClient: OkHttpClient by lazy { derive(15) }
+
+    /**
+     * 轻量请求客户端（天气、跑马灯、版本检查等），5 秒超时
+     */
+    val quickClient: OkHttpClient by lazy { derive(5) }
+
+    /**
+     * 从共享客户端派生指定超时的客户端
+     */
+    fun derive(timeoutSeconds: Long): OkHttpClient {
+        return client.newBuilder()
+            .connectTimeout(timeoutSeconds, TimeUnit.SECONDS)
+            .readTimeout(timeoutSeconds, TimeUnit.SECONDS)
+            .writeTimeout(timeoutSeconds, TimeUnit.SECONDS)
+            .build()
+    }
+
+    private val unsafeClient: OkHttpClient by lazy {
+        try {
             val trustAllCerts = arrayOf<TrustManager>(
                 @SuppressLint("CustomX509TrustManager")
                 object : X509TrustManager {
@@ -29,19 +131,77 @@ object OkHttpUtil {
             sslContext.init(null, trustAllCerts, SecureRandom())
             val sslSocketFactory = sslContext.socketFactory
 
-            OkHttpClient.Builder()
+            client.newBuilder()
                 .sslSocketFactory(sslSocketFactory, trustAllCerts[0] as X509TrustManager)
                 .hostnameVerifier { _, _ -> true }
-                .connectTimeout(TIMEOUT, TimeUnit.SECONDS)
-                .readTimeout(TIMEOUT, TimeUnit.SECONDS)
-                .writeTimeout(TIMEOUT, TimeUnit.SECONDS)
                 .build()
         } catch (e: Exception) {
-            OkHttpClient.Builder()
-                .connectTimeout(TIMEOUT, TimeUnit.SECONDS)
-                .readTimeout(TIMEOUT, TimeUnit.SECONDS)
-                .writeTimeout(TIMEOUT, TimeUnit.SECONDS)
-                .build()
+            client
+        }
+    }
+
+    /**
+     * 不校验证书的客户端，与共享客户端使用同一个连接池
+     */
+    fun getUnsafeOkHttpClient(): OkHttpClient = unsafeClient
+
+    /**
+     * 连接池命中率：复用已有连接的获取次数占全部连接获取次数的比例
+     */
+    fun poolHitRate(): Double = poolStats.hitRate()
+
+    /**
+     * 连接池统计信息
+     */
+    fun poolSummary(): String {
+        return "连接获取: ${poolStats.acquired.get()}, 新建连接: ${poolStats.connects.get()}, " +
+            "命中率: ${"%.1f".format(poolHitRate() * 100)}%, " +
+            "连接池: ${connectionPool.connectionCount()} (空闲 ${connectionPool.idleConnectionCount()})"
+    }
+
+    /**
+     * 统计连接复用情况，[connectStart] 只在新建连接时触发
+     */
+    private class PoolStats : EventListener() {
+        val acquired = AtomicLong()
+        val connects = AtomicLong()
+
+        override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+            connects.incrementAndGet()
+        }
+
+        override fun connectionAcquired(call: Call, connection: Connection) {
+            if (acquired.incrementAndGet() % STATS_LOG_INTERVAL == 0L) {
+                android.util.Log.d(TAG, poolSummary())
+            }
+        }
+
+        fun hitRate(): Double {
+            val total = acquired.get()
+            if (total == 0L) return 0.0
+            return ((total - connects.get()).coerceAtLeast(0)).toDouble() / total
+        }
+    }
+
+    /**
+     * 带过期时间的 DNS 缓存，解析失败时回退到过期的记录
+     */
+    private object CachingDns : Dns {
+        private const val TTL_MS = 5 * 60 * 1000L
+
+        private class Entry(val addresses: List<InetAddress>, val expiresAt: Long)
+
+        private val entries = ConcurrentHashMap<String, Entry>()
+
+        override fun lookup(hostname: String): List<InetAddress> {
+            val now = SystemClock.elapsedRealtime()
+            val entry = entries[hostname]
+            if (entry != null && entry.expiresAt > now) return entry.addresses
+            return try {
+                Dns.SYSTEM.lookup(hostname).also { entries[hostname] = Entry(it, now + TTL_MS) }
+            } catch (e: UnknownHostException) {
+                entry?.addresses ?: throw e
+            }
         }
     }
 }
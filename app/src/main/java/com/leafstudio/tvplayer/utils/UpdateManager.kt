@@ -11,12 +11,10 @@ import android.os.Handler
 import android.os.Looper
 import android.widget.Toast
 import androidx.core.content.FileProvider
-import okhttp3.OkHttpClient
 import okhttp3.Request
 import org.json.JSONObject
 import java.io.File
 import java.io.FileOutputStream
-import java.util.concurrent.TimeUnit
 
 object UpdateManager {
     // 使用用户提供的 URL，假设是目录则追加 version.json，如果是文件则直接使用
@@ -43,10 +41,7 @@ object UpdateManager {
         
         Thread {
             try {
-                val client = OkHttpClient.Builder()
-                    .connectTimeout(10, TimeUnit.SECONDS)
-                    .readTimeout(10, TimeUnit.SECONDS)
-                    .build()
+                val client = OkHttpUtil.derive(10)
 
                 val request = Request.Builder()
                     .url(UPDATE_URL)
@@ -184,9 +179,9 @@ object UpdateManager {
             try {
                 android.util.Log.d("UpdateManager", "开始下载: $url")
                 
-                val client = OkHttpClient.Builder()
-                    .connectTimeout(30, TimeUnit.SECONDS)
-                    .readTimeout(30, TimeUnit.SECONDS)
+                // 安装包不写入 HTTP 缓存
+                val client = OkHttpUtil.client.newBuilder()
+                    .cache(null)
                     .build()
                     
                 val request = Request.Builder()
@@ -20,9 +20,13 @@ import com.fongmi.android.tv.ui.dialog.UaDialog;
 import com.fongmi.android.tv.utils.ResUtil;
 
 import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Locale;
 
 public class SettingPlayerActivity extends BaseActivity implements UaCallback, BufferCallback, SpeedCallback {
 
+    private static final int[] EXO_CACHE = {128, 256, 512, 1024, 2048};
+
     private ActivitySettingPlayerBinding mBinding;
     private DecimalFormat format;
     private String[] caption;
@@ -37,6 +41,10 @@ public class SettingPlayerActivity extends BaseActivity implements UaCallback, B
         return getString(value ? R.string.setting_on : R.string.setting_off);
     }
 
+    private String getExoCache() {
+        return String.format(Locale.ROOT, "%d MB", Setting.getExoCache());
+    }
+
     @Override
     protected ViewBinding getBinding() {
         return mBinding = ActivitySettingPlayerBinding.inflate(getLayoutInflater());
@@ -53,6 +61,7 @@ public class SettingPlayerActivity extends BaseActivity implements UaCallback, B
         mBinding.adblockText.setText(getSwitch(Setting.isAdblock()));
         mBinding.speedText.setText(format.format(Setting.getSpeed()));
         mBinding.bufferText.setText(String.valueOf(Setting.getBuffer()));
+        mBinding.exoCacheText.setText(getExoCache());
         mBinding.backgroundText.setText(getSwitch(Setting.isBackgroundOn()));
         mBinding.audioDecodeText.setText(getSwitch(Setting.isAudioPrefer()));
         mBinding.videoDecodeText.setText(getSwitch(Setting.isVideoPrefer()));
@@ -69,6 +78,7 @@ public class SettingPlayerActivity extends BaseActivity implements UaCallback, B
         mBinding.scale.setOnClickListener(this::setScale);
         mBinding.speed.setOnClickListener(this::onSpeed);
         mBinding.buffer.setOnClickListener(this::onBuffer);
+        mBinding.exoCache.setOnClickListener(this::setExoCache);
         mBinding.render.setOnClickListener(this::setRender);
         mBinding.tunnel.setOnClickListener(this::setTunnel);
         mBinding.caption.setOnClickListener(this::setCaption);
@@ -126,6 +136,12 @@ public class SettingPlayerActivity extends BaseActivity implements UaCallback, B
         Setting.putBuffer(times);
     }
 
+    private void setExoCache(View view) {
+        int index = Arrays.binarySearch(EXO_CACHE, Setting.getExoCache());
+        Setting.putExoCache(EXO_CACHE[index < 0 || index == EXO_CACHE.length - 1 ? 0 : index + 1]);
+        mBinding.exoCacheText.setText(getExoCache());
+    }
+
     private void setRender(View view) {
         int index = Setting.getRender();
         Setting.putRender(index = index == render.length - 1 ? 0 : ++index);
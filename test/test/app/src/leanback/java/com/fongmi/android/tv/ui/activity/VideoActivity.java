@@ -709,6 +709,12 @@ public class VideoActivity extends BaseActivity implements CustomKeyDownVod.List
         else if (notify) Notify.show(mHistory.isRevPlay() ? R.string.error_play_prev : R.string.error_play_next);
     }
 
+    private void prefetchNext() {
+        int position = getEpisodePosition() + (mHistory.isRevPlay() ? -1 : 1);
+        if (position < 0 || position >= mEpisodeAdapter.size()) return;
+        mPlayers.prefetch(((Episode) mEpisodeAdapter.get(position)).getUrl());
+    }
+
     private void onPrev(boolean notify) {
         int current = getEpisodePosition();
         current = --current < 0 ? 0 : current;
@@ -1071,6 +1077,7 @@ public class VideoActivity extends BaseActivity implements CustomKeyDownVod.List
             case Player.STATE_READY:
                 hideProgress();
                 mPlayers.reset();
+                prefetchNext();
                 break;
             case Player.STATE_ENDED:
                 checkEnded(true);
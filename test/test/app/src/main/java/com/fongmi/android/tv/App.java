@@ -11,20 +11,19 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.os.HandlerCompat;
 
+import com.fongmi.android.tv.utils.Lane;
 import com.fongmi.android.tv.utils.Notify;
 import com.fongmi.hook.Chromium;
 import com.fongmi.hook.Hook;
+import com.fongmi.android.tv.gson.VodAdapter;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 public class App extends Application implements Application.ActivityLifecycleCallbacks {
 
-    private final ExecutorService searchExecutor;
-    private final ExecutorService executor;
     private final Handler handler;
     private static App instance;
     private Activity activity;
@@ -35,10 +34,8 @@ public class App extends Application implements Application.ActivityLifecycleCal
 
     public App() {
         instance = this;
-        gson = new Gson();
+        gson = new GsonBuilder().registerTypeAdapterFactory(new VodAdapter()).create();
         time = System.currentTimeMillis();
-        executor = Executors.newFixedThreadPool(5);
-        searchExecutor = Executors.newFixedThreadPool(20);
         handler = HandlerCompat.createAsync(Looper.getMainLooper());
     }
 
@@ -114,19 +111,19 @@ public class App extends Application implements Application.ActivityLifecycleCal
     }
 
     public static <T> Future<T> submit(Callable<T> task) {
-        return get().executor.submit(task);
+        return Lane.BACKGROUND.submit(task);
     }
 
     public static Future<?> submit(Runnable task) {
-        return get().executor.submit(task);
+        return Lane.BACKGROUND.submit(task);
     }
 
     public static Future<?> submitSearch(Runnable task) {
-        return get().searchExecutor.submit(task);
+        return Lane.SEARCH.submit(task);
     }
 
     public static void execute(Runnable runnable) {
-        get().executor.execute(runnable);
+        Lane.BACKGROUND.execute(runnable);
     }
 
     public static void post(Runnable runnable) {
@@ -10,6 +10,7 @@ public class Constant {
     public static final long TIMEOUT_LIVE = TimeUnit.SECONDS.toMillis(30);
     public static final long TIMEOUT_EPG = TimeUnit.SECONDS.toMillis(5);
     public static final long TIMEOUT_XML = TimeUnit.SECONDS.toMillis(15);
+    public static final long TIMEOUT_EPG_XML = TimeUnit.SECONDS.toMillis(12);
     public static final long TIMEOUT_PLAY = TimeUnit.SECONDS.toMillis(15);
     public static final long TIMEOUT_SYNC = TimeUnit.SECONDS.toMillis(2);
     public static final long TIMEOUT_DANMAKU = TimeUnit.SECONDS.toMillis(30);
@@ -106,6 +106,14 @@ public class Setting {
         Prefers.put("buffer", buffer);
     }
 
+    public static int getExoCache() {
+        return Math.max(Prefers.getInt("exo_cache", 512), 64);
+    }
+
+    public static void putExoCache(int size) {
+        Prefers.put("exo_cache", size);
+    }
+
     public static int getBackground() {
         return Prefers.getInt("background", 2);
     }
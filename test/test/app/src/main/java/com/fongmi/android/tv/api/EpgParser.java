@@ -1,74 +1,139 @@
 package com.fongmi.android.tv.api;
 
-import android.net.Uri;
+import android.util.Xml;
 
+import com.fongmi.android.tv.Constant;
 import com.fongmi.android.tv.bean.Channel;
 import com.fongmi.android.tv.bean.Epg;
 import com.fongmi.android.tv.bean.EpgData;
 import com.fongmi.android.tv.bean.Live;
+import com.fongmi.android.tv.bean.Program;
 import com.fongmi.android.tv.bean.Tv;
-import com.fongmi.android.tv.utils.Download;
-import com.fongmi.android.tv.utils.FileUtil;
+import com.fongmi.android.tv.utils.EpgTime;
+import com.fongmi.android.tv.utils.Lane;
+import com.github.catvod.net.OkHttp;
 import com.github.catvod.utils.Path;
 import com.github.catvod.utils.Trans;
+import com.github.catvod.utils.Util;
 
 import org.simpleframework.xml.core.Persister;
+import org.xmlpull.v1.XmlPullParser;
 
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.text.SimpleDateFormat;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZoneId;
 import java.util.AbstractMap;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Locale;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 public class EpgParser {
 
-    private static final SimpleDateFormat formatTime = new SimpleDateFormat("HH:mm", Locale.getDefault());
-    private static final SimpleDateFormat formatDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-    private static final SimpleDateFormat formatFull = new SimpleDateFormat("yyyyMMddHHmmss Z", Locale.getDefault());
+    private static final int BUFFER = 64 * 1024;
+    private static final long REVALIDATE = TimeUnit.MINUTES.toMillis(30);
 
-    public static boolean start(Live live, String url) throws Exception {
-        File file = Path.epg(Uri.parse(url).getLastPathSegment());
-        if (shouldDownload(file)) Download.create(url, file).start();
-        if (file.getName().endsWith(".gz")) readGzip(live, file);
-        else readXml(live, file);
+    /**
+     * Fetches and parses every source in parallel, then merges them in list order:
+     * earlier sources win, later ones only fill the time slots the earlier ones leave empty.
+     * The live is updated once, with the sources that are ready by {@link Constant#TIMEOUT_EPG_XML}.
+     * Slower downloads are not cancelled, they finish in the background and are cached for the next load.
+     */
+    public static boolean start(Live live, List<String> urls) throws Exception {
+        Map<String, Channel> liveChannelMap = prepareLiveChannels(live);
+        long deadline = System.currentTimeMillis() + Constant.TIMEOUT_EPG_XML;
+        List<Future<ProgrammeResult>> futures = new ArrayList<>();
+        for (String url : urls) futures.add(Lane.EPG.submit(() -> readXml(url, liveChannelMap, deadline)));
+        List<ProgrammeResult> results = new ArrayList<>();
+        for (Future<ProgrammeResult> future : futures) {
+            try {
+                ProgrammeResult result = future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                if (result != null) results.add(result);
+            } catch (TimeoutException ignored) {
+            } catch (ExecutionException | CancellationException e) {
+                e.printStackTrace();
+            }
+        }
+        if (results.isEmpty()) return false;
+        ProgrammeResult result = merge(results);
+        bindResultsToLive(live, result);
+        Program.save(result.epgMap.values());
         return true;
     }
 
     public static Epg getEpg(String xml, String key) throws Exception {
         Tv tv = new Persister().read(Tv.class, xml, false);
-        Epg epg = Epg.create(key, formatDate.format(parse(formatFull, tv.getDate())));
+        Epg epg = Epg.create(key, EpgTime.formatDate(EpgTime.parse(tv.getDate()), ZoneId.systemDefault()));
         tv.getProgramme().forEach(programme -> epg.getList().add(getEpgData(programme)));
         return epg;
     }
 
-    private static boolean shouldDownload(File file) {
-        return !Path.exists(file) || !isToday(file.lastModified()) || System.currentTimeMillis() - file.lastModified() > TimeUnit.HOURS.toMillis(6);
+    public static boolean restore(Live live) {
+        List<Channel> channels = live.getGroups().stream().flatMap(group -> group.getChannel().stream()).filter(channel -> !channel.getTvgId().isEmpty()).collect(Collectors.toList());
+        if (channels.isEmpty()) return false;
+        ZoneId zone = ZoneId.systemDefault();
+        long start = EpgTime.startOfDay(System.currentTimeMillis(), zone);
+        String today = EpgTime.formatDate(start, zone);
+        Map<String, List<Program>> map = Program.find(channels.stream().map(Channel::getTvgId).collect(Collectors.toList()), start, start + TimeUnit.DAYS.toMillis(1));
+        if (map.isEmpty()) return false;
+        for (Channel channel : channels) Optional.ofNullable(map.get(channel.getTvgId())).filter(items -> !channel.getData().equal(today)).ifPresent(items -> channel.setData(getEpg(channel.getTvgId(), today, items)));
+        return true;
+    }
+
+    public static Epg getEpg(String key, String date, List<Program> items) {
+        Epg epg = Epg.create(key, date);
+        for (Program item : items) epg.getList().add(getEpgData(item.getStartTime(), item.getEndTime(), item.getTitle(), false));
+        return epg;
     }
 
-    private static boolean isToday(long millis) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTimeInMillis(millis);
-        return calendar.get(Calendar.DAY_OF_MONTH) == Calendar.getInstance().get(Calendar.DAY_OF_MONTH);
+    private static InputStream open(File file) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file), BUFFER);
+        is.mark(2);
+        boolean gzip = is.read() == 0x1f && is.read() == 0x8b;
+        is.reset();
+        return gzip ? new GZIPInputStream(is, BUFFER) : is;
     }
 
-    private static void readGzip(Live live, File file) throws Exception {
-        File xml = Path.epg(file.getName().replace(".gz", ""));
-        if (!xml.exists()) FileUtil.gzipDecompress(file, xml);
-        readXml(live, xml);
+    private static ProgrammeResult readXml(String url, Map<String, Channel> liveChannelMap, long deadline) throws Exception {
+        File file = url.startsWith("file") ? Path.local(url) : OkHttp.download(url, Path.epg(Util.md5(url)), REVALIDATE);
+        if (System.currentTimeMillis() > deadline) return null;
+        try (InputStream is = open(file)) {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(is, null);
+            return processProgramme(parser, liveChannelMap, new XmlData(ZoneId.systemDefault()));
+        }
     }
 
-    private static void readXml(Live live, File file) throws Exception {
-        Map<String, Channel> liveChannelMap = prepareLiveChannels(live);
-        XmlData xmlData = parseXmlData(file);
-        String today = formatDate.format(new Date());
-        bindResultsToLive(live, processProgramme(xmlData, liveChannelMap, today));
+    private static ProgrammeResult merge(List<ProgrammeResult> results) {
+        Map<String, Epg> epgMap = new HashMap<>();
+        Map<String, String> srcMap = new HashMap<>();
+        for (ProgrammeResult result : results) {
+            result.srcMap.forEach(srcMap::putIfAbsent);
+            for (Epg epg : result.epgMap.values()) {
+                Epg target = epgMap.putIfAbsent(epg.getKey(), epg);
+                if (target != null) fill(target, epg);
+            }
+        }
+        for (Epg epg : epgMap.values()) epg.getList().sort(Comparator.comparingLong(EpgData::getStartTime));
+        return new ProgrammeResult(epgMap, srcMap);
+    }
+
+    private static void fill(Epg target, Epg source) {
+        List<EpgData> items = new ArrayList<>(target.getList());
+        for (EpgData item : source.getList()) if (items.stream().noneMatch(it -> it.getStartTime() < item.getEndTime() && item.getStartTime() < it.getEndTime())) target.getList().add(item);
     }
 
     private static Map<String, Channel> prepareLiveChannels(Live live) {
@@ -78,35 +143,77 @@ public class EpgParser {
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (oldValue, newValue) -> oldValue, HashMap::new));
     }
 
-    private static XmlData parseXmlData(File file) throws Exception {
-        Tv tv = new Persister().read(Tv.class, file, false);
-        Map<String, Tv.Channel> map = tv.getChannel().stream().collect(Collectors.toMap(Tv.Channel::getId, channel -> channel));
-        return new XmlData(tv, map);
-    }
-
-    private static ProgrammeResult processProgramme(XmlData data, Map<String, Channel> liveChannelMap, String today) {
+    private static ProgrammeResult processProgramme(XmlPullParser parser, Map<String, Channel> liveChannelMap, XmlData data) throws Exception {
         Map<String, Epg> epgMap = new HashMap<>();
         Map<String, String> srcMap = new HashMap<>();
-        for (Tv.Programme programme : data.tv.getProgramme()) {
-            String xmlChannelId = programme.getChannel();
-            Channel targetChannel = findTargetChannel(xmlChannelId, liveChannelMap, data.map);
-            if (targetChannel == null) continue;
-            Date startDate = parse(formatFull, programme.getStart());
-            if (!isToday(startDate.getTime())) continue;
-            String liveTvgId = targetChannel.getTvgId();
-            Date endDate = parse(formatFull, programme.getStop());
-            epgMap.computeIfAbsent(liveTvgId, key -> Epg.create(key, today)).getList().add(getEpgData(startDate, endDate, programme));
-            Optional.ofNullable(data.map.get(xmlChannelId)).filter(Tv.Channel::hasSrc).ifPresent(ch -> srcMap.putIfAbsent(liveTvgId, ch.getSrc()));
+        while (parser.next() != XmlPullParser.END_DOCUMENT) {
+            if (parser.getEventType() != XmlPullParser.START_TAG || parser.getDepth() != 2) continue;
+            if ("channel".equals(parser.getName())) readChannel(parser, liveChannelMap, data);
+            else if ("programme".equals(parser.getName())) readProgramme(parser, liveChannelMap, data, epgMap, srcMap);
+            else skip(parser);
         }
         return new ProgrammeResult(epgMap, srcMap);
     }
 
-    private static Channel findTargetChannel(String xmlChannelId, Map<String, Channel> liveChannelMap, Map<String, Tv.Channel> xmlChannelIdMap) {
-        Channel targetChannel = liveChannelMap.get(xmlChannelId);
-        if (targetChannel != null) return targetChannel;
-        return Optional.ofNullable(xmlChannelIdMap.get(xmlChannelId)).flatMap(xmlChannel -> xmlChannel.getDisplayName().stream()
-                .map(Tv.DisplayName::getText).filter(name -> !name.isEmpty()).filter(liveChannelMap::containsKey)
-                .findFirst().map(liveChannelMap::get)).orElse(null);
+    private static void readChannel(XmlPullParser parser, Map<String, Channel> liveChannelMap, XmlData data) throws Exception {
+        String id = attr(parser, "id");
+        Channel targetChannel = liveChannelMap.get(id);
+        int depth = parser.getDepth();
+        while (next(parser, depth)) {
+            if ("display-name".equals(parser.getName())) {
+                String name = parser.nextText().trim();
+                if (targetChannel == null && !name.isEmpty()) targetChannel = liveChannelMap.get(name);
+            } else if ("icon".equals(parser.getName())) {
+                String src = attr(parser, "src");
+                if (!src.isEmpty()) data.srcMap.putIfAbsent(id, src);
+                skip(parser);
+            } else {
+                skip(parser);
+            }
+        }
+        if (targetChannel != null) data.channelMap.put(id, targetChannel);
+    }
+
+    private static void readProgramme(XmlPullParser parser, Map<String, Channel> liveChannelMap, XmlData data, Map<String, Epg> epgMap, Map<String, String> srcMap) throws Exception {
+        String xmlChannelId = attr(parser, "channel");
+        Channel targetChannel = liveChannelMap.containsKey(xmlChannelId) ? liveChannelMap.get(xmlChannelId) : data.channelMap.get(xmlChannelId);
+        if (targetChannel == null) {
+            skip(parser);
+            return;
+        }
+        long startTime = EpgTime.parse(parser.getAttributeValue(null, "start"), data.zone);
+        if (startTime < data.start || startTime >= data.end) {
+            skip(parser);
+            return;
+        }
+        long endTime = EpgTime.parse(parser.getAttributeValue(null, "stop"), data.zone);
+        String title = "";
+        int depth = parser.getDepth();
+        while (next(parser, depth)) {
+            if ("title".equals(parser.getName()) && title.isEmpty()) title = parser.nextText().trim();
+            else skip(parser);
+        }
+        String liveTvgId = targetChannel.getTvgId();
+        epgMap.computeIfAbsent(liveTvgId, key -> Epg.create(key, data.today)).getList().add(getEpgData(startTime, endTime, title, true));
+        Optional.ofNullable(data.srcMap.get(xmlChannelId)).ifPresent(src -> srcMap.putIfAbsent(liveTvgId, src));
+    }
+
+    private static boolean next(XmlPullParser parser, int depth) throws Exception {
+        while (true) {
+            int type = parser.next();
+            if (type == XmlPullParser.END_DOCUMENT || (type == XmlPullParser.END_TAG && parser.getDepth() == depth)) return false;
+            if (type == XmlPullParser.START_TAG) return true;
+        }
+    }
+
+    private static void skip(XmlPullParser parser) throws Exception {
+        int depth = parser.getDepth();
+        while (next(parser, depth)) skip(parser);
+    }
+
+    private static String attr(XmlPullParser parser, String name) {
+        String value = parser.getAttributeValue(null, name);
+        return value == null ? "" : value.trim();
     }
 
     private static void bindResultsToLive(Live live, ProgrammeResult result) {
@@ -120,41 +227,33 @@ public class EpgParser {
     }
 
     private static EpgData getEpgData(Tv.Programme programme) {
-        Date startDate = parse(formatFull, programme.getStart());
-        Date endDate = parse(formatFull, programme.getStop());
-        return getEpgData(startDate, endDate, programme);
-    }
-
-    private static EpgData getEpgData(Date startDate, Date endDate, Tv.Programme programme) {
-        try {
-            EpgData epgData = new EpgData();
-            epgData.setTitle(Trans.s2t(programme.getTitle()));
-            epgData.setStart(formatTime.format(startDate));
-            epgData.setEnd(formatTime.format(endDate));
-            epgData.setStartTime(startDate.getTime());
-            epgData.setEndTime(endDate.getTime());
-            return epgData;
-        } catch (Exception e) {
-            return new EpgData();
-        }
+        return getEpgData(EpgTime.parse(programme.getStart()), EpgTime.parse(programme.getStop()), programme.getTitle(), true);
     }
 
-    private static Date parse(SimpleDateFormat format, String source) {
-        try {
-            return format.parse(source);
-        } catch (Exception e) {
-            return new Date(0);
-        }
+    private static EpgData getEpgData(long startTime, long endTime, String title, boolean trans) {
+        EpgData epgData = new EpgData();
+        epgData.setTitle(trans ? Trans.s2t(title) : title);
+        epgData.setStartTime(startTime);
+        epgData.setEndTime(endTime);
+        return epgData;
     }
 
     private static class XmlData {
 
-        Tv tv;
-        Map<String, Tv.Channel> map;
+        Map<String, Channel> channelMap;
+        Map<String, String> srcMap;
+        ZoneId zone;
+        String today;
+        long start;
+        long end;
 
-        public XmlData(Tv tv, Map<String, Tv.Channel> map) {
-            this.tv = tv;
-            this.map = map;
+        public XmlData(ZoneId zone) {
+            this.channelMap = new HashMap<>();
+            this.srcMap = new HashMap<>();
+            this.zone = zone;
+            this.start = EpgTime.startOfDay(System.currentTimeMillis(), zone);
+            this.end = start + TimeUnit.DAYS.toMillis(1);
+            this.today = EpgTime.formatDate(start, zone);
         }
     }
 
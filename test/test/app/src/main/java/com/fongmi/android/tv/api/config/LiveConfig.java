@@ -25,6 +25,7 @@ import com.fongmi.android.tv.utils.UrlUtil;
 import com.github.catvod.bean.Header;
 import com.github.catvod.bean.Proxy;
 import com.github.catvod.net.OkHttp;
+import com.github.catvod.utils.HostMatcher;
 import com.github.catvod.utils.Json;
 import com.google.gson.JsonObject;
 
@@ -44,6 +45,8 @@ public class LiveConfig {
     private Config config;
     private List<Live> lives;
     private List<Rule> rules;
+    private HostMatcher<Rule> ruleMatcher;
+    private HostMatcher<Boolean> adMatcher;
     private List<String> ads;
     private Future<?> future;
     private boolean sync;
@@ -92,6 +95,8 @@ public class LiveConfig {
         this.home = null;
         this.ads = new ArrayList<>();
         this.rules = new ArrayList<>();
+        this.ruleMatcher = Rule.matcher(rules);
+        this.adMatcher = HostMatcher.of(ads);
         this.lives = new ArrayList<>();
         return config(Config.live());
     }
@@ -107,6 +112,8 @@ public class LiveConfig {
         this.home = null;
         this.ads.clear();
         this.rules.clear();
+        this.ruleMatcher = Rule.matcher(rules);
+        this.adMatcher = HostMatcher.of(ads);
         this.lives.clear();
         return this;
     }
@@ -265,8 +272,13 @@ public class LiveConfig {
         return rules == null ? Collections.emptyList() : rules;
     }
 
+    public Rule getRule(String hosts) {
+        return ruleMatcher == null ? null : ruleMatcher.first(hosts);
+    }
+
     private void setRules(List<Rule> rules) {
         this.rules = rules;
+        this.ruleMatcher = Rule.matcher(rules);
     }
 
     private void setHeaders(List<Header> headers) {
@@ -286,8 +298,13 @@ public class LiveConfig {
         return ads == null ? Collections.emptyList() : ads;
     }
 
+    public boolean isAd(String host) {
+        return adMatcher != null && adMatcher.matches(host);
+    }
+
     private void setAds(List<String> ads) {
         this.ads = ads;
+        this.adMatcher = HostMatcher.of(ads);
     }
 
     public Config getConfig() {
@@ -19,6 +19,7 @@ import com.github.catvod.bean.Doh;
 import com.github.catvod.bean.Header;
 import com.github.catvod.bean.Proxy;
 import com.github.catvod.net.OkHttp;
+import com.github.catvod.utils.HostMatcher;
 import com.github.catvod.utils.Json;
 import com.google.gson.JsonObject;
 
@@ -38,6 +39,8 @@ public class VodConfig {
     private Config config;
     private List<Doh> doh;
     private List<Rule> rules;
+    private HostMatcher<Rule> ruleMatcher;
+    private HostMatcher<Boolean> adMatcher;
     private List<Site> sites;
     private List<String> ads;
     private List<String> flags;
@@ -86,6 +89,8 @@ public class VodConfig {
         this.ads = new ArrayList<>();
         this.doh = new ArrayList<>();
         this.rules = new ArrayList<>();
+        this.ruleMatcher = Rule.matcher(rules);
+        this.adMatcher = HostMatcher.of(ads);
         this.sites = new ArrayList<>();
         this.flags = new ArrayList<>();
         this.parses = new ArrayList<>();
@@ -109,6 +114,8 @@ public class VodConfig {
         this.ads.clear();
         this.doh.clear();
         this.rules.clear();
+        this.ruleMatcher = Rule.matcher(rules);
+        this.adMatcher = HostMatcher.of(ads);
         this.sites.clear();
         this.flags.clear();
         this.parses.clear();
@@ -164,6 +171,7 @@ public class VodConfig {
             config.logo(Json.safeString(object, "logo"));
             String notice = Json.safeString(object, "notice");
             if (loadLive && !Json.isEmpty(object, "lives")) initLive(object);
+            App.execute(() -> BaseLoader.get().warmup(getSites(), getHome()));
             App.post(() -> callback.success(notice));
             App.post(callback::success);
         } catch (Throwable e) {
@@ -246,8 +254,13 @@ public class VodConfig {
         return rules == null ? Collections.emptyList() : rules;
     }
 
+    public Rule getRule(String hosts) {
+        return ruleMatcher == null ? null : ruleMatcher.first(hosts);
+    }
+
     private void setRules(List<Rule> rules) {
         this.rules = rules;
+        this.ruleMatcher = Rule.matcher(rules);
     }
 
     public List<Parse> getParses(int type) {
@@ -288,8 +301,13 @@ public class VodConfig {
         return ads == null ? Collections.emptyList() : ads;
     }
 
+    public boolean isAd(String host) {
+        return adMatcher != null && adMatcher.matches(host);
+    }
+
     private void setAds(List<String> ads) {
         this.ads = ads;
+        this.adMatcher = HostMatcher.of(ads);
     }
 
     public Config getConfig() {
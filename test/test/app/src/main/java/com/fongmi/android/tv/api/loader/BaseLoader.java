@@ -1,30 +1,59 @@
 package com.fongmi.android.tv.api.loader;
 
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
 import android.text.TextUtils;
 
+import androidx.annotation.NonNull;
+
 import com.fongmi.android.tv.App;
 import com.fongmi.android.tv.api.config.LiveConfig;
 import com.fongmi.android.tv.api.config.VodConfig;
+import com.fongmi.android.tv.bean.History;
 import com.fongmi.android.tv.bean.Live;
 import com.fongmi.android.tv.bean.Site;
+import com.fongmi.android.tv.utils.Lane;
 import com.github.catvod.crawler.Spider;
 import com.github.catvod.crawler.SpiderNull;
 import com.github.catvod.utils.Util;
 
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import dalvik.system.DexClassLoader;
 
 public class BaseLoader {
 
+    private static final int WARMUP = 3;
+    private static final long IDLE = TimeUnit.MINUTES.toMillis(5);
+    private static final long IDLE_CRITICAL = TimeUnit.MINUTES.toMillis(1);
+
     private final JarLoader jarLoader;
     private final PyLoader pyLoader;
     private final JsLoader jsLoader;
 
+    private final ComponentCallbacks2 callbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) Lane.BACKGROUND.execute(() -> trim(level >= TRIM_MEMORY_COMPLETE ? IDLE_CRITICAL : IDLE));
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration configuration) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            Lane.BACKGROUND.execute(() -> trim(IDLE_CRITICAL));
+        }
+    };
+
     private static class Loader {
         static volatile BaseLoader INSTANCE = new BaseLoader();
     }
@@ -37,6 +66,45 @@ public class BaseLoader {
         jarLoader = new JarLoader();
         pyLoader = new PyLoader();
         jsLoader = new JsLoader();
+        App.get().registerComponentCallbacks(callbacks);
+    }
+
+    private List<LazySpider> getSpiders() {
+        List<LazySpider> items = new ArrayList<>();
+        items.addAll(jarLoader.getSpiders());
+        items.addAll(pyLoader.getSpiders());
+        items.addAll(jsLoader.getSpiders());
+        return items;
+    }
+
+    /**
+     * Inits the home site and the sites used most in recent history in the background, most used first.
+     */
+    public void warmup(List<Site> sites, Site home) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (History history : History.get()) counts.merge(history.getSiteKey(), 1, Integer::sum);
+        counts.put(home.getKey(), Integer.MAX_VALUE);
+        List<Site> items = new ArrayList<>();
+        for (Site site : sites) if (counts.containsKey(site.getKey())) items.add(site);
+        items.sort((o1, o2) -> Integer.compare(counts.get(o2.getKey()), counts.get(o1.getKey())));
+        for (Site site : items.subList(0, Math.min(items.size(), WARMUP))) {
+            if (site.spider() instanceof LazySpider spider) Lane.BACKGROUND.execute(spider::warm);
+        }
+    }
+
+    /**
+     * Destroys spiders that have been idle for the given time, except the one each loader last played from.
+     */
+    public void trim(long idle) {
+        jarLoader.trim(idle);
+        pyLoader.trim(idle);
+        jsLoader.trim(idle);
+    }
+
+    public String getStats() {
+        List<String> items = new ArrayList<>();
+        for (LazySpider spider : getSpiders()) items.add(spider.getStats());
+        return String.join("\n", items);
     }
 
     public void clear() {
@@ -48,11 +116,15 @@ public class BaseLoader {
     }
 
     public Spider getSpider(String key, String api, String ext, String jar) {
+        return getSpider(key, api, ext, jar, 1);
+    }
+
+    public Spider getSpider(String key, String api, String ext, String jar, int pool) {
         boolean js = api.contains(".js");
         boolean py = api.contains(".py");
         boolean csp = api.startsWith("csp_");
         if (py) return pyLoader.getSpider(key, api, ext);
-        else if (js) return jsLoader.getSpider(key, api, ext, jar);
+        else if (js) return jsLoader.getSpider(key, api, ext, jar, pool);
         else if (csp) return jarLoader.getSpider(key, api, ext, jar);
         else return new SpiderNull();
     }
@@ -72,7 +144,7 @@ public class BaseLoader {
         boolean csp = api.startsWith("csp_");
         if (js) jsLoader.setRecent(key);
         else if (py) pyLoader.setRecent(key);
-        else if (csp) jarLoader.setRecent(Util.md5(jar));
+        else if (csp) jarLoader.setRecent(Util.md5(jar), key);
     }
 
     public Object[] proxyLocal(Map<String, String> params) {
@@ -5,7 +5,6 @@ import android.content.Context;
 import com.fongmi.android.tv.App;
 import com.fongmi.android.tv.utils.UrlUtil;
 import com.github.catvod.crawler.Spider;
-import com.github.catvod.crawler.SpiderNull;
 import com.github.catvod.net.OkHttp;
 import com.github.catvod.utils.Path;
 import com.github.catvod.utils.Util;
@@ -14,6 +13,7 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.lang.reflect.Method;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -26,7 +26,8 @@ public class JarLoader {
 
     private final ConcurrentHashMap<String, DexClassLoader> loaders;
     private final ConcurrentHashMap<String, Method> methods;
-    private final ConcurrentHashMap<String, Spider> spiders;
+    private final ConcurrentHashMap<String, LazySpider> spiders;
+    private String recentSpider;
     private String recent;
 
     public JarLoader() {
@@ -36,7 +37,7 @@ public class JarLoader {
     }
 
     public void clear() {
-        spiders.values().forEach(Spider::destroy);
+        spiders.values().forEach(LazySpider::destroy);
         loaders.clear();
         methods.clear();
         spiders.clear();
@@ -46,6 +47,11 @@ public class JarLoader {
         this.recent = recent;
     }
 
+    public void setRecent(String recent, String key) {
+        this.recentSpider = recent + key;
+        this.recent = recent;
+    }
+
     private void load(String key, File file) {
         if (!file.setReadOnly()) return;
         loaders.put(key, dex(file));
@@ -114,19 +120,25 @@ public class JarLoader {
     }
 
     public Spider getSpider(String key, String api, String ext, String jar) {
-        try {
-            String jaKey = Util.md5(jar);
-            String spKey = jaKey + key;
-            if (spiders.containsKey(spKey)) return spiders.get(spKey);
-            if (!loaders.containsKey(jaKey)) parseJar(jaKey, jar);
-            Spider spider = (Spider) loaders.get(jaKey).loadClass("com.github.catvod.spider." + api.split("csp_")[1]).newInstance();
-            spider.init(App.get(), ext);
-            spiders.put(spKey, spider);
-            return spider;
-        } catch (Throwable e) {
-            e.printStackTrace();
-            return new SpiderNull();
-        }
+        String jaKey = Util.md5(jar);
+        return spiders.computeIfAbsent(jaKey + key, spKey -> new LazySpider(key, () -> create(jaKey, api, ext, jar)));
+    }
+
+    private Spider create(String jaKey, String api, String ext, String jar) throws Exception {
+        if (!loaders.containsKey(jaKey)) parseJar(jaKey, jar);
+        Spider spider = (Spider) loaders.get(jaKey).loadClass("com.github.catvod.spider." + api.split("csp_")[1]).newInstance();
+        spider.init(App.get(), ext);
+        return spider;
+    }
+
+    public Collection<LazySpider> getSpiders() {
+        return spiders.values();
+    }
+
+    public void trim(long idle) {
+        spiders.forEach((key, spider) -> {
+            if (!key.equals(recentSpider)) spider.evict(idle);
+        });
     }
 
     public JSONObject jsonExt(String key, LinkedHashMap<String, String> jxs, String url) throws Throwable {
@@ -144,9 +156,15 @@ public class JarLoader {
     public Object[] proxyInvoke(Map<String, String> params) {
         if (recent == null) return tryOthers(params);
         Object[] result = proxyInvoke(methods.get(recent), params);
+        if (result != null) touch();
         return result != null ? result : tryOthers(params);
     }
 
+    private void touch() {
+        LazySpider spider = recentSpider == null ? null : spiders.get(recentSpider);
+        if (spider != null) spider.touch();
+    }
+
     private Object[] tryOthers(Map<String, String> p) {
         return methods.entrySet().stream().filter(e -> !e.getKey().equals(recent)).map(e -> proxyInvoke(e.getValue(), p)).filter(Objects::nonNull).findFirst().orElse(null);
     }
@@ -3,14 +3,14 @@ package com.fongmi.android.tv.api.loader;
 import com.fongmi.android.tv.App;
 import com.fongmi.quickjs.crawler.Loader;
 import com.github.catvod.crawler.Spider;
-import com.github.catvod.crawler.SpiderNull;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class JsLoader {
 
-    private final ConcurrentHashMap<String, Spider> spiders;
+    private final ConcurrentHashMap<String, LazySpider> spiders;
     private String recent;
     private Loader loader;
 
@@ -20,7 +20,7 @@ public class JsLoader {
     }
 
     public void clear() {
-        spiders.values().forEach(Spider::destroy);
+        spiders.values().forEach(LazySpider::destroy);
         spiders.clear();
     }
 
@@ -28,17 +28,24 @@ public class JsLoader {
         this.recent = recent;
     }
 
-    public Spider getSpider(String key, String api, String ext, String jar) {
-        try {
-            if (spiders.containsKey(key)) return spiders.get(key);
-            Spider spider = loader.spider(key, api, BaseLoader.get().dex(jar));
-            spider.init(App.get(), ext);
-            spiders.put(key, spider);
-            return spider;
-        } catch (Throwable e) {
-            e.printStackTrace();
-            return new SpiderNull();
-        }
+    public Spider getSpider(String key, String api, String ext, String jar, int pool) {
+        return spiders.computeIfAbsent(key, k -> new LazySpider(key, () -> create(key, api, ext, jar, pool)));
+    }
+
+    private Spider create(String key, String api, String ext, String jar, int pool) throws Exception {
+        Spider spider = loader.spider(key, api, BaseLoader.get().dex(jar), pool);
+        spider.init(App.get(), ext);
+        return spider;
+    }
+
+    public Collection<LazySpider> getSpiders() {
+        return spiders.values();
+    }
+
+    public void trim(long idle) {
+        spiders.forEach((key, spider) -> {
+            if (!key.equals(recent)) spider.evict(idle);
+        });
     }
 
     public Object[] proxyInvoke(Map<String, String> params) {
@@ -0,0 +1,196 @@
+package com.fongmi.android.tv.api.loader;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import com.github.catvod.crawler.Spider;
+import com.github.catvod.crawler.SpiderNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates and inits the real spider on its first call, and can drop it again once idle.
+ * A failed init is not kept, so the next call tries again.
+ */
+public class LazySpider extends Spider {
+
+    private final Callable<Spider> factory;
+    private final AtomicInteger active;
+    private final AtomicLong hits;
+    private final String key;
+    private volatile Spider spider;
+    private volatile long lastUsed;
+    private long initTime;
+    private long memory;
+
+    public LazySpider(String key, Callable<Spider> factory) {
+        this.active = new AtomicInteger();
+        this.hits = new AtomicLong();
+        this.factory = factory;
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isReady() {
+        return spider != null;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Marks the spider as used by traffic that does not go through it, such as a jar's static proxy.
+     */
+    public void touch() {
+        lastUsed = SystemClock.elapsedRealtime();
+    }
+
+    public void warm() {
+        if (isReady()) return;
+        acquire();
+        active.decrementAndGet();
+    }
+
+    private synchronized Spider acquire() {
+        active.incrementAndGet();
+        lastUsed = SystemClock.elapsedRealtime();
+        if (spider == null) spider = create();
+        return spider == null ? new SpiderNull() : spider;
+    }
+
+    private Spider create() {
+        long start = SystemClock.elapsedRealtime();
+        long heap = getUsedMemory();
+        try {
+            Spider spider = factory.call();
+            initTime = SystemClock.elapsedRealtime() - start;
+            memory = Math.max(getUsedMemory() - heap, 0);
+            return spider;
+        } catch (Throwable e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+
+    private <T> T run(Call<T> call) throws Exception {
+        try {
+            hits.incrementAndGet();
+            return call.run(acquire());
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Destroys the real spider when it has not been used for the given time and no call is running.
+     */
+    public boolean evict(long idle) {
+        Spider spider;
+        synchronized (this) {
+            if (this.spider == null || active.get() > 0 || SystemClock.elapsedRealtime() - lastUsed < idle) return false;
+            spider = this.spider;
+            this.spider = null;
+        }
+        spider.destroy();
+        return true;
+    }
+
+    public String getStats() {
+        return String.format(Locale.ROOT, "%s ready=%b init=%dms memory=%dKB calls=%d", key, isReady(), initTime, memory / 1024, hits.get());
+    }
+
+    @Override
+    public void init(Context context, String extend) {
+    }
+
+    @Override
+    public String homeContent(boolean filter) throws Exception {
+        return run(spider -> spider.homeContent(filter));
+    }
+
+    @Override
+    public String homeVideoContent() throws Exception {
+        return run(Spider::homeVideoContent);
+    }
+
+    @Override
+    public String categoryContent(String tid, String pg, boolean filter, HashMap<String, String> extend) throws Exception {
+        return run(spider -> spider.categoryContent(tid, pg, filter, extend));
+    }
+
+    @Override
+    public String detailContent(List<String> ids) throws Exception {
+        return run(spider -> spider.detailContent(ids));
+    }
+
+    @Override
+    public String searchContent(String key, boolean quick) throws Exception {
+        return run(spider -> spider.searchContent(key, quick));
+    }
+
+    @Override
+    public String searchContent(String key, boolean quick, String pg) throws Exception {
+        return run(spider -> spider.searchContent(key, quick, pg));
+    }
+
+    @Override
+    public String playerContent(String flag, String id, List<String> vipFlags) throws Exception {
+        return run(spider -> spider.playerContent(flag, id, vipFlags));
+    }
+
+    @Override
+    public String liveContent(String url) throws Exception {
+        return run(spider -> spider.liveContent(url));
+    }
+
+    @Override
+    public boolean manualVideoCheck() throws Exception {
+        return run(Spider::manualVideoCheck);
+    }
+
+    @Override
+    public boolean isVideoFormat(String url) throws Exception {
+        return run(spider -> spider.isVideoFormat(url));
+    }
+
+    @Override
+    public Object[] proxyLocal(Map<String, String> params) throws Exception {
+        return run(spider -> spider.proxyLocal(params));
+    }
+
+    @Override
+    public String action(String action) throws Exception {
+        return run(spider -> spider.action(action));
+    }
+
+    @Override
+    public void destroy() {
+        Spider spider;
+        synchronized (this) {
+            spider = this.spider;
+            this.spider = null;
+        }
+        if (spider != null) spider.destroy();
+    }
+
+    private interface Call<T> {
+
+        T run(Spider spider) throws Exception;
+    }
+}
\ No newline at end of file
@@ -3,14 +3,14 @@ package com.fongmi.android.tv.api.loader;
 import com.fongmi.android.tv.App;
 import com.fongmi.chaquo.Loader;
 import com.github.catvod.crawler.Spider;
-import com.github.catvod.crawler.SpiderNull;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class PyLoader {
 
-    private final ConcurrentHashMap<String, Spider> spiders;
+    private final ConcurrentHashMap<String, LazySpider> spiders;
     private final Loader loader;
     private String recent;
 
@@ -20,7 +20,7 @@ public class PyLoader {
     }
 
     public void clear() {
-        spiders.values().forEach(Spider::destroy);
+        spiders.values().forEach(LazySpider::destroy);
         spiders.clear();
     }
 
@@ -29,16 +29,23 @@ public class PyLoader {
     }
 
     public Spider getSpider(String key, String api, String ext) {
-        try {
-            if (spiders.containsKey(key)) return spiders.get(key);
-            Spider spider = loader.spider(App.get(), api);
-            spider.init(App.get(), ext);
-            spiders.put(key, spider);
-            return spider;
-        } catch (Throwable e) {
-            e.printStackTrace();
-            return new SpiderNull();
-        }
+        return spiders.computeIfAbsent(key, k -> new LazySpider(key, () -> create(api, ext)));
+    }
+
+    private Spider create(String api, String ext) throws Exception {
+        Spider spider = loader.spider(App.get(), api);
+        spider.init(App.get(), ext);
+        return spider;
+    }
+
+    public Collection<LazySpider> getSpiders() {
+        return spiders.values();
+    }
+
+    public void trim(long idle) {
+        spiders.forEach((key, spider) -> {
+            if (!key.equals(recent)) spider.evict(idle);
+        });
     }
 
     public Object[] proxyInvoke(Map<String, String> params) {
@@ -4,12 +4,12 @@ import android.text.TextUtils;
 
 import com.fongmi.android.tv.App;
 import com.fongmi.android.tv.api.EpgParser;
-import com.fongmi.android.tv.utils.Util;
+import com.fongmi.android.tv.utils.EpgTime;
 import com.github.catvod.utils.Json;
 import com.github.catvod.utils.Trans;
 import com.google.gson.annotations.SerializedName;
 
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -26,10 +26,10 @@ public class Epg {
 
     private int width;
 
-    public static Epg objectFrom(String str, String key, List<SimpleDateFormat> formats) throws Exception {
+    public static Epg objectFrom(String str, String key, ZoneId zone) throws Exception {
         if (!Json.isObj(str)) return EpgParser.getEpg(str, key);
         Epg item = App.gson().fromJson(str, Epg.class);
-        item.setTime(formats);
+        item.setTime(zone);
         item.setKey(key);
         return item;
     }
@@ -78,11 +78,11 @@ public class Epg {
         return getDate().equals(date);
     }
 
-    private void setTime(List<SimpleDateFormat> formats) {
+    private void setTime(ZoneId zone) {
         setList(new ArrayList<>(new LinkedHashSet<>(getList())));
         for (EpgData item : getList()) {
-            item.setStartTime(Util.format(getDate().concat(item.getStart()), formats));
-            item.setEndTime(Util.format(getDate().concat(item.getEnd()), formats));
+            item.setStartTime(EpgTime.parse(getDate(), item.getStart(), zone));
+            item.setEndTime(EpgTime.parse(getDate(), item.getEnd(), zone));
             if (item.getEndTime() < item.getStartTime()) item.checkDay();
             item.setTitle(Trans.s2t(item.getTitle()));
         }
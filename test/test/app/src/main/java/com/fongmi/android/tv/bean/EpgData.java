@@ -5,6 +5,7 @@ import android.text.TextUtils;
 import androidx.annotation.Nullable;
 
 import com.fongmi.android.tv.R;
+import com.fongmi.android.tv.utils.EpgTime;
 import com.fongmi.android.tv.utils.ResUtil;
 import com.google.gson.annotations.SerializedName;
 
@@ -32,6 +33,7 @@ public class EpgData {
     }
 
     public String getStart() {
+        if (TextUtils.isEmpty(start) && getStartTime() > 0) start = EpgTime.formatTime(getStartTime());
         return TextUtils.isEmpty(start) ? "" : start;
     }
 
@@ -40,6 +42,7 @@ public class EpgData {
     }
 
     public String getEnd() {
+        if (TextUtils.isEmpty(end) && getEndTime() > 0) end = EpgTime.formatTime(getEndTime());
         return TextUtils.isEmpty(end) ? "" : end;
     }
 
@@ -0,0 +1,117 @@
+package com.fongmi.android.tv.bean;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+import com.fongmi.android.tv.db.AppDatabase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Entity(primaryKeys = {"key", "startTime"}, indices = @Index("endTime"))
+public class Program {
+
+    private static final long EXPIRE = TimeUnit.DAYS.toMillis(2);
+    private static final long GAP = TimeUnit.MINUTES.toMillis(5);
+    private static final int CHUNK = 500;
+
+    @NonNull
+    private String key;
+    private long startTime;
+    private long endTime;
+    private String title;
+
+    public Program(@NonNull String key, long startTime, long endTime, String title) {
+        this.key = key;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.title = title;
+    }
+
+    @NonNull
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(@NonNull String key) {
+        this.key = key;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    public String getTitle() {
+        return title == null ? "" : title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public static void save(Collection<Epg> items) {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        List<String> keys = new ArrayList<>();
+        List<Program> programs = new ArrayList<>();
+        for (Epg epg : items) {
+            if (epg.getKey().isEmpty() || epg.getList().isEmpty()) continue;
+            keys.add(epg.getKey());
+            for (EpgData data : epg.getList()) {
+                if (data.getStartTime() <= 0) continue;
+                programs.add(new Program(epg.getKey(), data.getStartTime(), data.getEndTime(), data.getTitle()));
+                start = Math.min(start, data.getStartTime());
+                end = Math.max(end, data.getEndTime());
+            }
+        }
+        if (programs.isEmpty()) return;
+        AppDatabase.get().getProgramDao().replace(chunk(keys), start, end, programs, System.currentTimeMillis() - EXPIRE);
+    }
+
+    /**
+     * Programmes overlapping [start, end) for every key, ordered by start time.
+     */
+    public static Map<String, List<Program>> find(Collection<String> keys, long start, long end) {
+        Map<String, List<Program>> map = new HashMap<>();
+        for (List<String> chunk : chunk(keys)) for (Program item : AppDatabase.get().getProgramDao().find(chunk, start, end)) map.computeIfAbsent(item.getKey(), k -> new ArrayList<>()).add(item);
+        return map;
+    }
+
+    /**
+     * Whether the programmes, ordered by start time, fill [start, end) without a gap longer than {@link #GAP}.
+     */
+    public static boolean covers(List<Program> items, long start, long end) {
+        if (items == null || items.isEmpty()) return false;
+        long time = start;
+        for (Program item : items) {
+            if (item.getStartTime() > time + GAP) return false;
+            time = Math.max(time, item.getEndTime());
+        }
+        return time + GAP >= end;
+    }
+
+    private static List<List<String>> chunk(Collection<String> keys) {
+        List<String> items = new ArrayList<>(new LinkedHashSet<>(keys));
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += CHUNK) chunks.add(items.subList(i, Math.min(i + CHUNK, items.size())));
+        return chunks;
+    }
+}
@@ -16,8 +16,12 @@ import com.fongmi.android.tv.utils.Util;
 import com.github.catvod.utils.Json;
 import com.github.catvod.utils.Trans;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.MalformedJsonException;
 
 import org.json.JSONObject;
 import org.simpleframework.xml.ElementList;
@@ -25,6 +29,9 @@ import org.simpleframework.xml.Path;
 import org.simpleframework.xml.Root;
 import org.simpleframework.xml.core.Persister;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -32,6 +39,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import okhttp3.ResponseBody;
+
 @Root(name = "rss", strict = false)
 public class Result implements Parcelable {
 
@@ -103,6 +112,25 @@ public class Result implements Parcelable {
         return result == null ? empty() : result.trans();
     }
 
+    public static Result fromJson(Reader reader) throws IOException {
+        try {
+            Result result = App.gson().fromJson(reader, Result.class);
+            return result == null ? empty() : result.trans();
+        } catch (JsonIOException | JsonSyntaxException e) {
+            if (isNetworkError(e.getCause())) throw (IOException) e.getCause();
+            return empty();
+        } catch (JsonParseException e) {
+            return empty();
+        }
+    }
+
+    /**
+     * Gson wraps reader failures in JsonSyntaxException too, only malformed or truncated json is a parse error.
+     */
+    private static boolean isNetworkError(Throwable cause) {
+        return cause instanceof IOException && !(cause instanceof MalformedJsonException) && !(cause instanceof EOFException);
+    }
+
     public static Result fromXml(String str) {
         try {
             return new Persister().read(Result.class, str, false).trans();
@@ -111,10 +139,24 @@ public class Result implements Parcelable {
         }
     }
 
+    public static Result fromXml(Reader reader) throws IOException {
+        try {
+            return new Persister().read(Result.class, reader, false).trans();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            return empty();
+        }
+    }
+
     public static Result fromType(int type, String str) {
         return type == 0 ? fromXml(str) : fromJson(str);
     }
 
+    public static Result fromType(int type, ResponseBody body) throws IOException {
+        return type == 0 ? fromXml(body.charStream()) : fromJson(body.charStream());
+    }
+
     public static Result fromObject(JSONObject object) {
         return object == null ? empty() : objectFrom(object.toString());
     }
@@ -5,6 +5,7 @@ import android.text.TextUtils;
 import androidx.annotation.Nullable;
 
 import com.fongmi.android.tv.App;
+import com.github.catvod.utils.HostMatcher;
 import com.google.gson.JsonElement;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
@@ -26,6 +27,9 @@ public class Rule {
     @SerializedName("exclude")
     private List<String> exclude;
 
+    private transient HostMatcher<Boolean> regexMatcher;
+    private transient HostMatcher<Boolean> excludeMatcher;
+
     public static Rule create(String name) {
         return new Rule(name);
     }
@@ -44,6 +48,12 @@ public class Rule {
         return items == null ? Collections.emptyList() : items;
     }
 
+    public static HostMatcher<Rule> matcher(List<Rule> items) {
+        HostMatcher.Builder<Rule> builder = HostMatcher.builder();
+        for (Rule item : items) for (String host : item.getHosts()) builder.add(host, item.compile());
+        return builder.build();
+    }
+
     public String getName() {
         return TextUtils.isEmpty(name) ? "" : name;
     }
@@ -64,6 +74,20 @@ public class Rule {
         return exclude == null ? Collections.emptyList() : exclude;
     }
 
+    public Rule compile() {
+        if (regexMatcher == null) regexMatcher = HostMatcher.find(getRegex());
+        if (excludeMatcher == null) excludeMatcher = HostMatcher.find(getExclude());
+        return this;
+    }
+
+    public boolean isRegex(String url) {
+        return compile().regexMatcher.matches(url);
+    }
+
+    public boolean isExclude(String url) {
+        return compile().excludeMatcher.matches(url);
+    }
+
     @Override
     public boolean equals(@Nullable Object obj) {
         if (this == obj) return true;
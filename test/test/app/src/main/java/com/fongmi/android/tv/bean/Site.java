@@ -79,6 +79,10 @@ public class Site implements Parcelable {
     @SerializedName("timeout")
     private Integer timeout;
 
+    @Ignore
+    @SerializedName("pool")
+    private Integer pool;
+
     @SerializedName("searchable")
     private Integer searchable;
 
@@ -196,6 +200,10 @@ public class Site implements Parcelable {
         return timeout == null ? Constant.TIMEOUT_PLAY : TimeUnit.SECONDS.toMillis(Math.max(timeout, 1));
     }
 
+    public int getPool() {
+        return pool == null ? 1 : Math.min(Math.max(pool, 1), 4);
+    }
+
     public Integer getSearchable() {
         return searchable == null ? 1 : searchable;
     }
@@ -312,7 +320,7 @@ public class Site implements Parcelable {
     }
 
     public Spider spider() {
-        return BaseLoader.get().getSpider(getKey(), getApi(), getExt(), getJar());
+        return BaseLoader.get().getSpider(getKey(), getApi(), getExt(), getJar(), getPool());
     }
 
     public static List<Site> findAll() {
@@ -352,6 +360,7 @@ public class Site implements Parcelable {
         dest.writeValue(this.type);
         dest.writeValue(this.indexs);
         dest.writeValue(this.timeout);
+        dest.writeValue(this.pool);
         dest.writeValue(this.searchable);
         dest.writeValue(this.changeable);
         dest.writeStringList(this.categories);
@@ -370,6 +379,7 @@ public class Site implements Parcelable {
         this.type = (Integer) in.readValue(Integer.class.getClassLoader());
         this.indexs = (Integer) in.readValue(Integer.class.getClassLoader());
         this.timeout = (Integer) in.readValue(Integer.class.getClassLoader());
+        this.pool = (Integer) in.readValue(Integer.class.getClassLoader());
         this.searchable = (Integer) in.readValue(Integer.class.getClassLoader());
         this.changeable = (Integer) in.readValue(Integer.class.getClassLoader());
         this.categories = in.createStringArrayList();
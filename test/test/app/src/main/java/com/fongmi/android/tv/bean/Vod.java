@@ -13,23 +13,31 @@ import com.fongmi.android.tv.impl.Diffable;
 import com.fongmi.android.tv.utils.Sniffer;
 import com.fongmi.android.tv.utils.Util;
 import com.github.catvod.utils.Trans;
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.Path;
 import org.simpleframework.xml.Root;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Root(strict = false)
 public class Vod implements Parcelable, Diffable<Vod> {
 
+    private static final Map<String, String> POOL = new ConcurrentHashMap<>();
+
     @Element(name = "id", required = false)
     @SerializedName("vod_id")
     private String vodId;
@@ -112,6 +120,72 @@ public class Vod implements Parcelable, Diffable<Vod> {
         return items == null ? Collections.emptyList() : items;
     }
 
+    public static Vod read(JsonReader reader, TypeAdapter<Cate> cateAdapter, TypeAdapter<Style> styleAdapter) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        Vod vod = new Vod();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "vod_id" -> vod.vodId = nextString(reader);
+                case "vod_name" -> vod.vodName = nextString(reader);
+                case "type_name" -> vod.typeName = intern(nextString(reader));
+                case "vod_pic" -> vod.vodPic = nextString(reader);
+                case "vod_remarks" -> vod.vodRemarks = intern(nextString(reader));
+                case "vod_year" -> vod.vodYear = intern(nextString(reader));
+                case "vod_area" -> vod.vodArea = intern(nextString(reader));
+                case "vod_director" -> vod.vodDirector = nextString(reader);
+                case "vod_actor" -> vod.vodActor = nextString(reader);
+                case "vod_content" -> vod.vodContent = nextString(reader);
+                case "vod_play_from" -> vod.vodPlayFrom = intern(nextString(reader));
+                case "vod_play_url" -> vod.vodPlayUrl = nextString(reader);
+                case "vod_wallpaper" -> vod.vodWallpaper = nextString(reader);
+                case "vod_tag" -> vod.vodTag = intern(nextString(reader));
+                case "action" -> vod.action = nextString(reader);
+                case "cate" -> vod.cate = cateAdapter.read(reader);
+                case "style" -> vod.style = styleAdapter.read(reader);
+                case "land" -> vod.land = (int) nextNumber(reader);
+                case "circle" -> vod.circle = (int) nextNumber(reader);
+                case "ratio" -> vod.ratio = (float) nextNumber(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return vod;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING, NUMBER -> {
+                return reader.nextString();
+            }
+            case BOOLEAN -> {
+                return String.valueOf(reader.nextBoolean());
+            }
+            case NULL -> reader.nextNull();
+            default -> reader.skipValue();
+        }
+        return null;
+    }
+
+    private static double nextNumber(JsonReader reader) throws IOException {
+        try {
+            String value = nextString(reader);
+            return value == null ? 0 : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String intern(String value) {
+        if (value == null || value.length() > 32) return value;
+        if (POOL.size() > 4096) POOL.clear();
+        String cached = POOL.putIfAbsent(value, value);
+        return cached == null ? value : cached;
+    }
+
     public Vod() {
     }
 
@@ -40,4 +40,12 @@ public class Migrations {
             database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_Track_key_type` ON `Track` (`key`, `type`)");
         }
     };
-}
+
+    public static final Migration MIGRATION_34_35 = new Migration(34, 35) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS Program (`key` TEXT NOT NULL, `startTime` INTEGER NOT NULL, `endTime` INTEGER NOT NULL, `title` TEXT, PRIMARY KEY(`key`, `startTime`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Program_endTime` ON `Program` (`endTime`)");
+        }
+    };
+}
\ No newline at end of file
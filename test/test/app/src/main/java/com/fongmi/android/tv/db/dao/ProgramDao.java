@@ -0,0 +1,34 @@
+package com.fongmi.android.tv.db.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.fongmi.android.tv.bean.Program;
+
+import java.util.List;
+
+@Dao
+public abstract class ProgramDao extends BaseDao<Program> {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract List<Long> insert(List<Program> items);
+
+    @Query("SELECT * FROM Program WHERE `key` IN (:keys) AND endTime > :start AND startTime < :end ORDER BY `key`, startTime")
+    public abstract List<Program> find(List<String> keys, long start, long end);
+
+    @Query("DELETE FROM Program WHERE `key` IN (:keys) AND endTime > :start AND startTime < :end")
+    public abstract void delete(List<String> keys, long start, long end);
+
+    @Query("DELETE FROM Program WHERE endTime < :time")
+    public abstract void delete(long time);
+
+    @Transaction
+    public void replace(List<List<String>> keys, long start, long end, List<Program> items, long expire) {
+        delete(expire);
+        for (List<String> chunk : keys) delete(chunk, start, end);
+        insert(items);
+    }
+}
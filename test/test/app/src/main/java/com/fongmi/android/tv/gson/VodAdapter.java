@@ -0,0 +1,36 @@
+package com.fongmi.android.tv.gson;
+
+import com.fongmi.android.tv.bean.Cate;
+import com.fongmi.android.tv.bean.Style;
+import com.fongmi.android.tv.bean.Vod;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+public class VodAdapter implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != Vod.class) return null;
+        TypeAdapter<Vod> delegate = gson.getDelegateAdapter(this, TypeToken.get(Vod.class));
+        TypeAdapter<Cate> cate = gson.getAdapter(Cate.class);
+        TypeAdapter<Style> style = gson.getAdapter(Style.class);
+        return (TypeAdapter<T>) new TypeAdapter<Vod>() {
+            @Override
+            public void write(JsonWriter out, Vod value) throws IOException {
+                delegate.write(out, value);
+            }
+
+            @Override
+            public Vod read(JsonReader in) throws IOException {
+                return Vod.read(in, cate, style);
+            }
+        };
+    }
+}
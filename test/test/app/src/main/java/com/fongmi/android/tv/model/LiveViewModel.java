@@ -3,7 +3,6 @@ package com.fongmi.android.tv.model;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
-import com.fongmi.android.tv.App;
 import com.fongmi.android.tv.Constant;
 import com.fongmi.android.tv.R;
 import com.fongmi.android.tv.api.EpgParser;
@@ -14,21 +13,18 @@ import com.fongmi.android.tv.bean.Epg;
 import com.fongmi.android.tv.bean.EpgData;
 import com.fongmi.android.tv.bean.Group;
 import com.fongmi.android.tv.bean.Live;
+import com.fongmi.android.tv.bean.Program;
 import com.fongmi.android.tv.exception.ExtractException;
 import com.fongmi.android.tv.player.Source;
+import com.fongmi.android.tv.utils.EpgTime;
+import com.fongmi.android.tv.utils.Lane;
 import com.github.catvod.net.OkHttp;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.time.ZoneId;
 import java.util.EnumMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.TimeZone;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -36,22 +32,23 @@ public class LiveViewModel extends ViewModel {
 
     private enum TaskType {
 
-        LIVE(Constant.TIMEOUT_LIVE),
-        EPG(Constant.TIMEOUT_EPG),
-        XML(Constant.TIMEOUT_XML),
-        URL(Constant.TIMEOUT_PARSE_LIVE);
+        LIVE(Lane.CONTENT, Constant.TIMEOUT_LIVE),
+        EPG(Lane.EPG, Constant.TIMEOUT_EPG),
+        XML(Lane.EPG, Constant.TIMEOUT_XML),
+        URL(Lane.PLAY, Constant.TIMEOUT_PARSE_LIVE);
 
+        final Lane lane;
         final long timeout;
 
-        TaskType(long timeout) {
+        TaskType(Lane lane, long timeout) {
+            this.lane = lane;
             this.timeout = timeout;
         }
     }
 
-    private final List<SimpleDateFormat> formatTime;
     private final Map<TaskType, Future<?>> futures;
-    private final SimpleDateFormat formatDate;
-    private final ExecutorService executor;
+    private volatile ZoneId zone;
+    private boolean cleared;
 
     public final MutableLiveData<Channel> url;
     public final MutableLiveData<Boolean> xml;
@@ -63,12 +60,8 @@ public class LiveViewModel extends ViewModel {
         this.epg = new MutableLiveData<>();
         this.xml = new MutableLiveData<>();
         this.url = new MutableLiveData<>();
-        this.formatTime = new ArrayList<>();
         this.futures = new EnumMap<>(TaskType.class);
-        this.executor = Executors.newFixedThreadPool(2);
-        this.formatDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        this.formatTime.add(new SimpleDateFormat("yyyy-MM-ddHH:mm", Locale.getDefault()));
-        this.formatTime.add(new SimpleDateFormat("yyyy-MM-ddHH:mm:ss", Locale.getDefault()));
+        this.zone = ZoneId.systemDefault();
     }
 
     public void getLive(Live item) {
@@ -81,26 +74,36 @@ public class LiveViewModel extends ViewModel {
     }
 
     public void getXml(Live item) {
-        execute(TaskType.XML, () -> item.getEpgXml().stream().anyMatch(url -> parseXml(item, url)));
-    }
-
-    private boolean parseXml(Live item, String url) {
-        try {
-            return EpgParser.start(item, url);
-        } catch (Exception ignored) {
-            return false;
-        }
+        execute(TaskType.XML, () -> {
+            if (EpgParser.restore(item)) xml.postValue(true);
+            return EpgParser.start(item, item.getEpgXml());
+        });
     }
 
     public void getEpg(Channel item) {
-        String date = formatDate.format(new Date());
+        String date = EpgTime.formatDate(System.currentTimeMillis(), zone);
         String url = item.getEpg().replace("{date}", date);
         execute(TaskType.EPG, () -> {
-            if (url.startsWith("http") && !item.getData().equal(date)) item.setData(Epg.objectFrom(OkHttp.string(url), item.getTvgId(), formatTime));
+            if (url.startsWith("http") && !item.getData().equal(date)) item.setData(getEpg(item, url, date));
             return item.getData().selected();
         });
     }
 
+    private Epg getEpg(Channel item, String url, String date) throws Exception {
+        long start = EpgTime.parse(date, "0:00", zone);
+        long end = start + TimeUnit.DAYS.toMillis(1);
+        List<Program> items = Program.find(List.of(item.getTvgId()), start, end).get(item.getTvgId());
+        if (Program.covers(items, start, end)) return EpgParser.getEpg(item.getTvgId(), date, items);
+        try {
+            Epg epg = Epg.objectFrom(OkHttp.string(url), item.getTvgId(), zone);
+            Program.save(List.of(epg));
+            return epg;
+        } catch (Exception e) {
+            if (items == null) throw e;
+            return EpgParser.getEpg(item.getTvgId(), date, items);
+        }
+    }
+
     public void getUrl(Channel item) {
         execute(TaskType.URL, () -> {
             item.setMsg(null);
@@ -121,9 +124,7 @@ public class LiveViewModel extends ViewModel {
 
     private void setTimeZone(Live live) {
         try {
-            TimeZone timeZone = live.getTimeZone().isEmpty() ? TimeZone.getDefault() : TimeZone.getTimeZone(live.getTimeZone());
-            formatTime.forEach(simpleDateFormat -> simpleDateFormat.setTimeZone(timeZone));
-            formatDate.setTimeZone(timeZone);
+            zone = live.getTimeZone().isEmpty() ? ZoneId.systemDefault() : ZoneId.of(live.getTimeZone());
         } catch (Exception ignored) {
         }
     }
@@ -138,35 +139,32 @@ public class LiveViewModel extends ViewModel {
     private <T> void execute(TaskType type, Callable<T> callable) {
         Future<?> oldFuture = futures.get(type);
         if (oldFuture != null && !oldFuture.isDone()) oldFuture.cancel(true);
-        Future<T> newFuture = App.submit(callable);
-        if (executor.isShutdown()) return;
-        futures.put(type, newFuture);
-        executor.execute(() -> {
-            try {
-                T result = newFuture.get(type.timeout, TimeUnit.MILLISECONDS);
-                if (newFuture.isCancelled()) return;
+        if (cleared) return;
+        futures.put(type, type.lane.submit(callable, type.timeout, new Lane.Callback<T>() {
+            @Override
+            public void success(T result) {
                 if (type == TaskType.EPG) epg.postValue((Epg) result);
                 else if (type == TaskType.LIVE) live.postValue((Live) result);
                 else if (type == TaskType.XML) xml.postValue((Boolean) result);
                 else if (type == TaskType.URL) url.postValue((Channel) result);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            } catch (Throwable e) {
-                if (newFuture.isCancelled()) return;
-                if (e.getCause() instanceof ExtractException) url.postValue(Channel.error(e.getCause().getMessage()));
+            }
+
+            @Override
+            public void error(Throwable e) {
+                if (e instanceof ExtractException) url.postValue(Channel.error(e.getMessage()));
                 else if (type == TaskType.URL) url.postValue(new Channel());
                 else if (type == TaskType.LIVE) live.postValue(new Live());
                 else if (type == TaskType.EPG) epg.postValue(new Epg());
                 else if (type == TaskType.XML) xml.postValue(false);
                 e.printStackTrace();
             }
-        });
+        }));
     }
 
     @Override
     protected void onCleared() {
         super.onCleared();
         futures.values().forEach(future -> future.cancel(true));
-        if (executor != null) executor.shutdownNow();
+        cleared = true;
     }
 }
\ No newline at end of file
@@ -59,9 +59,8 @@ public class SearchTask implements Callable<Result> {
             params.put("quick", String.valueOf(quick));
             params.put("extend", "");
             if (hasPage) params.put("pg", page);
-            String searchContent = model.call(site, params);
-            SpiderDebug.log("search", "site=%s,keyword=%s,quick=%s,page=%s\n%s", site.getName(), keyword, quick, page, searchContent.trim());
-            Result result = model.fetchPic(site, Result.fromType(site.getType(), searchContent));
+            SpiderDebug.log("search", "site=%s,keyword=%s,quick=%s,page=%s", site.getName(), keyword, quick, page);
+            Result result = model.fetchPic(site, model.fetch(site, params));
             for (Vod vod : result.getList()) vod.setSite(site);
             return result;
         }
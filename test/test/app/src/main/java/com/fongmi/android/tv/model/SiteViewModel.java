@@ -18,6 +18,7 @@ import com.fongmi.android.tv.bean.Url;
 import com.fongmi.android.tv.bean.Vod;
 import com.fongmi.android.tv.exception.ExtractException;
 import com.fongmi.android.tv.player.Source;
+import com.fongmi.android.tv.utils.Lane;
 import com.fongmi.android.tv.utils.ResUtil;
 import com.fongmi.android.tv.utils.Sniffer;
 import com.github.catvod.crawler.Spider;
@@ -32,10 +33,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
 import okhttp3.Response;
@@ -43,8 +41,8 @@ import okhttp3.Response;
 public class SiteViewModel extends ViewModel {
 
     private final List<Future<?>> searchFuture;
-    private final ExecutorService executor;
     private Future<Result> future;
+    private boolean cleared;
 
     public final MutableLiveData<Episode> episode;
     public final MutableLiveData<Result> result;
@@ -59,7 +57,6 @@ public class SiteViewModel extends ViewModel {
         search = new MutableLiveData<>();
         action = new MutableLiveData<>();
         searchFuture = new ArrayList<>();
-        executor = Executors.newSingleThreadExecutor();
     }
 
     public SiteViewModel init() {
@@ -76,7 +73,7 @@ public class SiteViewModel extends ViewModel {
     }
 
     public void homeContent() {
-        execute(result, () -> {
+        execute(Lane.CONTENT, result, () -> {
             Site site = VodConfig.get().getHome();
             if (site.getType() == 3) {
                 Spider spider = site.recent().spider();
@@ -107,7 +104,7 @@ public class SiteViewModel extends ViewModel {
     }
 
     public void categoryContent(String key, String tid, String page, boolean filter, HashMap<String, String> extend) {
-        execute(result, () -> {
+        execute(Lane.CONTENT, result, () -> {
             Site site = VodConfig.get().getSite(key);
             SpiderDebug.log("category", "key=%s,tid=%s,page=%s,filter=%s,extend=%s", key, tid, page, filter, extend);
             if (site.getType() == 3) {
@@ -122,15 +119,13 @@ public class SiteViewModel extends ViewModel {
                 params.put("ac", site.getType() == 0 ? "videolist" : "detail");
                 params.put("t", tid);
                 params.put("pg", page);
-                String categoryContent = call(site, params);
-                SpiderDebug.log("category", categoryContent);
-                return Result.fromType(site.getType(), categoryContent);
+                return fetch(site, params);
             }
         });
     }
 
     public void detailContent(String key, String id) {
-        execute(result, () -> {
+        execute(Lane.CONTENT, result, () -> {
             Site site = VodConfig.get().getSite(key);
             SpiderDebug.log("detail", "key=%s,id=%s", key, id);
             if (site.getType() == 3) {
@@ -153,9 +148,7 @@ public class SiteViewModel extends ViewModel {
                 ArrayMap<String, String> params = new ArrayMap<>();
                 params.put("ac", site.getType() == 0 ? "videolist" : "detail");
                 params.put("ids", id);
-                String detailContent = call(site, params);
-                SpiderDebug.log("detail", detailContent);
-                Result result = Result.fromType(site.getType(), detailContent);
+                Result result = fetch(site, params);
                 if (!result.getList().isEmpty()) result.getList().get(0).setVodFlags();
                 if (!result.getList().isEmpty()) Source.get().parse(result.getList().get(0).getVodFlags());
                 return result;
@@ -164,7 +157,7 @@ public class SiteViewModel extends ViewModel {
     }
 
     public void playerContent(String key, String flag, String id) {
-        execute(player, () -> {
+        execute(Lane.PLAY, player, () -> {
             Source.get().stop();
             Site site = VodConfig.get().getSite(key);
             SpiderDebug.log("player", "key=%s,flag=%s,id=%s", key, flag, id);
@@ -213,15 +206,15 @@ public class SiteViewModel extends ViewModel {
     }
 
     public void searchContent(List<Site> sites, String keyword, boolean quick) {
-        sites.forEach(site -> searchFuture.add(App.submitSearch(SearchTask.create(this, site, keyword, quick).run())));
+        sites.forEach(site -> searchFuture.add(Lane.SEARCH.submit(SearchTask.create(this, site, keyword, quick).run())));
     }
 
     public void searchContent(Site site, String keyword, boolean quick, String page) {
-        execute(result, SearchTask.create(this, site, keyword, quick, page));
+        execute(Lane.CONTENT, result, SearchTask.create(this, site, keyword, quick, page));
     }
 
     public void action(String key, String action) {
-        execute(this.action, () -> {
+        execute(Lane.CONTENT, this.action, () -> {
             Site site = VodConfig.get().getSite(key);
             SpiderDebug.log("action", "key=%s,action=%s", key, action);
             if (site.getType() == 3) return Result.fromJson(site.recent().spider().action(action));
@@ -231,14 +224,23 @@ public class SiteViewModel extends ViewModel {
     }
 
     public String call(Site site, ArrayMap<String, String> params) throws IOException {
-        if (!site.getExt().isEmpty()) params.put("extend", site.getExt());
-        Call get = OkHttp.newCall(site.getApi(), site.getHeaders(), params);
-        Call post = OkHttp.newCall(site.getApi(), site.getHeaders(), OkHttp.toBody(params));
-        try (Response response = (site.getExt().length() <= 1000 ? get : post).execute()) {
+        try (Response response = newCall(site, params).execute()) {
             return response.body().string();
         }
     }
 
+    public Result fetch(Site site, ArrayMap<String, String> params) throws IOException {
+        try (Response response = newCall(site, params).execute()) {
+            return Result.fromType(site.getType(), response.body());
+        }
+    }
+
+    private Call newCall(Site site, ArrayMap<String, String> params) {
+        if (!site.getExt().isEmpty()) params.put("extend", site.getExt());
+        if (site.getExt().length() <= 1000) return OkHttp.newCall(site.getApi(), site.getHeaders(), params);
+        return OkHttp.newCall(site.getApi(), site.getHeaders(), OkHttp.toBody(params));
+    }
+
     public Result fetchPic(Site site, Result result) throws Exception {
         if (site.getType() > 2 || result.getList().isEmpty() || !result.getList().get(0).getVodPic().isEmpty()) return result;
         ArrayList<String> ids = new ArrayList<>();
@@ -249,25 +251,23 @@ public class SiteViewModel extends ViewModel {
         params.put("ac", site.getType() == 0 ? "videolist" : "detail");
         params.put("ids", TextUtils.join(",", ids));
         try (Response response = OkHttp.newCall(site.getApi(), site.getHeaders(), params).execute()) {
-            result.setList(Result.fromType(site.getType(), response.body().string()).getList());
+            result.setList(Result.fromType(site.getType(), response.body()).getList());
             return result;
         }
     }
 
-    private void execute(MutableLiveData<Result> result, Callable<Result> callable) {
+    private void execute(Lane lane, MutableLiveData<Result> result, Callable<Result> callable) {
         if (future != null && !future.isDone()) future.cancel(true);
-        if (executor.isShutdown()) return;
-        future = App.submit(callable);
-        executor.execute(() -> {
-            try {
-                Result taskResult = future.get(Constant.TIMEOUT_VOD, TimeUnit.MILLISECONDS);
-                if (future.isCancelled()) return;
+        if (cleared) return;
+        future = lane.submit(callable, Constant.TIMEOUT_VOD, new Lane.Callback<>() {
+            @Override
+            public void success(Result taskResult) {
                 result.postValue(taskResult);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            } catch (Throwable e) {
-                if (future.isCancelled()) return;
-                if (e.getCause() instanceof ExtractException) result.postValue(Result.error(e.getCause().getMessage()));
+            }
+
+            @Override
+            public void error(Throwable e) {
+                if (e instanceof ExtractException) result.postValue(Result.error(e.getMessage()));
                 else result.postValue(Result.empty());
                 e.printStackTrace();
             }
@@ -283,6 +283,7 @@ public class SiteViewModel extends ViewModel {
     protected void onCleared() {
         super.onCleared();
         if (future != null) future.cancel(true);
-        if (executor != null) executor.shutdownNow();
+        cleared = true;
+        stopSearch();
     }
 }
@@ -11,6 +11,7 @@ import com.fongmi.android.tv.bean.Result;
 import com.fongmi.android.tv.impl.ParseCallback;
 import com.fongmi.android.tv.server.Server;
 import com.fongmi.android.tv.ui.custom.CustomWebView;
+import com.fongmi.android.tv.utils.Lane;
 import com.fongmi.android.tv.utils.UrlUtil;
 import com.github.catvod.net.OkHttp;
 import com.github.catvod.utils.Json;
@@ -24,10 +25,10 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
 import okhttp3.Headers;
 import okhttp3.Response;
@@ -35,8 +36,7 @@ import okhttp3.Response;
 public class ParseJob implements ParseCallback {
 
     private final List<CustomWebView> webViews;
-    private ExecutorService executor;
-    private ExecutorService infinite;
+    private final List<Future<?>> futures;
     private ParseCallback callback;
     private Parse parse;
 
@@ -45,8 +45,7 @@ public class ParseJob implements ParseCallback {
     }
 
     public ParseJob(ParseCallback callback) {
-        this.executor = Executors.newFixedThreadPool(2);
-        this.infinite = Executors.newCachedThreadPool();
+        this.futures = new CopyOnWriteArrayList<>();
         this.webViews = new ArrayList<>();
         this.callback = callback;
     }
@@ -73,13 +72,16 @@ public class ParseJob implements ParseCallback {
     }
 
     private void execute(Result result) {
-        executor.execute(() -> {
-            try {
-                executor.submit(getTask(result)).get(Constant.TIMEOUT_PARSE_DEF, TimeUnit.MILLISECONDS);
-            } catch (Throwable e) {
+        futures.add(Lane.PLAY.submit(Executors.callable(getTask(result)), Constant.TIMEOUT_PARSE_DEF, new Lane.Callback<>() {
+            @Override
+            public void success(Object result) {
+            }
+
+            @Override
+            public void error(Throwable e) {
                 onParseError();
             }
-        });
+        }));
     }
 
     private Runnable getTask(Result result) {
@@ -139,7 +141,7 @@ public class ParseJob implements ParseCallback {
         List<Parse> webs = VodConfig.get().getParses(0, flag);
         int count = json.size() + (webs.isEmpty() ? 0 : 1);
         CountDownLatch latch = new CountDownLatch(count);
-        for (Parse item : json) infinite.execute(() -> jsonParse(latch, item, webUrl));
+        for (Parse item : json) futures.add(Lane.PARSE.submit(() -> jsonParse(latch, item, webUrl)));
         if (!webs.isEmpty()) startWeb(webs, webUrl);
         latch.await();
         onParseError();
@@ -220,10 +222,8 @@ public class ParseJob implements ParseCallback {
     }
 
     public void stop() {
-        if (executor != null) executor.shutdownNow();
-        if (infinite != null) infinite.shutdownNow();
-        infinite = null;
-        executor = null;
+        for (Future<?> future : futures) future.cancel(true);
+        futures.clear();
         callback = null;
         stopWeb();
     }
@@ -50,6 +50,7 @@ import com.fongmi.android.tv.impl.CustomTarget;
 import com.fongmi.android.tv.impl.ParseCallback;
 import com.fongmi.android.tv.impl.SessionCallback;
 import com.fongmi.android.tv.player.danmaku.DanPlayer;
+import com.fongmi.android.tv.player.exo.CacheManager;
 import com.fongmi.android.tv.player.exo.ErrorMsgProvider;
 import com.fongmi.android.tv.player.exo.ExoUtil;
 import com.fongmi.android.tv.server.Server;
@@ -57,6 +58,7 @@ import com.fongmi.android.tv.utils.FileUtil;
 import com.fongmi.android.tv.utils.ImgUtil;
 import com.fongmi.android.tv.utils.Notify;
 import com.fongmi.android.tv.utils.ResUtil;
+import com.fongmi.android.tv.utils.Sniffer;
 import com.fongmi.android.tv.utils.UrlUtil;
 import com.fongmi.android.tv.utils.Util;
 import com.github.catvod.utils.Path;
@@ -80,6 +82,7 @@ public class Players implements Player.Listener, ParseCallback {
 
     public static final int SOFT = 0;
     public static final int HARD = 1;
+    private static final long PREFETCH = TimeUnit.SECONDS.toMillis(30);
 
     private final ErrorMsgProvider provider;
     private final AudioManager audioManager;
@@ -103,6 +106,7 @@ public class Players implements Player.Listener, ParseCallback {
     private Drm drm;
     private Sub sub;
 
+    private boolean vod;
     private int decode;
     private int retry;
 
@@ -396,8 +400,13 @@ public class Players implements Player.Listener, ParseCallback {
         stopParse();
     }
 
+    public void prefetch(String url) {
+        if (isVod() && Sniffer.isVideoFormat(url)) CacheManager.get().prefetch(url, headers, PREFETCH);
+    }
+
     public void release() {
         stopParse();
+        CacheManager.get().cancelPrefetch();
         releasePlayer();
         session.release();
         removeTimeoutCheck();
@@ -417,6 +426,7 @@ public class Players implements Player.Listener, ParseCallback {
     }
 
     public void start(Channel channel, long timeout) {
+        vod = false;
         if (channel.getDrm() != null && !FrameworkMediaDrm.isCryptoSchemeSupported(channel.getDrm().getUUID())) {
             ErrorEvent.drm(tag);
         } else if (channel.hasMsg()) {
@@ -431,6 +441,7 @@ public class Players implements Player.Listener, ParseCallback {
     }
 
     public void start(Result result, boolean useParse, long timeout) {
+        vod = true;
         if (result.getDrm() != null && !FrameworkMediaDrm.isCryptoSchemeSupported(result.getDrm().getUUID())) {
             ErrorEvent.drm(tag);
         } else if (result.hasMsg()) {
@@ -492,7 +503,7 @@ public class Players implements Player.Listener, ParseCallback {
     }
 
     private void setMediaItem(Map<String, String> headers, String url, String format, Drm drm, List<Sub> subs, List<Danmaku> danmakus, long timeout) {
-        if (exoPlayer != null) exoPlayer.setMediaItem(ExoUtil.getMediaItem(this.headers = checkUa(headers), UrlUtil.uri(this.url = url), this.format = format, this.drm = drm, checkSub(this.subs = subs), decode));
+        if (exoPlayer != null) exoPlayer.setMediaItem(ExoUtil.getMediaItem(this.headers = checkUa(headers), UrlUtil.uri(this.url = url), this.format = format, this.drm = drm, checkSub(this.subs = subs), decode, vod));
         Logger.t(TAG).d("headers=%s\nurl=%s\nformat=%s\ndrm=%s\nsubs=%s\ndanmakus=%s\ntimeout=%s", this.headers, url, format, drm, this.subs, danmakus, timeout);
         if (danPlayer != null) setDanmaku(this.danmakus = danmakus);
         App.post(runnable, timeout);
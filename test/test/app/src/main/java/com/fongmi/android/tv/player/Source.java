@@ -12,14 +12,13 @@ import com.fongmi.android.tv.player.extractor.TVBus;
 import com.fongmi.android.tv.player.extractor.Thunder;
 import com.fongmi.android.tv.player.extractor.Video;
 import com.fongmi.android.tv.player.extractor.Youtube;
+import com.fongmi.android.tv.utils.Lane;
 import com.fongmi.android.tv.utils.UrlUtil;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -65,13 +64,11 @@ public class Source {
     }
 
     public void parse(List<Flag> flags) throws Exception {
-        try (ExecutorService executor = Executors.newCachedThreadPool()) {
-            for (Flag flag : flags) {
-                List<Callable<List<Episode>>> items = new ArrayList<>();
-                Iterator<Episode> iterator = flag.getEpisodes().iterator();
-                while (iterator.hasNext()) addCallable(iterator, items);
-                for (Future<List<Episode>> future : executor.invokeAll(items, 30, TimeUnit.SECONDS)) flag.getEpisodes().addAll(future.get());
-            }
+        for (Flag flag : flags) {
+            List<Callable<List<Episode>>> items = new ArrayList<>();
+            Iterator<Episode> iterator = flag.getEpisodes().iterator();
+            while (iterator.hasNext()) addCallable(iterator, items);
+            for (Future<List<Episode>> future : Lane.PARSE.invokeAll(items, 30, TimeUnit.SECONDS)) flag.getEpisodes().addAll(future.get());
         }
     }
 
@@ -1,16 +1,55 @@
 package com.fongmi.android.tv.player.exo;
 
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.media3.common.C;
+import androidx.media3.common.util.UriUtil;
 import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSourceUtil;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
 import androidx.media3.datasource.cache.Cache;
-import androidx.media3.datasource.cache.NoOpCacheEvictor;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.CacheKeyFactory;
+import androidx.media3.datasource.cache.CacheWriter;
+import androidx.media3.datasource.cache.LeastRecentlyUsedCacheEvictor;
 import androidx.media3.datasource.cache.SimpleCache;
+import androidx.media3.datasource.okhttp.OkHttpDataSource;
 
 import com.fongmi.android.tv.App;
+import com.fongmi.android.tv.Setting;
+import com.fongmi.android.tv.utils.Lane;
+import com.github.catvod.net.OkHttp;
 import com.github.catvod.utils.Path;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class CacheManager {
 
+    private static final long PREFETCH_BYTES = 8 * 1024 * 1024;
+    private static final Set<String> SIGNATURE = new HashSet<>(Arrays.asList("auth_key", "wssecret", "wstime", "txsecret", "txtime", "policy", "key-pair-id", "ossaccesskeyid"));
+    private static final Set<String> SIGNED = new HashSet<>(Arrays.asList("signature", "expires"));
+    private static final Set<String> MANIFEST = new HashSet<>(Arrays.asList("m3u8", "m3u", "mpd", "txt", "json", "xml", "php"));
+    private static final Set<String> SEGMENT = new HashSet<>(Arrays.asList("ts", "m4s", "m4v", "m4a", "aac", "cmfv", "cmfa", "key"));
+
+    private final AtomicLong cachedBytes;
+    private final AtomicLong networkBytes;
     private SimpleCache cache;
+    private Future<?> prefetch;
+    private String prefetchUrl;
 
     private static class Loader {
         static volatile CacheManager INSTANCE = new CacheManager();
@@ -20,19 +59,190 @@ public class CacheManager {
         return Loader.INSTANCE;
     }
 
-    public Cache getCache() {
+    public CacheManager() {
+        this.cachedBytes = new AtomicLong();
+        this.networkBytes = new AtomicLong();
+    }
+
+    public synchronized Cache getCache() {
         if (cache == null) create();
         return cache;
     }
 
     private void create() {
-        cache = new SimpleCache(Path.exo(), new NoOpCacheEvictor(), new StandaloneDatabaseProvider(App.get()));
+        cache = new SimpleCache(Path.exo(), new LeastRecentlyUsedCacheEvictor(Setting.getExoCache() * 1024L * 1024L), new StandaloneDatabaseProvider(App.get()));
+    }
+
+    public CacheKeyFactory getCacheKeyFactory() {
+        return this::buildCacheKey;
+    }
+
+    public CacheDataSource.EventListener getEventListener() {
+        return new CacheDataSource.EventListener() {
+            @Override
+            public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+                cachedBytes.addAndGet(cachedBytesRead);
+            }
+
+            @Override
+            public void onCacheIgnored(int reason) {
+            }
+        };
+    }
+
+    public TransferListener getTransferListener() {
+        return new TransferListener() {
+            @Override
+            public void onTransferInitializing(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork) {
+            }
+
+            @Override
+            public void onTransferStart(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork) {
+            }
+
+            @Override
+            public void onBytesTransferred(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+                if (isNetwork) networkBytes.addAndGet(bytesTransferred);
+            }
+
+            @Override
+            public void onTransferEnd(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork) {
+            }
+        };
+    }
+
+    /**
+     * Live progressive streams never end, so outside vod only bounded requests and media segments are cached.
+     */
+    public boolean isCacheable(DataSpec dataSpec, boolean vod) {
+        String scheme = dataSpec.uri.getScheme();
+        String extension = getExtension(dataSpec.uri);
+        if (!"http".equals(scheme) && !"https".equals(scheme) || MANIFEST.contains(extension)) return false;
+        return vod || dataSpec.length != C.LENGTH_UNSET || SEGMENT.contains(extension);
+    }
+
+    private String getExtension(Uri uri) {
+        String path = uri.getLastPathSegment();
+        if (path == null || !path.contains(".")) return "";
+        return path.substring(path.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    public long getBytesSaved() {
+        return cachedBytes.get();
+    }
+
+    public float getHitRatio() {
+        long cached = cachedBytes.get();
+        long total = cached + networkBytes.get();
+        return total == 0 ? 0 : (float) cached / total;
+    }
+
+    public long getCacheSpace() {
+        return cache == null ? 0 : cache.getCacheSpace();
+    }
+
+    public String getStats() {
+        return String.format(Locale.ROOT, "hit=%.1f%% saved=%dKB size=%dKB", getHitRatio() * 100, getBytesSaved() / 1024, getCacheSpace() / 1024);
+    }
+
+    public synchronized void prefetch(String url, Map<String, String> headers, long durationMs) {
+        if (url.equals(prefetchUrl)) return;
+        if (prefetch != null) prefetch.cancel(true);
+        prefetchUrl = url;
+        prefetch = Lane.BACKGROUND.submit(() -> {
+            try {
+                doPrefetch(Uri.parse(url), headers, durationMs);
+            } catch (Exception ignored) {
+            }
+        });
+    }
+
+    public synchronized void cancelPrefetch() {
+        if (prefetch != null) prefetch.cancel(true);
+        prefetchUrl = null;
+        prefetch = null;
+    }
+
+    private void doPrefetch(Uri uri, Map<String, String> headers, long durationMs) throws IOException {
+        DataSource upstream = new OkHttpDataSource.Factory(OkHttp.player()).setDefaultRequestProperties(headers).createDataSource();
+        CacheDataSource dataSource = new CacheDataSource.Factory().setCache(getCache()).setCacheKeyFactory(getCacheKeyFactory()).setUpstreamDataSourceFactory(() -> upstream).createDataSource();
+        String extension = getExtension(uri);
+        if (extension.startsWith("m3u")) {
+            for (Uri segment : getSegments(upstream, uri, durationMs)) write(dataSource, new DataSpec(segment));
+        } else if (isCacheable(new DataSpec.Builder().setUri(uri).setLength(PREFETCH_BYTES).build(), true)) {
+            write(dataSource, new DataSpec.Builder().setUri(uri).setLength(PREFETCH_BYTES).build());
+        }
     }
 
-    public void release() {
+    private void write(CacheDataSource dataSource, DataSpec dataSpec) throws IOException {
+        if (Thread.currentThread().isInterrupted()) throw new IOException("cancelled");
+        new CacheWriter(dataSource, dataSpec, null, null).cache();
+    }
+
+    private List<Uri> getSegments(DataSource upstream, Uri uri, long durationMs) throws IOException {
+        String base;
+        String[] lines;
+        try {
+            upstream.open(new DataSpec(uri));
+            base = upstream.getUri() == null ? uri.toString() : upstream.getUri().toString();
+            lines = new String(DataSourceUtil.readToEnd(upstream), StandardCharsets.UTF_8).replace("\r", "").split("\n");
+        } finally {
+            upstream.close();
+        }
+        String variant = null;
+        long bandwidth = -1;
+        for (int i = 0; i < lines.length - 1; i++) {
+            if (!lines[i].startsWith("#EXT-X-STREAM-INF")) continue;
+            long value = getBandwidth(lines[i]);
+            if (value <= bandwidth) continue;
+            bandwidth = value;
+            variant = lines[i + 1].trim();
+        }
+        if (variant != null) return getSegments(upstream, Uri.parse(UriUtil.resolve(base, variant)), durationMs);
+        List<Uri> segments = new ArrayList<>();
+        double total = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.startsWith("#EXT-X-BYTERANGE")) return Collections.emptyList();
+            if (line.startsWith("#EXT-X-MAP") && line.contains("URI=\"")) segments.add(Uri.parse(UriUtil.resolve(base, line.split("URI=\"")[1].split("\"")[0])));
+            if (!line.startsWith("#EXTINF:") || i + 1 >= lines.length) continue;
+            total += Double.parseDouble(line.substring(8).split(",")[0].trim());
+            segments.add(Uri.parse(UriUtil.resolve(base, lines[i + 1].trim())));
+            if (total * 1000 >= durationMs) break;
+        }
+        return segments;
+    }
+
+    private long getBandwidth(String line) {
+        for (String attr : line.substring(line.indexOf(':') + 1).split(",")) if (attr.startsWith("BANDWIDTH=")) return Long.parseLong(attr.substring(10).trim());
+        return 0;
+    }
+
+    private String buildCacheKey(DataSpec dataSpec) {
+        if (dataSpec.key != null) return dataSpec.key;
+        Uri uri = dataSpec.uri;
+        if (uri.isOpaque() || uri.getQuery() == null) return uri.toString();
+        List<String> names = new ArrayList<>(uri.getQueryParameterNames());
+        Collections.sort(names);
+        boolean signed = false;
+        for (String name : names) signed |= name.equalsIgnoreCase("key-pair-id") || name.equalsIgnoreCase("ossaccesskeyid");
+        Uri.Builder builder = uri.buildUpon().clearQuery();
+        for (String name : names) if (!isSignature(name.toLowerCase(Locale.ROOT), signed)) for (String value : uri.getQueryParameters(name)) builder.appendQueryParameter(name, value);
+        return builder.build().toString();
+    }
+
+    /**
+     * Only CDN url signing params are dropped, generic names like t or token may select the content on other hosts.
+     * Signature and Expires are only dropped next to the CloudFront or OSS key id that defines them.
+     */
+    private boolean isSignature(String name, boolean signed) {
+        return SIGNATURE.contains(name) || name.startsWith("x-amz-") || name.startsWith("x-oss-") || (signed && SIGNED.contains(name));
+    }
+
+    public synchronized void release() {
+        cancelPrefetch();
         if (cache == null) return;
         cache.release();
         cache = null;
     }
 }
-
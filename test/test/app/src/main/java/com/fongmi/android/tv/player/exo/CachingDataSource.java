@@ -0,0 +1,82 @@
+package com.fongmi.android.tv.player.exo;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+public class CachingDataSource implements DataSource {
+
+    private final DataSource cached;
+    private final DataSource upstream;
+    private final boolean vod;
+    private DataSource current;
+
+    public CachingDataSource(DataSource cached, DataSource upstream, boolean vod) {
+        this.cached = cached;
+        this.upstream = upstream;
+        this.vod = vod;
+    }
+
+    @Override
+    public void addTransferListener(@NonNull TransferListener transferListener) {
+        cached.addTransferListener(transferListener);
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(@NonNull DataSpec dataSpec) throws IOException {
+        current = CacheManager.get().isCacheable(dataSpec, vod) ? cached : upstream;
+        return current.open(dataSpec);
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        return current.read(buffer, offset, length);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return current == null ? null : current.getUri();
+    }
+
+    @NonNull
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return current == null ? DataSource.super.getResponseHeaders() : current.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current == null) return;
+        current.close();
+        current = null;
+    }
+
+    public static class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory cached;
+        private final DataSource.Factory upstream;
+        private final boolean vod;
+
+        public Factory(DataSource.Factory cached, DataSource.Factory upstream, boolean vod) {
+            this.cached = cached;
+            this.upstream = upstream;
+            this.vod = vod;
+        }
+
+        @NonNull
+        @Override
+        public DataSource createDataSource() {
+            return new CachingDataSource(cached.createDataSource(), upstream.createDataSource(), vod);
+        }
+    }
+}
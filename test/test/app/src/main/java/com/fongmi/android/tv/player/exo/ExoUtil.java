@@ -38,6 +38,8 @@ import io.github.anilbeesetti.nextlib.media3ext.ffdecoder.NextRenderersFactory;
 
 public class ExoUtil {
 
+    private static final String VOD = "vod";
+
     public static String getUa() {
         return Util.getUserAgent(App.get(), BuildConfig.APPLICATION_ID);
     }
@@ -99,8 +101,8 @@ public class ExoUtil {
         return null;
     }
 
-    public static MediaItem getMediaItem(Map<String, String> headers, Uri uri, String mimeType, Drm drm, List<Sub> subs, int decode) {
-        MediaItem.Builder builder = new MediaItem.Builder().setUri(uri);
+    public static MediaItem getMediaItem(Map<String, String> headers, Uri uri, String mimeType, Drm drm, List<Sub> subs, int decode, boolean vod) {
+        MediaItem.Builder builder = new MediaItem.Builder().setUri(uri).setTag(vod ? VOD : null);
         builder.setRequestMetadata(getRequestMetadata(headers, uri));
         builder.setSubtitleConfigurations(getSubtitleConfigs(subs));
         if (drm != null) builder.setDrmConfiguration(drm.get());
@@ -110,6 +112,13 @@ public class ExoUtil {
         return builder.build();
     }
 
+    /**
+     * Vod items may cache whole progressive files, live items only cache bounded requests and segments.
+     */
+    public static boolean isVod(MediaItem item) {
+        return item.localConfiguration != null && VOD.equals(item.localConfiguration.tag);
+    }
+
     private static MediaItem.RequestMetadata getRequestMetadata(Map<String, String> headers, Uri uri) {
         Bundle extras = new Bundle();
         for (Map.Entry<String, String> header : headers.entrySet()) extras.putString(header.getKey(), header.getValue());
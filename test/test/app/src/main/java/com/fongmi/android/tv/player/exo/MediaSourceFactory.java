@@ -30,24 +30,32 @@ import java.util.Map;
 public class MediaSourceFactory implements MediaSource.Factory {
 
     private final DefaultMediaSourceFactory defaultMediaSourceFactory;
-    private HttpDataSource.Factory httpDataSourceFactory;
-    private DataSource.Factory dataSourceFactory;
+    private final DefaultMediaSourceFactory liveMediaSourceFactory;
+    private DrmSessionManagerProvider drmSessionManagerProvider;
+    private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private ExtractorsFactory extractorsFactory;
 
     public MediaSourceFactory() {
-        defaultMediaSourceFactory = new DefaultMediaSourceFactory(getDataSourceFactory(), getExtractorsFactory());
+        defaultMediaSourceFactory = new DefaultMediaSourceFactory(getDataSourceFactory(new HashMap<>(), true), getExtractorsFactory());
+        liveMediaSourceFactory = new DefaultMediaSourceFactory(getDataSourceFactory(new HashMap<>(), false), getExtractorsFactory());
     }
 
     @NonNull
     @Override
     public MediaSource.Factory setDrmSessionManagerProvider(@NonNull DrmSessionManagerProvider drmSessionManagerProvider) {
-        return defaultMediaSourceFactory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+        this.drmSessionManagerProvider = drmSessionManagerProvider;
+        defaultMediaSourceFactory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+        liveMediaSourceFactory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+        return this;
     }
 
     @NonNull
     @Override
     public MediaSource.Factory setLoadErrorHandlingPolicy(@NonNull LoadErrorHandlingPolicy loadErrorHandlingPolicy) {
-        return defaultMediaSourceFactory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
+        defaultMediaSourceFactory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        liveMediaSourceFactory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        return this;
     }
 
     @NonNull
@@ -59,26 +67,34 @@ public class MediaSourceFactory implements MediaSource.Factory {
     @NonNull
     @Override
     public MediaSource createMediaSource(@NonNull MediaItem mediaItem) {
+        MediaSource.Factory factory = getMediaSourceFactory(getHeaders(mediaItem), ExoUtil.isVod(mediaItem));
         if (mediaItem.mediaId.contains("***") && mediaItem.mediaId.contains("|||")) {
-            return createConcatenatingMediaSource(setHeader(mediaItem));
+            return createConcatenatingMediaSource(factory, mediaItem);
         } else {
-            return defaultMediaSourceFactory.createMediaSource(setHeader(mediaItem));
+            return factory.createMediaSource(mediaItem);
         }
     }
 
-    private MediaItem setHeader(MediaItem mediaItem) {
+    private Map<String, String> getHeaders(MediaItem mediaItem) {
         Map<String, String> headers = new HashMap<>();
-        if (mediaItem.requestMetadata.extras == null) return mediaItem;
+        if (mediaItem.requestMetadata.extras == null) return headers;
         for (String key : mediaItem.requestMetadata.extras.keySet()) headers.put(key, mediaItem.requestMetadata.extras.get(key).toString());
-        getHttpDataSourceFactory().setDefaultRequestProperties(headers);
-        return mediaItem;
+        return headers;
     }
 
-    private MediaSource createConcatenatingMediaSource(MediaItem mediaItem) {
+    private MediaSource.Factory getMediaSourceFactory(Map<String, String> headers, boolean vod) {
+        if (headers.isEmpty()) return vod ? defaultMediaSourceFactory : liveMediaSourceFactory;
+        DefaultMediaSourceFactory factory = new DefaultMediaSourceFactory(getDataSourceFactory(headers, vod), getExtractorsFactory());
+        if (drmSessionManagerProvider != null) factory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+        if (loadErrorHandlingPolicy != null) factory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        return factory;
+    }
+
+    private MediaSource createConcatenatingMediaSource(MediaSource.Factory factory, MediaItem mediaItem) {
         ConcatenatingMediaSource2.Builder builder = new ConcatenatingMediaSource2.Builder();
         for (String split : mediaItem.mediaId.split("\\*\\*\\*")) {
             String[] info = split.split("\\|\\|\\|");
-            if (info.length >= 2) builder.add(defaultMediaSourceFactory.createMediaSource(mediaItem.buildUpon().setUri(Uri.parse(info[0])).build()), Long.parseLong(info[1]));
+            if (info.length >= 2) builder.add(factory.createMediaSource(mediaItem.buildUpon().setUri(Uri.parse(info[0])).build()), Long.parseLong(info[1]));
         }
         return builder.build();
     }
@@ -88,17 +104,17 @@ public class MediaSourceFactory implements MediaSource.Factory {
         return extractorsFactory;
     }
 
-    private DataSource.Factory getDataSourceFactory() {
-        if (dataSourceFactory == null) dataSourceFactory = buildReadOnlyCacheDataSource(new DefaultDataSource.Factory(App.get(), getHttpDataSourceFactory()));
-        return dataSourceFactory;
+    private DataSource.Factory getDataSourceFactory(Map<String, String> headers, boolean vod) {
+        return buildCacheDataSource(new DefaultDataSource.Factory(App.get(), getHttpDataSourceFactory(headers)), vod);
     }
 
-    private CacheDataSource.Factory buildReadOnlyCacheDataSource(DataSource.Factory upstreamFactory) {
-        return new CacheDataSource.Factory().setCache(CacheManager.get().getCache()).setUpstreamDataSourceFactory(upstreamFactory).setCacheWriteDataSinkFactory(null).setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+    private DataSource.Factory buildCacheDataSource(DataSource.Factory upstreamFactory, boolean vod) {
+        CacheManager manager = CacheManager.get();
+        CacheDataSource.Factory cacheFactory = new CacheDataSource.Factory().setCache(manager.getCache()).setCacheKeyFactory(manager.getCacheKeyFactory()).setUpstreamDataSourceFactory(upstreamFactory).setEventListener(manager.getEventListener()).setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+        return new CachingDataSource.Factory(cacheFactory, upstreamFactory, vod);
     }
 
-    private HttpDataSource.Factory getHttpDataSourceFactory() {
-        if (httpDataSourceFactory == null) httpDataSourceFactory = new OkHttpDataSource.Factory(OkHttp.player());
-        return httpDataSourceFactory;
+    private HttpDataSource.Factory getHttpDataSourceFactory(Map<String, String> headers) {
+        return new OkHttpDataSource.Factory(OkHttp.player()).setDefaultRequestProperties(headers).setTransferListener(CacheManager.get().getTransferListener());
     }
 }
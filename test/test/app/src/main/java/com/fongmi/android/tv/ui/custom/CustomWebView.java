@@ -26,7 +26,6 @@ import com.fongmi.android.tv.impl.ParseCallback;
 import com.fongmi.android.tv.ui.dialog.WebDialog;
 import com.fongmi.android.tv.utils.Sniffer;
 import com.github.catvod.crawler.Spider;
-import com.github.catvod.utils.Util;
 import com.google.common.net.HttpHeaders;
 
 import java.io.ByteArrayInputStream;
@@ -185,9 +184,7 @@ public class CustomWebView extends WebView implements DialogInterface.OnDismissL
     }
 
     private boolean isAd(String host) {
-        for (String ad : VodConfig.get().getAds()) if (Util.containOrMatch(host, ad)) return true;
-        for (String ad : LiveConfig.get().getAds()) if (Util.containOrMatch(host, ad)) return true;
-        return false;
+        return VodConfig.get().isAd(host) || LiveConfig.get().isAd(host);
     }
 
     private boolean isVideoFormat(String url) {
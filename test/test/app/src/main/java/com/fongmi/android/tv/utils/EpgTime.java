@@ -0,0 +1,126 @@
+package com.fongmi.android.tv.utils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Stateless EPG timestamp codec, safe to share between threads.
+ * XMLTV timestamps ({@code yyyyMMddHHmm[ss] [+-HHMM]}) are decoded with plain arithmetic,
+ * so parsing a programme allocates nothing when the offset is present.
+ */
+public class EpgTime {
+
+    private static final long DAY = 86400;
+
+    public static long parse(CharSequence text) {
+        return parse(text, ZoneId.systemDefault());
+    }
+
+    /**
+     * @return epoch millis, or 0 when the text is not a valid XMLTV timestamp
+     */
+    public static long parse(CharSequence text, ZoneId zone) {
+        if (text == null || text.length() < 12) return 0;
+        int year = digits(text, 0, 4);
+        int month = digits(text, 4, 2);
+        int day = digits(text, 6, 2);
+        int hour = digits(text, 8, 2);
+        int minute = digits(text, 10, 2);
+        int second = digits(text, 12, 2);
+        int index = second < 0 ? 12 : 14;
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23 || minute < 0 || minute > 59) return 0;
+        long local = epochDay(year, month, day) * DAY + hour * 3600L + minute * 60L + Math.max(second, 0);
+        while (index < text.length() && text.charAt(index) == ' ') index++;
+        if (index >= text.length()) return (local - offset(zone, local)) * 1000;
+        char sign = text.charAt(index);
+        int hh = digits(text, index + 1, 2);
+        int mm = digits(text, index + 3, 2);
+        if ((sign != '+' && sign != '-') || hh < 0) return (local - offset(zone, local)) * 1000;
+        int offset = hh * 3600 + Math.max(mm, 0) * 60;
+        return (local - (sign == '-' ? -offset : offset)) * 1000;
+    }
+
+    /**
+     * Parses a {@code yyyy-MM-dd} date and a {@code H:mm[:ss]} time in the given zone.
+     * @return epoch millis, or 0 when either part is invalid
+     */
+    public static long parse(String date, String time, ZoneId zone) {
+        if (date == null || time == null || date.length() < 10) return 0;
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 2);
+        int day = digits(date, 8, 2);
+        int colon = time.indexOf(':');
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || colon < 1 || colon > 2) return 0;
+        int hour = digits(time, 0, colon);
+        int minute = digits(time, colon + 1, 2);
+        int second = time.length() > colon + 3 && time.charAt(colon + 3) == ':' ? digits(time, colon + 4, 2) : 0;
+        if (hour < 0 || minute < 0 || second < 0) return 0;
+        long local = epochDay(year, month, day) * DAY + hour * 3600L + minute * 60L + second;
+        return (local - offset(zone, local)) * 1000;
+    }
+
+    public static String formatTime(long millis) {
+        return formatTime(millis, ZoneId.systemDefault());
+    }
+
+    /**
+     * @return {@code HH:mm} in the given zone
+     */
+    public static String formatTime(long millis, ZoneId zone) {
+        long seconds = Math.floorMod(Math.floorDiv(millis, 1000) + offsetAt(zone, millis), DAY);
+        int hour = (int) (seconds / 3600);
+        int minute = (int) (seconds % 3600 / 60);
+        return new String(new char[]{(char) ('0' + hour / 10), (char) ('0' + hour % 10), ':', (char) ('0' + minute / 10), (char) ('0' + minute % 10)});
+    }
+
+    /**
+     * @return {@code yyyy-MM-dd} in the given zone
+     */
+    public static String formatDate(long millis, ZoneId zone) {
+        return LocalDate.ofEpochDay(Math.floorDiv(Math.floorDiv(millis, 1000) + offsetAt(zone, millis), DAY)).toString();
+    }
+
+    /**
+     * @return epoch millis of the local midnight that starts the day containing the given instant
+     */
+    public static long startOfDay(long millis, ZoneId zone) {
+        long local = Math.floorDiv(Math.floorDiv(millis, 1000) + offsetAt(zone, millis), DAY) * DAY;
+        return (local - offset(zone, local)) * 1000;
+    }
+
+    static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int offset(ZoneId zone, long localSeconds) {
+        ZoneRules rules = zone.getRules();
+        if (rules.isFixedOffset()) return rules.getOffset(Instant.EPOCH).getTotalSeconds();
+        return rules.getOffset(LocalDateTime.ofEpochSecond(localSeconds, 0, ZoneOffset.UTC)).getTotalSeconds();
+    }
+
+    private static int offsetAt(ZoneId zone, long millis) {
+        ZoneRules rules = zone.getRules();
+        if (rules.isFixedOffset()) return rules.getOffset(Instant.EPOCH).getTotalSeconds();
+        return rules.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds();
+    }
+
+    private static int digits(CharSequence text, int start, int length) {
+        if (start < 0 || start + length > text.length()) return -1;
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
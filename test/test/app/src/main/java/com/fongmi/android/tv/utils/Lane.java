@@ -0,0 +1,335 @@
+package com.fongmi.android.tv.utils;
+
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import com.orhanobut.logger.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named worker lanes. Each lane has its own threads, thread priority and bounded queue,
+ * so work in one lane never waits behind another. A full queue drops its oldest task,
+ * except for {@link #PARSE} and {@link #BACKGROUND}, where the submitting thread runs the task itself,
+ * so a fan-out waiting on all of its futures never gets one cancelled under it.
+ * The main thread never runs a rejected task, it hands the task to a shared overflow thread instead.
+ */
+public enum Lane {
+
+    PLAY(4, 32, Process.THREAD_PRIORITY_DEFAULT, true),
+    PARSE(8, 64, Process.THREAD_PRIORITY_DEFAULT, false),
+    CONTENT(4, 32, Process.THREAD_PRIORITY_DEFAULT, true),
+    EPG(4, 16, Process.THREAD_PRIORITY_BACKGROUND, true),
+    SEARCH(20, 256, Process.THREAD_PRIORITY_BACKGROUND, true),
+    BACKGROUND(5, 256, Process.THREAD_PRIORITY_BACKGROUND, false);
+
+    private final Pool pool;
+
+    Lane(int threads, int capacity, int priority, boolean drop) {
+        this.pool = new Pool(name(), threads, capacity, priority, drop);
+    }
+
+    public void execute(Runnable runnable) {
+        pool.execute(new Timed(runnable));
+    }
+
+    public Future<?> submit(Runnable task) {
+        return pool.submit(task);
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return pool.submit(task);
+    }
+
+    /**
+     * Only for lanes where the caller runs rejected tasks, a dropped task would fail the whole batch.
+     */
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.invokeAll(tasks, timeout, unit);
+    }
+
+    /**
+     * Runs the task and reports to the callback once. The task is cancelled and interrupted when it
+     * runs past the timeout, reports a {@link RejectedExecutionException} when a full lane drops it,
+     * and nothing is reported when it is cancelled by the caller.
+     */
+    public <T> Future<T> submit(Callable<T> task, long timeout, Callback<T> callback) {
+        Job<T> job = new Job<>(pool, task, callback);
+        pool.execute(job);
+        job.schedule(timeout);
+        return job;
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public long getAverageWait() {
+        long count = pool.started.get();
+        return count == 0 ? 0 : pool.waitTime.get() / count;
+    }
+
+    public long getAverageRun() {
+        long count = pool.finished.get();
+        return count == 0 ? 0 : pool.runTime.get() / count;
+    }
+
+    public long getDropped() {
+        return pool.dropped.get();
+    }
+
+    public String getStats() {
+        return String.format(Locale.ROOT, "%s queue=%d active=%d done=%d dropped=%d wait=%dms run=%dms", name(), getQueueDepth(), getActiveCount(), pool.finished.get(), getDropped(), getAverageWait(), getAverageRun());
+    }
+
+    public static String stats() {
+        List<String> items = new ArrayList<>();
+        for (Lane lane : values()) items.add(lane.getStats());
+        return String.join("\n", items);
+    }
+
+    public interface Callback<T> {
+
+        void success(T result);
+
+        void error(Throwable e);
+    }
+
+    private interface Stamped {
+
+        long queued();
+    }
+
+    private static class Timer {
+
+        static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private static ScheduledThreadPoolExecutor create() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new Factory("Lane-Timer", Process.THREAD_PRIORITY_DEFAULT));
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+
+        static ScheduledExecutorService get() {
+            return INSTANCE;
+        }
+    }
+
+    private static class Overflow {
+
+        static final ThreadPoolExecutor INSTANCE = create();
+
+        private static ThreadPoolExecutor create() {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new Factory("Lane-Overflow", Process.THREAD_PRIORITY_BACKGROUND));
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
+        static ThreadPoolExecutor get() {
+            return INSTANCE;
+        }
+    }
+
+    private static class Factory implements ThreadFactory {
+
+        private final AtomicInteger count;
+        private final String name;
+        private final int priority;
+
+        private Factory(String name, int priority) {
+            this.count = new AtomicInteger();
+            this.priority = priority;
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(priority);
+                runnable.run();
+            }, name + "-" + count.incrementAndGet());
+        }
+    }
+
+    private static class Pool extends ThreadPoolExecutor {
+
+        private static final String TAG = Lane.class.getSimpleName();
+
+        private final ThreadLocal<Long> start;
+        private final AtomicLong waitTime;
+        private final AtomicLong runTime;
+        private final AtomicLong started;
+        private final AtomicLong finished;
+        private final AtomicLong dropped;
+        private final boolean drop;
+        private final String name;
+
+        private Pool(String name, int threads, int capacity, int priority, boolean drop) {
+            super(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(capacity), new Factory(name, priority));
+            this.start = new ThreadLocal<>();
+            this.waitTime = new AtomicLong();
+            this.runTime = new AtomicLong();
+            this.started = new AtomicLong();
+            this.finished = new AtomicLong();
+            this.dropped = new AtomicLong();
+            this.drop = drop;
+            this.name = name;
+            setRejectedExecutionHandler(this::reject);
+            allowCoreThreadTimeOut(true);
+        }
+
+        private void reject(Runnable runnable, ThreadPoolExecutor executor) {
+            if (isShutdown()) return;
+            if (!drop && Looper.myLooper() == Looper.getMainLooper()) {
+                Overflow.get().execute(runnable);
+                return;
+            }
+            if (!drop) {
+                runnable.run();
+                return;
+            }
+            Runnable oldest = getQueue().poll();
+            if (oldest instanceof Job) ((Job<?>) oldest).drop();
+            else if (oldest instanceof Future) ((Future<?>) oldest).cancel(false);
+            long count = dropped.incrementAndGet();
+            if (oldest instanceof Timed) Logger.t(TAG).w("%s dropped a queued task, %d dropped so far", name, count);
+            execute(runnable);
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new Job<>(this, callable, null);
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+            return new Job<>(this, Executors.callable(runnable, value), null);
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable runnable) {
+            long now = System.currentTimeMillis();
+            if (runnable instanceof Stamped) waitTime.addAndGet(now - ((Stamped) runnable).queued());
+            started.incrementAndGet();
+            start.set(now);
+        }
+
+        @Override
+        protected void afterExecute(Runnable runnable, Throwable throwable) {
+            Long time = start.get();
+            if (time != null) runTime.addAndGet(System.currentTimeMillis() - time);
+            finished.incrementAndGet();
+            start.remove();
+        }
+    }
+
+    private static class Timed implements Runnable, Stamped {
+
+        private final Runnable runnable;
+        private final long queued;
+
+        private Timed(Runnable runnable) {
+            this.queued = System.currentTimeMillis();
+            this.runnable = runnable;
+        }
+
+        @Override
+        public long queued() {
+            return queued;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+
+    private static class Job<T> extends FutureTask<T> implements Stamped {
+
+        private final BlockingQueue<Runnable> queue;
+        private final Callback<T> callback;
+        private final long queued;
+        private volatile Future<?> timer;
+        private volatile boolean timeout;
+        private volatile boolean dropped;
+
+        private Job(Pool pool, Callable<T> callable, Callback<T> callback) {
+            super(callable);
+            this.queued = System.currentTimeMillis();
+            this.queue = pool.getQueue();
+            this.callback = callback;
+        }
+
+        private void schedule(long timeout) {
+            if (!isDone()) timer = Timer.get().schedule(this::expire, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        private void expire() {
+            if (isDone()) return;
+            timeout = true;
+            cancel(true);
+        }
+
+        private void drop() {
+            dropped = true;
+            cancel(false);
+        }
+
+        @Override
+        public long queued() {
+            return queued;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) queue.remove(this);
+            return cancelled;
+        }
+
+        @Override
+        protected void done() {
+            Future<?> timer = this.timer;
+            if (timer != null) timer.cancel(false);
+            if (callback == null) return;
+            if (isCancelled()) {
+                if (timeout) callback.error(new TimeoutException());
+                else if (dropped) callback.error(new RejectedExecutionException());
+                return;
+            }
+            try {
+                callback.success(get());
+            } catch (ExecutionException e) {
+                callback.error(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
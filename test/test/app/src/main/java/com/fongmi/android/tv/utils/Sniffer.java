@@ -7,7 +7,6 @@ import com.fongmi.android.tv.api.config.LiveConfig;
 import com.fongmi.android.tv.api.config.VodConfig;
 import com.fongmi.android.tv.bean.Rule;
 import com.github.catvod.utils.Json;
-import com.github.catvod.utils.Util;
 
 import java.util.Arrays;
 import java.util.List;
@@ -29,10 +28,8 @@ public class Sniffer {
 
     public static boolean isVideoFormat(String url) {
         Rule rule = getRule(UrlUtil.uri(url));
-        for (String exclude : rule.getExclude()) if (url.contains(exclude)) return false;
-        for (String exclude : rule.getExclude()) if (Pattern.compile(exclude).matcher(url).find()) return false;
-        for (String regex : rule.getRegex()) if (url.contains(regex)) return true;
-        for (String regex : rule.getRegex()) if (Pattern.compile(regex).matcher(url).find()) return true;
+        if (rule.isExclude(url)) return false;
+        if (rule.isRegex(url)) return true;
         if (url.contains("url=http") || url.contains("v=http") || url.contains(".html")) return false;
         return SNIFFER.matcher(url).find();
     }
@@ -44,8 +41,8 @@ public class Sniffer {
     private static Rule getRule(Uri uri) {
         if (uri.getHost() == null) return Rule.empty();
         String hosts = TextUtils.join(",", Arrays.asList(UrlUtil.host(uri), UrlUtil.host(uri.getQueryParameter("url"))));
-        for (Rule rule : VodConfig.get().getRules()) for (String host : rule.getHosts()) if (Util.containOrMatch(hosts, host)) return rule;
-        for (Rule rule : LiveConfig.get().getRules()) for (String host : rule.getHosts()) if (Util.containOrMatch(hosts, host)) return rule;
-        return Rule.empty();
+        Rule rule = VodConfig.get().getRule(hosts);
+        if (rule == null) rule = LiveConfig.get().getRule(hosts);
+        return rule == null ? Rule.empty() : rule;
     }
 }
@@ -28,7 +28,6 @@ import com.fongmi.android.tv.R;
 import com.github.catvod.utils.Shell;
 
 import java.net.NetworkInterface;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Formatter;
@@ -179,11 +178,6 @@ public class Util {
         return text;
     }
 
-    public static long format(String src, List<SimpleDateFormat> formats) {
-        for (SimpleDateFormat format : formats) try { return format.parse(src).getTime(); } catch (Exception ignored) {}
-        return 0;
-    }
-
     public static boolean isLeanback() {
         return "leanback".equals(BuildConfig.FLAVOR_mode);
     }
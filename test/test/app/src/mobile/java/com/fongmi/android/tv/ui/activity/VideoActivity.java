@@ -715,6 +715,12 @@ public class VideoActivity extends BaseActivity implements Clock.Callback, Custo
         else if (notify) Notify.show(R.string.error_play_next);
     }
 
+    private void prefetchNext() {
+        if (mEpisodeAdapter.getItemCount() == 0) return;
+        Episode item = mEpisodeAdapter.getNext();
+        if (!item.isActivated()) mPlayers.prefetch(item.getUrl());
+    }
+
     private void checkPrev() {
         setR1Callback();
         Episode item = mEpisodeAdapter.getPrev();
@@ -1183,6 +1189,7 @@ public class VideoActivity extends BaseActivity implements Clock.Callback, Custo
                 hideProgress();
                 checkControl();
                 mPlayers.reset();
+                prefetchNext();
                 break;
             case Player.STATE_ENDED:
                 checkEnded(true);
@@ -24,9 +24,13 @@ import com.fongmi.android.tv.utils.ResUtil;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
 import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Locale;
 
 public class SettingPlayerFragment extends BaseFragment implements UaCallback, BufferCallback, SpeedCallback {
 
+    private static final int[] EXO_CACHE = {128, 256, 512, 1024, 2048};
+
     private FragmentSettingPlayerBinding mBinding;
     private DecimalFormat format;
     private String[] background;
@@ -42,6 +46,10 @@ public class SettingPlayerFragment extends BaseFragment implements UaCallback, B
         return getString(value ? R.string.setting_on : R.string.setting_off);
     }
 
+    private String getExoCache() {
+        return String.format(Locale.ROOT, "%d MB", Setting.getExoCache());
+    }
+
     @Override
     protected ViewBinding getBinding(@NonNull LayoutInflater inflater, @Nullable ViewGroup container) {
         return mBinding = FragmentSettingPlayerBinding.inflate(inflater, container, false);
@@ -56,6 +64,7 @@ public class SettingPlayerFragment extends BaseFragment implements UaCallback, B
         mBinding.adblockText.setText(getSwitch(Setting.isAdblock()));
         mBinding.speedText.setText(format.format(Setting.getSpeed()));
         mBinding.bufferText.setText(String.valueOf(Setting.getBuffer()));
+        mBinding.exoCacheText.setText(getExoCache());
         mBinding.audioDecodeText.setText(getSwitch(Setting.isAudioPrefer()));
         mBinding.videoDecodeText.setText(getSwitch(Setting.isVideoPrefer()));
         mBinding.danmakuLoadText.setText(getSwitch(Setting.isDanmakuLoad()));
@@ -73,6 +82,7 @@ public class SettingPlayerFragment extends BaseFragment implements UaCallback, B
         mBinding.scale.setOnClickListener(this::onScale);
         mBinding.speed.setOnClickListener(this::onSpeed);
         mBinding.buffer.setOnClickListener(this::onBuffer);
+        mBinding.exoCache.setOnClickListener(this::setExoCache);
         mBinding.render.setOnClickListener(this::setRender);
         mBinding.tunnel.setOnClickListener(this::setTunnel);
         mBinding.caption.setOnClickListener(this::setCaption);
@@ -127,6 +137,12 @@ public class SettingPlayerFragment extends BaseFragment implements UaCallback, B
         Setting.putBuffer(times);
     }
 
+    private void setExoCache(View view) {
+        int index = Arrays.binarySearch(EXO_CACHE, Setting.getExoCache());
+        Setting.putExoCache(EXO_CACHE[index < 0 || index == EXO_CACHE.length - 1 ? 0 : index + 1]);
+        mBinding.exoCacheText.setText(getExoCache());
+    }
+
     private void setRender(View view) {
         int index = Setting.getRender();
         Setting.putRender(index = index == render.length - 1 ? 0 : ++index);
@@ -3,13 +3,24 @@ package com.github.catvod.net;
 import androidx.annotation.NonNull;
 
 import com.github.catvod.bean.Doh;
-import com.github.catvod.utils.Util;
+import com.github.catvod.utils.HostMatcher;
+import com.github.catvod.utils.Path;
 
+import java.io.File;
+import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import okhttp3.Dns;
 import okhttp3.HttpUrl;
@@ -18,20 +29,47 @@ import okhttp3.dnsoverhttps.DnsOverHttps;
 
 public class OkDns implements Dns {
 
-    private final ConcurrentHashMap<String, String> map;
-    private DnsOverHttps doh;
+    private static final long TTL = TimeUnit.MINUTES.toMillis(10);
+    private static final long STALE = TimeUnit.HOURS.toMillis(6);
+    private static final long NEGATIVE = TimeUnit.SECONDS.toMillis(30);
+    private static final long SAVE_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    private final Map<String, String> map;
+    private final ConcurrentHashMap<String, Entry> cache;
+    private final Set<String> refreshing;
+    private final AtomicBoolean dirty;
+    private final ScheduledExecutorService executor;
+    private volatile HostMatcher<String> matcher;
+    private volatile DnsOverHttps doh;
+    private File snapshot;
 
     public OkDns() {
-        this.map = new ConcurrentHashMap<>();
+        this.map = new LinkedHashMap<>();
+        this.cache = new ConcurrentHashMap<>();
+        this.refreshing = ConcurrentHashMap.newKeySet();
+        this.dirty = new AtomicBoolean();
+        this.matcher = HostMatcher.<String>builder().build();
+        this.executor = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "OkDns");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public void setDoh(Doh item) {
         if (item.getUrl().isEmpty()) return;
         this.doh = new DnsOverHttps.Builder().client(new OkHttpClient()).url(HttpUrl.get(item.getUrl())).bootstrapDnsHosts(item.getHosts()).build();
+        this.cache.clear();
+    }
+
+    public void setSnapshot(File file) {
+        this.snapshot = file;
+        executor.execute(this::load);
     }
 
-    public void clear() {
+    public synchronized void clear() {
         map.clear();
+        matcher = HostMatcher.<String>builder().build();
     }
 
     public synchronized void addAll(List<String> hosts) {
@@ -42,12 +80,114 @@ public class OkDns implements Dns {
             String newHost = splits[1];
             map.put(oldHost, newHost);
         }
+        HostMatcher.Builder<String> builder = HostMatcher.builder();
+        for (Map.Entry<String, String> entry : map.entrySet()) builder.add(entry.getKey(), entry.getValue());
+        matcher = builder.build();
     }
 
     @NonNull
     @Override
     public List<InetAddress> lookup(@NonNull String hostname) throws UnknownHostException {
-        for (Map.Entry<String, String> entry : map.entrySet()) if (Util.containOrMatch(hostname, entry.getKey())) hostname = entry.getValue();
-        return (doh != null ? doh : Dns.SYSTEM).lookup(hostname);
+        String target = matcher.first(hostname);
+        if (target != null) hostname = target;
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(hostname);
+        if (entry != null && now < entry.expires) return entry.get(hostname);
+        if (entry != null && !entry.isNegative() && now < entry.expires + STALE) {
+            refresh(hostname);
+            return entry.addresses;
+        }
+        return resolve(hostname);
+    }
+
+    private List<InetAddress> resolve(String hostname) throws UnknownHostException {
+        try {
+            List<InetAddress> addresses = order((doh != null ? doh : Dns.SYSTEM).lookup(hostname));
+            cache.put(hostname, new Entry(addresses, System.currentTimeMillis() + TTL));
+            save();
+            return addresses;
+        } catch (UnknownHostException e) {
+            cache.put(hostname, new Entry(Collections.emptyList(), System.currentTimeMillis() + NEGATIVE));
+            throw e;
+        }
+    }
+
+    private void refresh(String hostname) {
+        if (!refreshing.add(hostname)) return;
+        executor.execute(() -> {
+            try {
+                resolve(hostname);
+            } catch (Exception ignored) {
+            } finally {
+                refreshing.remove(hostname);
+            }
+        });
+    }
+
+    private List<InetAddress> order(List<InetAddress> addresses) {
+        if (addresses.size() < 2) return addresses;
+        List<InetAddress> first = new ArrayList<>();
+        List<InetAddress> second = new ArrayList<>();
+        boolean v4 = addresses.get(0) instanceof Inet4Address;
+        for (InetAddress address : addresses) (address instanceof Inet4Address == v4 ? first : second).add(address);
+        if (second.isEmpty()) return addresses;
+        List<InetAddress> result = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) result.add(first.get(i));
+            if (i < second.size()) result.add(second.get(i));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private void save() {
+        if (snapshot == null || !dirty.compareAndSet(false, true)) return;
+        executor.schedule(() -> {
+            dirty.set(false);
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Entry> entry : cache.entrySet()) {
+                if (entry.getValue().isNegative()) continue;
+                sb.append(entry.getKey()).append("\t").append(entry.getValue().expires);
+                for (InetAddress address : entry.getValue().addresses) sb.append("\t").append(address.getHostAddress());
+                sb.append("\n");
+            }
+            Path.write(snapshot, sb.toString().getBytes());
+        }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private void load() {
+        if (snapshot == null || !snapshot.exists()) return;
+        long now = System.currentTimeMillis();
+        for (String line : Path.read(snapshot).split("\n")) {
+            try {
+                String[] splits = line.split("\t");
+                if (splits.length < 3) continue;
+                long expires = Long.parseLong(splits[1]);
+                if (now > expires + STALE || cache.containsKey(splits[0])) continue;
+                List<InetAddress> addresses = new ArrayList<>();
+                for (int i = 2; i < splits.length; i++) addresses.add(InetAddress.getByAddress(splits[0], InetAddress.getByName(splits[i]).getAddress()));
+                cache.putIfAbsent(splits[0], new Entry(Collections.unmodifiableList(addresses), expires));
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final List<InetAddress> addresses;
+        private final long expires;
+
+        private Entry(List<InetAddress> addresses, long expires) {
+            this.addresses = addresses;
+            this.expires = expires;
+        }
+
+        private boolean isNegative() {
+            return addresses.isEmpty();
+        }
+
+        private List<InetAddress> get(String hostname) throws UnknownHostException {
+            if (isNegative()) throw new UnknownHostException(hostname);
+            return addresses;
+        }
     }
 }
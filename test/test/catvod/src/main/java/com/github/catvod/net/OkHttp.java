@@ -7,7 +7,12 @@ import androidx.collection.ArrayMap;
 import com.github.catvod.net.interceptor.AuthInterceptor;
 import com.github.catvod.net.interceptor.RequestInterceptor;
 import com.github.catvod.net.interceptor.ResponseInterceptor;
+import com.github.catvod.utils.Path;
+import com.google.common.net.HttpHeaders;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.Map;
@@ -27,6 +32,8 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.logging.HttpLoggingInterceptor;
+import okio.BufferedSink;
+import okio.Okio;
 
 public class OkHttp {
 
@@ -141,6 +148,39 @@ public class OkHttp {
         }
     }
 
+    /**
+     * Downloads to the file and keeps its ETag / Last-Modified next to it, revalidating the copy with
+     * If-None-Match / If-Modified-Since at most every revalidate ms. A failed request falls back to the copy when there is one.
+     */
+    public static File download(String url, File file, long revalidate) throws IOException {
+        File meta = new File(file.getPath() + ".meta");
+        if (file.exists() && System.currentTimeMillis() - file.lastModified() < revalidate) return file;
+        Request.Builder builder = new Request.Builder().url(url);
+        String[] validators = file.exists() && meta.exists() ? Path.read(meta).split("\n", -1) : new String[0];
+        if (validators.length > 0 && !validators[0].isEmpty()) builder.header(HttpHeaders.IF_NONE_MATCH, validators[0]);
+        if (validators.length > 1 && !validators[1].isEmpty()) builder.header(HttpHeaders.IF_MODIFIED_SINCE, validators[1]);
+        try (Response res = client().newCall(builder.build()).execute()) {
+            if (res.code() == 304 && file.exists()) {
+                file.setLastModified(System.currentTimeMillis());
+                return file;
+            }
+            if (!res.isSuccessful()) throw new IOException("HTTP " + res.code());
+            File tmp = Path.temp(file);
+            try (BufferedSink sink = Okio.buffer(Okio.sink(tmp))) {
+                sink.writeAll(res.body().source());
+            } catch (IOException e) {
+                Path.clear(tmp);
+                throw e;
+            }
+            Path.move(tmp, file);
+            Path.move(Path.write(Path.temp(meta), (res.header(HttpHeaders.ETAG, "") + "\n" + res.header(HttpHeaders.LAST_MODIFIED, "")).getBytes(StandardCharsets.UTF_8)), meta);
+            return file;
+        } catch (IOException e) {
+            if (file.exists()) return file;
+            throw e;
+        }
+    }
+
     public static Call newCall(String url) {
         return client().newCall(new Request.Builder().url(url).build());
     }
@@ -1,7 +1,7 @@
 package com.github.catvod.net;
 
 import com.github.catvod.bean.Proxy;
-import com.github.catvod.utils.Util;
+import com.github.catvod.utils.HostMatcher;
 
 import java.io.IOException;
 import java.net.ProxySelector;
@@ -14,20 +14,26 @@ public class OkProxySelector extends ProxySelector {
 
     private final List<Proxy> proxy;
     private final ProxySelector system;
+    private volatile HostMatcher<Proxy> matcher;
 
     public OkProxySelector() {
         proxy = new ArrayList<>();
         system = ProxySelector.getDefault();
+        matcher = HostMatcher.<Proxy>builder().build();
     }
 
     public synchronized void addAll(List<Proxy> items) {
         for (Proxy item : items) item.init();
         proxy.addAll(items);
         Proxy.sort(proxy);
+        HostMatcher.Builder<Proxy> builder = HostMatcher.builder();
+        for (Proxy item : proxy) for (String host : item.getHosts()) builder.add(host, item);
+        matcher = builder.build();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         proxy.clear();
+        matcher = HostMatcher.<Proxy>builder().build();
     }
 
     private List<java.net.Proxy> fallback(URI uri) {
@@ -36,9 +42,9 @@ public class OkProxySelector extends ProxySelector {
 
     @Override
     public List<java.net.Proxy> select(URI uri) {
-        if (proxy.isEmpty() || uri.getHost() == null || "127.0.0.1".equals(uri.getHost())) return fallback(uri);
-        for (Proxy item : proxy) for (String host : item.getHosts()) if (Util.containOrMatch(uri.getHost(), host)) return !item.getProxies().isEmpty() ? item.getProxies() : fallback(uri);
-        return fallback(uri);
+        if (matcher.isEmpty() || uri.getHost() == null || "127.0.0.1".equals(uri.getHost())) return fallback(uri);
+        Proxy item = matcher.first(uri.getHost());
+        return item != null && !item.getProxies().isEmpty() ? item.getProxies() : fallback(uri);
     }
 
     @Override
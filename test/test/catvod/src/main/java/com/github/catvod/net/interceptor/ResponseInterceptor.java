@@ -4,13 +4,14 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.github.catvod.bean.Header;
+import com.github.catvod.utils.HostMatcher;
 import com.github.catvod.utils.Json;
-import com.github.catvod.utils.Util;
 import com.google.common.net.HttpHeaders;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
@@ -27,19 +28,25 @@ public class ResponseInterceptor implements Interceptor {
 
     private final List<Header> headers;
     private final ConcurrentHashMap<String, String> redirectMap;
+    private volatile HostMatcher<Map<String, String>> matcher;
 
     public ResponseInterceptor() {
         headers = new ArrayList<>();
         redirectMap = new ConcurrentHashMap<>();
+        matcher = HostMatcher.<Map<String, String>>builder().build();
     }
 
     public synchronized void addAll(List<Header> items) {
         headers.addAll(items);
+        HostMatcher.Builder<Map<String, String>> builder = HostMatcher.builder();
+        for (Header item : headers) builder.add(item.getHost(), Json.toMap(item.getHeader()));
+        matcher = builder.build();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         headers.clear();
         redirectMap.clear();
+        matcher = HostMatcher.<Map<String, String>>builder().build();
     }
 
     @NonNull
@@ -54,9 +61,10 @@ public class ResponseInterceptor implements Interceptor {
     }
 
     private Request check(Request request) {
-        String host = request.url().host();
+        List<Map<String, String>> items = matcher.all(request.url().host());
+        if (items.isEmpty()) return request;
         Request.Builder builder = request.newBuilder();
-        for (Header item : headers) if (Util.containOrMatch(host, item.getHost())) Json.toMap(item.getHeader()).forEach(builder::header);
+        for (Map<String, String> item : items) item.forEach(builder::header);
         return builder.build();
     }
 
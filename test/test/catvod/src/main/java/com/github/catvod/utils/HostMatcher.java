@@ -0,0 +1,277 @@
+package com.github.catvod.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled form of a list of {@link Util#containOrMatch} rules.
+ * Every rule is added to one Aho-Corasick automaton so the "contains" half costs a single pass over the text.
+ * Rules that look like regular expressions are compiled once, and the longest literal each of them requires
+ * is added to the same automaton, so a regex is only run when its literal shows up in the text.
+ * With {@link Builder#find()} regex rules are searched anywhere in the text instead of matching all of it.
+ * Results keep the order the rules were added in.
+ */
+public class HostMatcher<T> {
+
+    private static final Pattern LITERAL = Pattern.compile("[\\w.\\-:]*");
+    private static final Pattern PLAIN = Pattern.compile("[\\w\\-:/]*");
+    private static final String META = ".[]{}()^$?*+|\\";
+    private static final String CLASS = "dDsSwWbBAzZGtnrfhHvV";
+
+    private final List<T> values;
+    private final Node root;
+    private final int[] regexIndex;
+    private final Pattern[] regexes;
+    private final int[] always;
+    private final boolean find;
+
+    private HostMatcher(Builder<T> builder) {
+        this.values = new ArrayList<>(builder.values);
+        this.find = builder.find;
+        this.root = new Node();
+        List<Integer> index = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+        List<Integer> fallback = new ArrayList<>();
+        for (int i = 0; i < builder.rules.size(); i++) {
+            String rule = builder.rules.get(i);
+            if (rule.isEmpty()) continue;
+            Node node = insert(rule);
+            node.output = append(node.output, i);
+            if ((find ? PLAIN : LITERAL).matcher(rule).matches()) continue;
+            Pattern pattern = compile(rule);
+            if (pattern == null) continue;
+            String literal = required(rule);
+            if (literal.length() < 2) {
+                fallback.add(patterns.size());
+            } else {
+                node = insert(literal);
+                node.regex = append(node.regex, patterns.size());
+            }
+            index.add(i);
+            patterns.add(pattern);
+        }
+        this.regexIndex = toArray(index);
+        this.regexes = patterns.toArray(new Pattern[0]);
+        this.always = toArray(fallback);
+        link();
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    public static HostMatcher<Boolean> of(List<String> rules) {
+        Builder<Boolean> builder = builder();
+        for (String rule : rules) builder.add(rule, true);
+        return builder.build();
+    }
+
+    public static HostMatcher<Boolean> find(List<String> rules) {
+        Builder<Boolean> builder = HostMatcher.<Boolean>builder().find();
+        for (String rule : rules) builder.add(rule, true);
+        return builder.build();
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    public boolean matches(String text) {
+        return text != null && !isEmpty() && !indices(text, true).isEmpty();
+    }
+
+    public T first(String text) {
+        if (text == null || isEmpty()) return null;
+        List<Integer> indices = indices(text, false);
+        return indices.isEmpty() ? null : values.get(indices.get(0));
+    }
+
+    public List<T> all(String text) {
+        if (text == null || isEmpty()) return Collections.emptyList();
+        List<T> items = new ArrayList<>();
+        for (int index : indices(text, false)) items.add(values.get(index));
+        return items;
+    }
+
+    private List<Integer> indices(String text, boolean any) {
+        List<Integer> hits = new ArrayList<>();
+        List<Integer> candidates = new ArrayList<>();
+        scan(text, hits, candidates, any);
+        if (any && !hits.isEmpty()) return hits;
+        for (int i : always) candidates.add(i);
+        for (int i : candidates) {
+            if (hits.contains(regexIndex[i]) || !test(regexes[i], text)) continue;
+            hits.add(regexIndex[i]);
+            if (any) return hits;
+        }
+        Collections.sort(hits);
+        return hits;
+    }
+
+    private boolean test(Pattern pattern, String text) {
+        try {
+            return find ? pattern.matcher(text).find() : pattern.matcher(text).matches();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void scan(String text, List<Integer> hits, List<Integer> candidates, boolean any) {
+        Node node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            while (node != root && !node.next.containsKey(c)) node = node.fail;
+            node = node.next.getOrDefault(c, root);
+            for (int index : node.regex) if (!candidates.contains(index)) candidates.add(index);
+            for (int index : node.output) {
+                if (hits.contains(index)) continue;
+                hits.add(index);
+                if (any) return;
+            }
+        }
+    }
+
+    private Node insert(String text) {
+        Node node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Node next = node.next.get(c);
+            if (next == null) node.next.put(c, next = new Node());
+            node = next;
+        }
+        return node;
+    }
+
+    private void link() {
+        Queue<Node> queue = new ArrayDeque<>();
+        for (Node child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (Map.Entry<Character, Node> entry : node.next.entrySet()) {
+                Node child = entry.getValue();
+                Node fail = node.fail;
+                while (fail != root && !fail.next.containsKey(entry.getKey())) fail = fail.fail;
+                Node target = fail.next.get(entry.getKey());
+                child.fail = target != null ? target : root;
+                for (int index : child.fail.output) child.output = append(child.output, index);
+                for (int index : child.fail.regex) child.regex = append(child.regex, index);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Longest run of plain characters every match of the regex has to contain, empty when unsure.
+     */
+    static String required(String regex) {
+        if (regex.contains("|") || regex.contains("(?") || regex.contains("\\Q")) return "";
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            int end = i;
+            char literal = 0;
+            if (c == '\\' && i + 1 < regex.length()) {
+                char next = regex.charAt(++end);
+                if (!Character.isLetterOrDigit(next)) literal = next;
+                else if (CLASS.indexOf(next) < 0) return "";
+            } else if (c == '[') {
+                end = regex.indexOf(']', i + 2);
+                if (end < 0) return "";
+            } else if (c == '(') {
+                end = close(regex, i);
+                if (end < 0) return "";
+            } else if (META.indexOf(c) < 0) {
+                literal = c;
+            }
+            char quantifier = end + 1 < regex.length() ? regex.charAt(end + 1) : 0;
+            boolean optional = quantifier == '?' || quantifier == '*' || quantifier == '{';
+            if (literal != 0 && !optional) run.append(literal);
+            if (literal == 0 || optional || quantifier == '+') {
+                if (run.length() > best.length()) best = run.toString();
+                run.setLength(0);
+            }
+            if (quantifier == '{') {
+                end = regex.indexOf('}', end + 1);
+                if (end < 0) return "";
+            }
+            i = end;
+        }
+        return run.length() > best.length() ? run.toString() : best;
+    }
+
+    private static int close(String regex, int start) {
+        int depth = 0;
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') i++;
+            else if (c == '(') depth++;
+            else if (c == ')' && --depth == 0) return i;
+        }
+        return -1;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) array[i] = list.get(i);
+        return array;
+    }
+
+    private static Pattern compile(String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static class Node {
+
+        private final Map<Character, Node> next = new HashMap<>();
+        private int[] output = new int[0];
+        private int[] regex = new int[0];
+        private Node fail;
+    }
+
+    public static class Builder<T> {
+
+        private final List<String> rules = new ArrayList<>();
+        private final List<T> values = new ArrayList<>();
+        private boolean find;
+
+        public Builder<T> find() {
+            this.find = true;
+            return this;
+        }
+
+        public Builder<T> add(String rule, T value) {
+            rules.add(rule == null ? "" : rule);
+            values.add(value);
+            return this;
+        }
+
+        public HostMatcher<T> build() {
+            return new HostMatcher<>(this);
+        }
+    }
+}
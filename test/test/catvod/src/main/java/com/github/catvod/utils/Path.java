@@ -217,6 +217,13 @@ public class Path {
         if (dir.delete()) Log.d(TAG, "Deleted:" + dir.getAbsolutePath());
     }
 
+    /**
+     * A temp file of its own next to the target, so concurrent writers of the same target never share one.
+     */
+    public static File temp(File file) throws IOException {
+        return File.createTempFile(file.getName() + ".", ".tmp", mkdir(file.getParentFile()));
+    }
+
     public static File create(File file) {
         try {
             if (file.getParentFile() != null) mkdir(file.getParentFile());
@@ -13,4 +13,8 @@ public class Loader {
     public Spider spider(String key, String api, DexClassLoader dex) {
         return new Spider(key, api, dex);
     }
+
+    public Spider spider(String key, String api, DexClassLoader dex, int size) {
+        return new Spider(key, api, dex, size);
+    }
 }
@@ -2,245 +2,151 @@ package com.fongmi.quickjs.crawler;
 
 import android.content.Context;
 
-import com.fongmi.quickjs.bean.Res;
-import com.fongmi.quickjs.method.Console;
-import com.fongmi.quickjs.method.Global;
-import com.fongmi.quickjs.method.Local;
-import com.fongmi.quickjs.utils.Async;
-import com.fongmi.quickjs.utils.JSUtil;
-import com.fongmi.quickjs.utils.Module;
-import com.github.catvod.utils.Asset;
-import com.github.catvod.utils.Json;
-import com.github.catvod.utils.UriUtil;
-import com.github.catvod.utils.Util;
-import com.whl.quickjs.wrapper.JSArray;
-import com.whl.quickjs.wrapper.JSObject;
-import com.whl.quickjs.wrapper.QuickJSContext;
-
-import org.json.JSONArray;
-
-import java.io.ByteArrayInputStream;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import dalvik.system.DexClassLoader;
 
+/**
+ * Routes a js site over one or more isolated contexts that run the same script with the same ext.
+ * Stateless calls go to the least busy context, trying the first one last, while {@code detail}, {@code play}, {@code proxy}
+ * and {@code action} stick to the first context, so a slow search never queues in front of playback and sites that keep
+ * state between detail and play see both calls.
+ */
 public class Spider extends com.github.catvod.crawler.Spider {
 
-    private final ExecutorService executor;
-    private final DexClassLoader dex;
-    private QuickJSContext ctx;
-    private JSObject jsObject;
-    private final String key;
-    private final String api;
-    private boolean cat;
+    private final List<Worker> workers;
+    private ExecutorService executor;
 
     public Spider(String key, String api, DexClassLoader dex) {
-        this.executor = Executors.newSingleThreadExecutor();
-        this.key = key;
-        this.api = api;
-        this.dex = dex;
+        this(key, api, dex, 1);
     }
 
-    private <T> Future<T> submit(Callable<T> callable) {
-        return executor.submit(callable);
+    public Spider(String key, String api, DexClassLoader dex, int size) {
+        this.workers = new ArrayList<>();
+        for (int i = 0; i < Math.max(size, 1); i++) workers.add(new Worker(key, api, dex));
     }
 
-    private Object call(String func, Object... args) throws Exception {
-        return CompletableFuture.supplyAsync(() -> Async.run(jsObject, func, args), executor).join().get();
+    private Worker sticky() {
+        return workers.get(0);
+    }
+
+    private Worker idle() {
+        Worker idle = null;
+        for (int i = workers.size() - 1; i > 0; i--) {
+            Worker worker = workers.get(i);
+            if (!worker.isReady() || (idle != null && worker.getPending() >= idle.getPending())) continue;
+            idle = worker;
+            if (idle.getPending() == 0) return idle;
+        }
+        return idle == null || sticky().getPending() < idle.getPending() ? sticky() : idle;
     }
 
     @Override
     public void init(Context context, String extend) throws Exception {
-        initializeJS();
-        if (cat) call("init", submit(() -> cfg(extend)).get());
-        else call("init", Json.isObj(extend) ? ctx.parse(extend) : extend);
+        sticky().init(extend);
+        if (workers.size() == 1) return;
+        executor = Executors.newFixedThreadPool(workers.size() - 1);
+        for (Worker worker : workers.subList(1, workers.size())) {
+            executor.execute(() -> {
+                try {
+                    worker.init(extend);
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+        executor.shutdown();
     }
 
     @Override
     public String homeContent(boolean filter) throws Exception {
-        return (String) call("home", filter);
+        return (String) idle().call("home", filter);
     }
 
     @Override
     public String homeVideoContent() throws Exception {
-        return (String) call("homeVod");
+        return (String) idle().call("homeVod");
     }
 
     @Override
     public String categoryContent(String tid, String pg, boolean filter, HashMap<String, String> extend) throws Exception {
-        JSObject obj = submit(() -> JSUtil.toObject(ctx, extend)).get();
-        return (String) call("category", tid, pg, filter, obj);
+        Worker worker = idle();
+        return (String) worker.call("category", tid, pg, filter, worker.toObject(extend));
     }
 
     @Override
     public String detailContent(List<String> ids) throws Exception {
-        return (String) call("detail", ids.get(0));
+        return (String) sticky().call("detail", ids.get(0));
     }
 
     @Override
     public String searchContent(String key, boolean quick) throws Exception {
-        return (String) call("search", key, quick);
+        return (String) idle().call("search", key, quick);
     }
 
     @Override
     public String searchContent(String key, boolean quick, String pg) throws Exception {
-        return (String) call("search", key, quick, pg);
+        return (String) idle().call("search", key, quick, pg);
     }
 
     @Override
     public String playerContent(String flag, String id, List<String> vipFlags) throws Exception {
-        JSArray array = submit(() -> JSUtil.toArray(ctx, vipFlags)).get();
-        return (String) call("play", flag, id, array);
+        Worker worker = sticky();
+        return (String) worker.call("play", flag, id, worker.toArray(vipFlags));
     }
 
     @Override
     public String liveContent(String url) throws Exception {
-        return (String) call("live", url);
+        return (String) idle().call("live", url);
     }
 
     @Override
     public boolean manualVideoCheck() throws Exception {
-        return (Boolean) call("sniffer");
+        return (Boolean) idle().call("sniffer");
     }
 
     @Override
     public boolean isVideoFormat(String url) throws Exception {
-        return (Boolean) call("isVideo", url);
+        return (Boolean) idle().call("isVideo", url);
     }
 
     @Override
     public Object[] proxyLocal(Map<String, String> params) throws Exception {
-        if ("catvod".equals(params.get("from"))) return proxy2(params);
-        else return submit(() -> proxy1(params)).get();
+        return sticky().proxy(params);
     }
 
     @Override
     public String action(String action) throws Exception {
-        return (String) call("action", action);
+        return (String) sticky().call("action", action);
     }
 
     @Override
     public void destroy() {
-        try {
-            call("destroy");
-        } catch (Throwable e) {
-            e.printStackTrace();
-        }
-        try {
-            releaseJS();
-        } catch (Throwable e) {
-            e.printStackTrace();
-        } finally {
-            executor.shutdownNow();
+        if (executor != null) executor.shutdownNow();
+        for (Worker worker : workers) worker.destroy();
+    }
+
+    /**
+     * @return average time calls waited for a context thread, in milliseconds
+     */
+    public long getAverageWait() {
+        long time = 0, count = 0;
+        for (Worker worker : workers) {
+            time += worker.getWaitTime();
+            count += worker.getCount();
         }
+        return count == 0 ? 0 : time / count;
     }
 
-    private void releaseJS() throws Exception {
-        submit(() -> {
-            jsObject.release();
-            ctx.destroy();
-            return null;
-        }).get();
-    }
-
-    private void initializeJS() throws Exception {
-        submit(() -> {
-            createCtx();
-            createFun();
-            createObj();
-            return null;
-        }).get();
-    }
-
-    private void createCtx() {
-        ctx = QuickJSContext.create();
-        ctx.setConsole(new Console());
-        ctx.evaluate(Asset.read("js/lib/http.js"));
-        ctx.getGlobalObject().setProperty("local", Local.class);
-        ctx.setModuleLoader(new QuickJSContext.BytecodeModuleLoader() {
-            @Override
-            public String moduleNormalizeName(String baseModuleName, String moduleName) {
-                return UriUtil.resolve(baseModuleName, moduleName);
-            }
-
-            @Override
-            public byte[] getModuleBytecode(String moduleName) {
-                return ctx.compileModule(Module.get().fetch(moduleName), moduleName);
-            }
-        });
-    }
-
-    private void createFun() {
-        try {
-            Global.create(ctx, executor);
-            Class<?> clz = dex.loadClass("com.github.catvod.js.Function");
-            clz.getDeclaredConstructor(QuickJSContext.class).newInstance(ctx);
-        } catch (Throwable e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void createObj() {
-        String spider = "__JS_SPIDER__";
-        String global = "globalThis." + spider;
-        String content = Module.get().fetch(api);
-        cat = content.contains("__jsEvalReturn");
-        ctx.evaluateModule(content.replace(spider, global), api);
-        ctx.evaluateModule(String.format(Asset.read("js/lib/spider.js"), api));
-        jsObject = (JSObject) ctx.getProperty(ctx.getGlobalObject(), spider);
-    }
-
-    private JSObject cfg(String ext) {
-        JSObject cfg = ctx.createNewJSObject();
-        cfg.setProperty("stype", 3);
-        cfg.setProperty("skey", key);
-        if (!Json.isObj(ext)) cfg.setProperty("ext", ext);
-        else cfg.setProperty("ext", (JSObject) ctx.parse(ext));
-        return cfg;
-    }
-
-    private Object[] proxy1(Map<String, String> params) throws Exception {
-        JSObject object = JSUtil.toObject(ctx, params);
-        JSONArray array = new JSONArray(((JSArray) jsObject.getJSFunction("proxy").call(object)).stringify());
-        Map<String, String> headers = array.length() > 3 ? Json.toMap(array.optString(3)) : null;
-        boolean base64 = array.length() > 4 && array.optInt(4) == 1;
-        Object[] result = new Object[4];
-        result[0] = array.optInt(0);
-        result[1] = array.optString(1);
-        result[2] = getStream(array.opt(2), base64);
-        result[3] = headers;
-        return result;
-    }
-
-    private Object[] proxy2(Map<String, String> params) throws Exception {
-        String url = params.get("url");
-        String header = params.get("header");
-        JSArray array = submit(() -> JSUtil.toArray(ctx, Arrays.asList(url.split("/")))).get();
-        Object object = submit(() -> ctx.parse(header)).get();
-        String json = (String) call("proxy", array, object);
-        Res res = Res.objectFrom(json);
-        Object[] result = new Object[3];
-        result[0] = res.getCode();
-        result[1] = res.getContentType();
-        result[2] = res.getStream();
-        return result;
-    }
-
-    private ByteArrayInputStream getStream(Object o, boolean base64) {
-        if (o instanceof byte[]) {
-            return new ByteArrayInputStream((byte[]) o);
-        } else {
-            String content = o.toString();
-            if (base64 && content.contains("base64,")) content = content.split("base64,")[1];
-            return new ByteArrayInputStream(base64 ? Util.decode(content) : content.getBytes());
-        }
+    public String getStats() {
+        List<String> items = new ArrayList<>();
+        for (Worker worker : workers) items.add(String.format(Locale.ROOT, "pending=%d wait=%dms", worker.getPending(), worker.getCount() == 0 ? 0 : worker.getWaitTime() / worker.getCount()));
+        return String.join("\n", items);
     }
-}
+}
\ No newline at end of file
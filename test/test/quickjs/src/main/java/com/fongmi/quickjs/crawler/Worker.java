@@ -0,0 +1,277 @@
+package com.fongmi.quickjs.crawler;
+
+import com.fongmi.quickjs.bean.Res;
+import com.fongmi.quickjs.method.Console;
+import com.fongmi.quickjs.method.Global;
+import com.fongmi.quickjs.method.Local;
+import com.fongmi.quickjs.utils.Async;
+import com.fongmi.quickjs.utils.JSUtil;
+import com.fongmi.quickjs.utils.Module;
+import com.github.catvod.utils.Asset;
+import com.github.catvod.utils.Json;
+import com.github.catvod.utils.UriUtil;
+import com.github.catvod.utils.Util;
+import com.whl.quickjs.wrapper.JSArray;
+import com.whl.quickjs.wrapper.JSFunction;
+import com.whl.quickjs.wrapper.JSObject;
+import com.whl.quickjs.wrapper.QuickJSContext;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import dalvik.system.DexClassLoader;
+
+/**
+ * One isolated context and the single thread that owns it.
+ */
+class Worker {
+
+    private final ExecutorService executor;
+    private final DexClassLoader dex;
+    private final AtomicInteger pending;
+    private final AtomicLong waitTime;
+    private final AtomicLong count;
+    private final String key;
+    private final String api;
+    private volatile boolean destroyed;
+    private volatile boolean ready;
+    private QuickJSContext ctx;
+    private JSObject jsObject;
+    private boolean cat;
+
+    Worker(String key, String api, DexClassLoader dex) {
+        this.executor = Executors.newSingleThreadExecutor();
+        this.pending = new AtomicInteger();
+        this.waitTime = new AtomicLong();
+        this.count = new AtomicLong();
+        this.key = key;
+        this.api = api;
+        this.dex = dex;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    int getPending() {
+        return pending.get();
+    }
+
+    long getWaitTime() {
+        return waitTime.get();
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    private <T> T submit(Callable<T> callable) throws Exception {
+        long queued = System.currentTimeMillis();
+        pending.incrementAndGet();
+        try {
+            return executor.submit(() -> {
+                record(queued);
+                return callable.call();
+            }).get();
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    Object call(String func, Object... args) throws Exception {
+        long queued = System.currentTimeMillis();
+        pending.incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                record(queued);
+                return Async.run(jsObject, func, args);
+            }, executor).join().get();
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    private void record(long queued) {
+        waitTime.addAndGet(System.currentTimeMillis() - queued);
+        count.incrementAndGet();
+    }
+
+    void init(String extend) throws Exception {
+        initializeJS();
+        if (cat) call("init", submit(() -> cfg(extend)));
+        else call("init", Json.isObj(extend) ? submit(() -> ctx.parse(extend)) : extend);
+        if (destroyed) throw new IllegalStateException("Worker destroyed during init: " + key);
+        ready = true;
+    }
+
+    JSObject toObject(Map<String, String> map) throws Exception {
+        return submit(() -> JSUtil.toObject(ctx, map));
+    }
+
+    JSArray toArray(List<String> items) throws Exception {
+        return submit(() -> JSUtil.toArray(ctx, items));
+    }
+
+    Object[] proxy(Map<String, String> params) throws Exception {
+        if ("catvod".equals(params.get("from"))) return proxy2(params);
+        else return submit(() -> proxy1(params));
+    }
+
+    void destroy() {
+        destroyed = true;
+        ready = false;
+        try {
+            call("destroy");
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+        try {
+            releaseJS();
+        } catch (Throwable e) {
+            e.printStackTrace();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void releaseJS() throws Exception {
+        submit(() -> {
+            if (jsObject != null) jsObject.release();
+            if (ctx != null) ctx.destroy();
+            jsObject = null;
+            ctx = null;
+            return null;
+        });
+    }
+
+    private void initializeJS() throws Exception {
+        submit(() -> {
+            if (destroyed) throw new IllegalStateException("Worker destroyed before init: " + key);
+            createCtx();
+            createFun();
+            createObj();
+            return null;
+        });
+    }
+
+    private void createCtx() {
+        ctx = QuickJSContext.create();
+        ctx.setConsole(new Console());
+        ctx.evaluate(Asset.read("js/lib/http.js"));
+        ctx.getGlobalObject().setProperty("local", Local.class);
+        ctx.setModuleLoader(new QuickJSContext.BytecodeModuleLoader() {
+            @Override
+            public String moduleNormalizeName(String baseModuleName, String moduleName) {
+                return UriUtil.resolve(baseModuleName, moduleName);
+            }
+
+            @Override
+            public byte[] getModuleBytecode(String moduleName) {
+                return Module.get().compile(ctx, moduleName);
+            }
+        });
+    }
+
+    private void createFun() {
+        try {
+            Global.create(ctx, executor);
+            Class<?> clz = dex.loadClass("com.github.catvod.js.Function");
+            clz.getDeclaredConstructor(QuickJSContext.class).newInstance(ctx);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void createObj() {
+        String spider = "__JS_SPIDER__";
+        String global = "globalThis." + spider;
+        String content = Module.get().fetch(api);
+        cat = content.contains("__jsEvalReturn");
+        ctx.evaluateModule(content.replace(spider, global), api);
+        ctx.evaluateModule(String.format(Asset.read("js/lib/spider.js"), api));
+        jsObject = (JSObject) ctx.getProperty(ctx.getGlobalObject(), spider);
+    }
+
+    private JSObject cfg(String ext) {
+        JSObject cfg = ctx.createNewJSObject();
+        cfg.setProperty("stype", 3);
+        cfg.setProperty("skey", key);
+        if (!Json.isObj(ext)) cfg.setProperty("ext", ext);
+        else cfg.setProperty("ext", (JSObject) ctx.parse(ext));
+        return cfg;
+    }
+
+    private Object[] proxy1(Map<String, String> params) {
+        JSObject object = JSUtil.toObject(ctx, params);
+        JSFunction function = jsObject.getJSFunction("proxy");
+        JSArray array = (JSArray) function.call(object);
+        Map<String, String> headers = array.length() > 3 ? Json.toMap(get(array, 3, this::asString)) : null;
+        boolean base64 = array.length() > 4 && get(array, 4, this::asInt) == 1;
+        Object[] result = new Object[4];
+        result[0] = get(array, 0, this::asInt);
+        result[1] = get(array, 1, this::asString);
+        result[2] = get(array, 2, o -> getStream(o, base64));
+        result[3] = headers;
+        array.release();
+        function.release();
+        object.release();
+        return result;
+    }
+
+    private <T> T get(JSArray array, int index, Function<Object, T> convert) {
+        Object o = array.get(index);
+        try {
+            return convert.apply(o);
+        } finally {
+            if (o instanceof JSObject) ((JSObject) o).release();
+        }
+    }
+
+    private int asInt(Object o) {
+        if (o instanceof Number) return ((Number) o).intValue();
+        try {
+            return Integer.parseInt(asString(o));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private String asString(Object o) {
+        if (o == null) return "";
+        if (o instanceof JSObject) return ((JSObject) o).stringify();
+        return o.toString();
+    }
+
+    private Object[] proxy2(Map<String, String> params) throws Exception {
+        String url = params.get("url");
+        String header = params.get("header");
+        JSArray array = toArray(Arrays.asList(url.split("/")));
+        Object object = submit(() -> ctx.parse(header));
+        String json = (String) call("proxy", array, object);
+        Res res = Res.objectFrom(json);
+        Object[] result = new Object[3];
+        result[0] = res.getCode();
+        result[1] = res.getContentType();
+        result[2] = res.getStream();
+        return result;
+    }
+
+    private ByteArrayInputStream getStream(Object o, boolean base64) {
+        if (o instanceof byte[]) {
+            return new ByteArrayInputStream((byte[]) o);
+        } else {
+            String content = asString(o);
+            if (base64 && content.contains("base64,")) content = content.split("base64,")[1];
+            return new ByteArrayInputStream(base64 ? Util.decode(content) : content.getBytes());
+        }
+    }
+}
\ No newline at end of file
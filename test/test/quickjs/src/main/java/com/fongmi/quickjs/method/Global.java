@@ -104,7 +104,8 @@ public class Global {
         JSFunction complete = options.getJSFunction("complete");
         if (complete == null) return req(url, options);
         Req req = Req.objectFrom(options.stringify());
-        Connect.to(url, req).enqueue(getCallback(complete, req));
+        complete.hold();
+        Connect.async(url, req).enqueue(getCallback(complete, req));
         return null;
     }
 
@@ -154,16 +155,30 @@ public class Global {
         return new Callback() {
             @Override
             public void onResponse(@NonNull Call call, @NonNull Response res) {
-                submit(() -> complete.call(Connect.success(ctx, req, res)));
+                try {
+                    res.body().source().request(Long.MAX_VALUE);
+                    submit(() -> complete(complete, Connect.success(ctx, req, res)));
+                } catch (IOException e) {
+                    res.close();
+                    onFailure(call, e);
+                }
             }
 
             @Override
             public void onFailure(@NonNull Call call, @NonNull IOException e) {
-                submit(() -> complete.call(Connect.error(ctx)));
+                submit(() -> complete(complete, Connect.error(ctx)));
             }
         };
     }
 
+    private void complete(JSFunction complete, JSObject result) {
+        try {
+            complete.call(result);
+        } finally {
+            complete.release();
+        }
+    }
+
     private void schedule(JSFunction func, int delay) {
         timer.schedule(new TimerTask() {
             @Override
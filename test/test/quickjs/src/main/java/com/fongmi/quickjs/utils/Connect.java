@@ -3,16 +3,17 @@ package com.fongmi.quickjs.utils;
 import com.fongmi.quickjs.bean.Req;
 import com.github.catvod.net.OkHttp;
 import com.github.catvod.utils.Json;
-import com.github.catvod.utils.Util;
 import com.google.common.net.HttpHeaders;
 import com.whl.quickjs.wrapper.JSObject;
 import com.whl.quickjs.wrapper.QuickJSContext;
 
+import java.nio.charset.Charset;
 import java.security.SecureRandom;
 import java.util.List;
 import java.util.Map;
 
 import okhttp3.Call;
+import okhttp3.Dispatcher;
 import okhttp3.FormBody;
 import okhttp3.Headers;
 import okhttp3.MediaType;
@@ -24,11 +25,27 @@ import okhttp3.Response;
 
 public class Connect {
 
+    private static final Dispatcher DISPATCHER = dispatcher();
+
     public static Call to(String url, Req req) {
         OkHttpClient client = OkHttp.client(req.isRedirect(), req.getTimeout());
         return client.newCall(getRequest(url, req, Headers.of(req.getHeader())));
     }
 
+    /**
+     * Same as {@link #to} but for enqueued calls, on a dispatcher that lets a script run many requests to one host at once.
+     */
+    public static Call async(String url, Req req) {
+        OkHttpClient client = OkHttp.client(req.isRedirect(), req.getTimeout()).newBuilder().dispatcher(DISPATCHER).build();
+        return client.newCall(getRequest(url, req, Headers.of(req.getHeader())));
+    }
+
+    private static Dispatcher dispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(16);
+        return dispatcher;
+    }
+
     public static JSObject success(QuickJSContext ctx, Req req, Response res) {
         try (res) {
             JSObject jsObject = ctx.createNewJSObject();
@@ -36,9 +53,9 @@ public class Connect {
             setHeader(ctx, res, jsHeader);
             jsObject.setProperty("code", res.code());
             jsObject.setProperty("headers", jsHeader);
-            if (req.getBuffer() == 0) jsObject.setProperty("content", new String(res.body().bytes(), req.getCharset()));
+            if (req.getBuffer() == 0) jsObject.setProperty("content", res.body().source().readString(Charset.forName(req.getCharset())));
             if (req.getBuffer() == 1) jsObject.setProperty("content", JSUtil.toArray(ctx, res.body().bytes()));
-            if (req.getBuffer() == 2) jsObject.setProperty("content", Util.base64(res.body().bytes()));
+            if (req.getBuffer() == 2) jsObject.setProperty("content", res.body().source().readByteString().base64());
             if (req.getBuffer() == 3) jsObject.setProperty("content", res.body().bytes());
             return jsObject;
         } catch (Exception e) {
@@ -1,6 +1,7 @@
 package com.fongmi.quickjs.utils;
 
 import com.whl.quickjs.wrapper.JSArray;
+import com.whl.quickjs.wrapper.JSFunction;
 import com.whl.quickjs.wrapper.JSObject;
 import com.whl.quickjs.wrapper.QuickJSContext;
 
@@ -16,10 +17,17 @@ public class JSUtil {
         return array;
     }
 
+    /**
+     * Hands the bytes over as one ArrayBuffer and expands them inside the engine, instead of one native call per byte.
+     */
     public static JSArray toArray(QuickJSContext ctx, byte[] bytes) {
-        JSArray array = ctx.createNewJSArray();
-        if (bytes == null || bytes.length == 0) return array;
-        for (int i = 0; i < bytes.length; i++) array.set((int) bytes[i], i);
+        if (bytes == null || bytes.length == 0) return ctx.createNewJSArray();
+        JSObject holder = ctx.createNewJSObject();
+        holder.setProperty("buffer", bytes);
+        JSFunction function = (JSFunction) ctx.evaluate("(o => Array.from(new Int8Array(o.buffer)))");
+        JSArray array = (JSArray) function.call(holder);
+        function.release();
+        holder.release();
         return array;
     }
 
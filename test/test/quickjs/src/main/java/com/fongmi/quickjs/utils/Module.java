@@ -1,18 +1,42 @@
 package com.fongmi.quickjs.utils;
 
+import android.content.Context;
 import android.net.Uri;
 
+import com.github.catvod.Init;
 import com.github.catvod.net.OkHttp;
 import com.github.catvod.utils.Asset;
 import com.github.catvod.utils.Path;
+import com.github.catvod.utils.Util;
+import com.whl.quickjs.wrapper.QuickJSContext;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.nio.charset.StandardCharsets;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Source and bytecode cache for js modules.
+ * Remote sources are kept on disk with their validators and revalidated at most every {@link #REVALIDATE}.
+ * Bytecode is keyed by module name and source hash, so it is compiled once and shared by every context and launch.
+ */
 public class Module {
 
+    private static final long REVALIDATE = TimeUnit.MINUTES.toMillis(30);
+
     private final ConcurrentHashMap<String, String> cache;
+    private final ConcurrentHashMap<String, byte[]> bytecode;
+    private final Executor executor;
+    private String version;
 
     private static class Loader {
         static volatile Module INSTANCE = new Module();
@@ -24,36 +48,110 @@ public class Module {
 
     public Module() {
         this.cache = new ConcurrentHashMap<>();
+        this.bytecode = new ConcurrentHashMap<>();
+        this.executor = Executors.newSingleThreadExecutor();
     }
 
     public String fetch(String name) {
-        if (cache.contains(name)) return cache.get(name);
-        if (name.startsWith("http")) cache.put(name, request(name));
-        if (name.startsWith("assets")) cache.put(name, Asset.read(name));
-        if (name.startsWith("lib/")) cache.put(name, Asset.read("js/" + name));
-        return cache.get(name);
+        String content = cache.get(name);
+        if (content != null) return content;
+        content = load(name);
+        if (!content.isEmpty()) cache.put(name, content);
+        return content;
     }
 
-    private String request(String url) {
+    /**
+     * Must be called on the thread that owns the context.
+     */
+    public byte[] compile(QuickJSContext ctx, String name) {
+        String content = fetch(name);
+        if (content.isEmpty()) return ctx.compileModule(content, name);
+        String key = Util.md5(name) + "-" + Util.md5(getVersion() + content);
+        byte[] code = bytecode.get(key);
+        if (code != null) return code;
+        File file = Path.js("module/" + key + ".jsc");
+        if (file.exists()) code = read(file);
+        if (code == null) code = save(file, ctx.compileModule(content, name));
+        bytecode.put(key, code);
+        return code;
+    }
+
+    public void clear() {
+        cache.clear();
+        bytecode.clear();
+    }
+
+    private String load(String name) {
+        if (name.startsWith("http")) return request(name);
+        if (name.startsWith("assets")) return Asset.read(name);
+        if (name.startsWith("lib/")) return Asset.read("js/" + name);
+        return "";
+    }
+
+    private byte[] save(File file, byte[] code) {
+        executor.execute(() -> {
+            String prefix = file.getName().substring(0, file.getName().indexOf('-') + 1);
+            for (File item : Path.list(file.getParentFile())) if (item.getName().startsWith(prefix)) Path.clear(item);
+            write(file, code);
+        });
+        return code;
+    }
+
+    /**
+     * Bytecode is stored behind its md5 and length and only moved into place once fully written.
+     */
+    private void write(File file, byte[] code) {
+        File tmp = null;
         try {
-            Uri uri = Uri.parse(url);
-            byte[] data = OkHttp.bytes(url);
-            File file = Path.js(uri.getLastPathSegment());
-            boolean cache = !"127.0.0.1".equals(uri.getHost());
-            if (cache) new Thread(() -> Path.write(file, data)).start();
-            return new String(data, StandardCharsets.UTF_8);
+            tmp = Path.temp(file);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.write(md5(code));
+                out.writeInt(code.length);
+                out.write(code);
+            }
+            Path.move(tmp, file);
         } catch (Exception e) {
-            return cache(url);
+            if (tmp != null) Path.clear(tmp);
+            e.printStackTrace();
         }
     }
 
-    private String cache(String url) {
+    /**
+     * @return the stored bytecode, or null when the file is truncated or corrupt
+     */
+    private byte[] read(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] digest = new byte[16];
+            in.readFully(digest);
+            byte[] code = new byte[in.readInt()];
+            in.readFully(code);
+            return in.read() == -1 && MessageDigest.isEqual(digest, md5(code)) ? code : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private byte[] md5(byte[] data) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("MD5").digest(data);
+    }
+
+    private String request(String url) {
         try {
             Uri uri = Uri.parse(url);
-            File file = Path.js(uri.getLastPathSegment());
-            return Path.exists(file) ? Path.read(file) : "";
+            if ("127.0.0.1".equals(uri.getHost())) return OkHttp.string(url);
+            return Path.read(OkHttp.download(url, Path.js("module/" + Util.md5(url) + ".js"), REVALIDATE));
         } catch (Exception e) {
             return "";
         }
     }
-}
+
+    private String getVersion() {
+        if (version != null) return version;
+        try {
+            Context context = Init.context();
+            return version = String.valueOf(context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime);
+        } catch (Exception e) {
+            return version = "";
+        }
+    }
+}
\ No newline at end of file